@@ -0,0 +1,170 @@
+package net.juniper.netconf;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed-size segments of memory, in which {@link MinaSshSession} collects each message
+ * as it is received. A session only holds segments whilst it is receiving a message, so the
+ * memory used by an idle session does not depend on the size of the largest message it has
+ * received. Released segments are kept for reuse, up to a maximum; any more are left to the
+ * garbage collector, so the memory used by an occasional, very large, message is returned.
+ *
+ * <p>Unless a device is configured with a different pool - see {@link Device#getBufferPool()} -
+ * all sessions share the {@link #getDefault() default} pool.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code}
+ * // Keep up to 64 MiB of 64 KiB segments, allocated outside the heap
+ * final BufferPool bufferPool = new BufferPool(65536, 64 * 1024 * 1024, true);
+ * final Device device = Device.builder()
+ *     .address("hostname")
+ *     .username("username")
+ *     .password("password")
+ *     .bufferPool(bufferPool)
+ *     .build();
+ * {@code}
+ * </pre>
+ */
+public final class BufferPool {
+
+    /**
+     * The size of each segment, in bytes, if not otherwise specified.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 32768;
+
+    /**
+     * The maximum number of bytes of released segments kept for reuse, if not otherwise
+     * specified.
+     */
+    public static final long DEFAULT_MAXIMUM_RETAINED_BYTES = 16 * 1024 * 1024;
+
+    private static final BufferPool DEFAULT = new BufferPool();
+
+    private final int segmentSize;
+    private final int maximumRetainedSegments;
+    private final boolean direct;
+    // The most recently released segment is reused first, as it is the most likely to be cached
+    private final Deque<ByteBuffer> retainedSegments = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger retainedSegmentCount = new AtomicInteger();
+
+    /**
+     * Creates a new pool of {@link #DEFAULT_SEGMENT_SIZE} byte heap segments, that keeps up to
+     * {@link #DEFAULT_MAXIMUM_RETAINED_BYTES} bytes for reuse.
+     */
+    public BufferPool() {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAXIMUM_RETAINED_BYTES, false);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param segmentSize          the size of each segment, in bytes.
+     * @param maximumRetainedBytes the maximum number of bytes of released segments kept for
+     *                             reuse; zero to keep none.
+     * @param direct               {@code true} to allocate segments outside the heap, otherwise
+     *                             {@code false}.
+     */
+    public BufferPool(
+        final int segmentSize,
+        final long maximumRetainedBytes,
+        final boolean direct
+    ) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive");
+        }
+        if (maximumRetainedBytes < 0) {
+            throw new IllegalArgumentException("The maximum retained bytes must not be negative");
+        }
+        this.segmentSize = segmentSize;
+        this.maximumRetainedSegments =
+            (int) Math.min(Integer.MAX_VALUE, maximumRetainedBytes / segmentSize);
+        this.direct = direct;
+    }
+
+    /**
+     * Returns the pool shared by all devices that are not configured with their own.
+     *
+     * @return the default pool.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the size of each segment.
+     *
+     * @return the size of each segment, in bytes.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Returns the maximum amount of memory kept for reuse.
+     *
+     * @return the maximum number of bytes of released segments kept for reuse.
+     */
+    public long getMaximumRetainedBytes() {
+        return (long) maximumRetainedSegments * segmentSize;
+    }
+
+    /**
+     * Indicates if segments are allocated outside the heap.
+     *
+     * @return {@code true} if segments are direct buffers, otherwise {@code false}.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Returns the amount of memory currently kept for reuse.
+     *
+     * @return the number of bytes of released segments kept for reuse.
+     */
+    public long getRetainedBytes() {
+        return (long) retainedSegmentCount.get() * segmentSize;
+    }
+
+    /**
+     * Takes a segment from the pool, allocating a new one if none are available. Every segment
+     * acquired should be {@link #release(ByteBuffer) released} once it is no longer used.
+     *
+     * @return an empty segment.
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer segment = retainedSegments.pollFirst();
+        if (segment == null) {
+            return direct
+                ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+        }
+        retainedSegmentCount.decrementAndGet();
+        segment.clear();
+        return segment;
+    }
+
+    /**
+     * Returns a segment to the pool. If the pool already keeps its maximum, the segment is
+     * discarded.
+     *
+     * @param segment a segment acquired from this pool, which must no longer be used.
+     */
+    void release(final ByteBuffer segment) {
+        if (retainedSegmentCount.incrementAndGet() <= maximumRetainedSegments) {
+            retainedSegments.offerFirst(segment);
+        } else {
+            retainedSegmentCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool(segmentSize=" + segmentSize
+            + ", maximumRetainedBytes=" + getMaximumRetainedBytes()
+            + ", direct=" + direct + ")";
+    }
+}
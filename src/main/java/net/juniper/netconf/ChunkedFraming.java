@@ -0,0 +1,231 @@
+package net.juniper.netconf;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The NETCONF 1.1 chunked framing, in which each message is sent as a series of chunks, each
+ * preceded by its size - see https://datatracker.ietf.org/doc/html/rfc6242#section-4.2. The
+ * content of received messages is never scanned for a delimiter, and messages are sent in
+ * chunks no larger than the maximum chunk size.
+ */
+public class ChunkedFraming implements MessageFraming {
+
+    /**
+     * The default maximum size of a chunk sent to the device.
+     */
+    public static final int DEFAULT_MAXIMUM_CHUNK_SIZE = 16384;
+
+    private static final long LARGEST_CHUNK_SIZE = 4294967295L;
+    private static final byte[] END_OF_CHUNKS = "\n##\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final int maximumChunkSize;
+
+    /**
+     * Creates a chunked framing that sends chunks of up to
+     * {@link #DEFAULT_MAXIMUM_CHUNK_SIZE} bytes.
+     */
+    public ChunkedFraming() {
+        this(DEFAULT_MAXIMUM_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a chunked framing that sends chunks of up to the specified size.
+     *
+     * @param maximumChunkSize the maximum number of bytes to send in a single chunk.
+     */
+    public ChunkedFraming(final int maximumChunkSize) {
+        if (maximumChunkSize <= 0) {
+            throw new IllegalArgumentException("The maximum chunk size must be positive");
+        }
+        this.maximumChunkSize = maximumChunkSize;
+    }
+
+    @Override
+    public OutputStream newMessageOutputStream(final OutputStream out) {
+        return new ChunkingOutputStream(out, maximumChunkSize);
+    }
+
+    @Override
+    public Decoder newDecoder() {
+        return new ChunkedDecoder();
+    }
+
+    @Override
+    public String toString() {
+        return "chunked framing";
+    }
+
+    private static class ChunkingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int count;
+        private boolean closed;
+
+        ChunkingOutputStream(final OutputStream out, final int maximumChunkSize) {
+            this.out = out;
+            this.buffer = new byte[maximumChunkSize];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            buffer[count++] = (byte) b;
+            if (count == buffer.length) {
+                writeBuffer();
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (count == 0 && remaining >= buffer.length) {
+                    // No need to copy the data when it fills an entire chunk
+                    writeChunk(b, offset, buffer.length);
+                    offset += buffer.length;
+                    remaining -= buffer.length;
+                } else {
+                    final int copied = Math.min(remaining, buffer.length - count);
+                    System.arraycopy(b, offset, buffer, count, copied);
+                    count += copied;
+                    offset += copied;
+                    remaining -= copied;
+                    if (count == buffer.length) {
+                        writeBuffer();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                writeBuffer();
+                out.write(END_OF_CHUNKS);
+                out.flush();
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            if (count > 0) {
+                writeChunk(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void writeChunk(final byte[] b, final int off, final int len)
+            throws IOException {
+            out.write(("\n#" + len + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(b, off, len);
+        }
+    }
+
+    private enum State {
+        EXPECTING_LINE_FEED,
+        EXPECTING_HASH,
+        EXPECTING_CHUNK_SIZE_OR_HASH,
+        READING_CHUNK_SIZE,
+        READING_CHUNK_DATA,
+        EXPECTING_END_OF_CHUNKS_LINE_FEED
+    }
+
+    private static class ChunkedDecoder implements Decoder {
+
+        private State state = State.EXPECTING_LINE_FEED;
+        private long chunkSize;
+        private long remaining;
+
+        @Override
+        public void decode(
+            final byte[] b,
+            final int off,
+            final int len,
+            final MessageListener listener
+        ) throws IOException {
+            int i = off;
+            final int end = off + len;
+            while (i < end) {
+                if (state == State.READING_CHUNK_DATA) {
+                    final int available = (int) Math.min(remaining, end - i);
+                    listener.onMessageData(b, i, available);
+                    i += available;
+                    remaining -= available;
+                    if (remaining == 0) {
+                        state = State.EXPECTING_LINE_FEED;
+                    }
+                } else {
+                    decodeHeader(b[i++], listener);
+                }
+            }
+        }
+
+        private void decodeHeader(final byte b, final MessageListener listener)
+            throws IOException {
+            switch (state) {
+                case EXPECTING_LINE_FEED:
+                    expect('\n', b);
+                    state = State.EXPECTING_HASH;
+                    break;
+                case EXPECTING_HASH:
+                    expect('#', b);
+                    state = State.EXPECTING_CHUNK_SIZE_OR_HASH;
+                    break;
+                case EXPECTING_CHUNK_SIZE_OR_HASH:
+                    if (b == '#') {
+                        state = State.EXPECTING_END_OF_CHUNKS_LINE_FEED;
+                    } else if (b >= '1' && b <= '9') {
+                        chunkSize = b - '0';
+                        state = State.READING_CHUNK_SIZE;
+                    } else {
+                        throw invalidFraming("a chunk size or '#'", b);
+                    }
+                    break;
+                case READING_CHUNK_SIZE:
+                    if (b >= '0' && b <= '9') {
+                        chunkSize = chunkSize * 10 + (b - '0');
+                        if (chunkSize > LARGEST_CHUNK_SIZE) {
+                            throw new IOException("Invalid chunked framing - chunk size too large");
+                        }
+                    } else {
+                        expect('\n', b);
+                        remaining = chunkSize;
+                        state = State.READING_CHUNK_DATA;
+                    }
+                    break;
+                case EXPECTING_END_OF_CHUNKS_LINE_FEED:
+                    expect('\n', b);
+                    state = State.EXPECTING_LINE_FEED;
+                    listener.onMessageEnd();
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+
+        private static void expect(final char expected, final byte received) throws IOException {
+            if (received != expected) {
+                throw invalidFraming(expected == '\n' ? "'\\n'" : "'" + expected + "'", received);
+            }
+        }
+
+        private static IOException invalidFraming(final String expected, final byte received) {
+            return new IOException(format(
+                "Invalid chunked framing - expected %s but received 0x%02x",
+                expected,
+                received & 0xff
+            ));
+        }
+    }
+}
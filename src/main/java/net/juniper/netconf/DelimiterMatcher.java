@@ -0,0 +1,77 @@
+package net.juniper.netconf;
+
+/**
+ * The transition function of a matcher that incrementally detects a delimiter in a sequence of
+ * bytes. Each byte is inspected exactly once, so detection is proportional to the number of bytes
+ * received and never requires previously received data to be re-read or decoded. The caller
+ * holds the state - the number of delimiter bytes matched so far - so a delimiter split across
+ * several writes is matched correctly.
+ *
+ * <p>Instances are immutable, so are thread-safe.
+ */
+final class DelimiterMatcher {
+
+    private final byte[] delimiter;
+    // The Knuth-Morris-Pratt failure function for the delimiter
+    private final int[] fallback;
+
+    DelimiterMatcher(final byte[] delimiter) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("The delimiter cannot be empty");
+        }
+        for (final byte b : delimiter) {
+            if (isWhitespace(b)) {
+                throw new IllegalArgumentException("The delimiter cannot contain whitespace");
+            }
+        }
+        this.delimiter = delimiter.clone();
+        this.fallback = new int[delimiter.length + 1];
+        int border = 0;
+        for (int i = 1; i < delimiter.length; i++) {
+            while (border > 0 && delimiter[i] != delimiter[border]) {
+                border = fallback[border];
+            }
+            if (delimiter[i] == delimiter[border]) {
+                border++;
+            }
+            fallback[i + 1] = border;
+        }
+    }
+
+    /**
+     * Given the number of delimiter bytes currently matched and the next byte, returns the number
+     * of delimiter bytes matched after that byte.
+     *
+     * @param state the number of delimiter bytes currently matched.
+     * @param b     the next byte.
+     * @return the number of delimiter bytes matched, including the next byte.
+     */
+    int next(final int state, final byte b) {
+        int newState = state;
+        while (newState > 0 && (newState == delimiter.length || delimiter[newState] != b)) {
+            newState = fallback[newState];
+        }
+        if (delimiter[newState] == b) {
+            newState++;
+        }
+        return newState;
+    }
+
+    /**
+     * Returns the length of the delimiter.
+     *
+     * @return the number of bytes in the delimiter.
+     */
+    int length() {
+        return delimiter.length;
+    }
+
+    /**
+     * Determines if a byte is whitespace, using the same definition as {@link String#trim()}.
+     * Multibyte UTF-8 sequences never contain such bytes, so this is safe to apply to encoded
+     * text.
+     */
+    static boolean isWhitespace(final byte b) {
+        return (b & 0xff) <= ' ';
+    }
+}
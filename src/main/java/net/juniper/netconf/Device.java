@@ -2,8 +2,11 @@ package net.juniper.netconf;
 
 import static java.util.Optional.ofNullable;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
@@ -11,6 +14,7 @@ import lombok.NonNull;
 import lombok.ToString;
 import lombok.Value;
 import lombok.extern.log4j.Log4j2;
+import net.juniper.netconf.element.XmlParser;
 import net.juniper.netconf.exception.NetconfException;
 
 /**
@@ -129,6 +133,55 @@ public class Device {
      */
     Class<? extends NetconfSshSession> sshImplementation;
 
+    /**
+     * The context used by {@link MinaSshSession} to share a single SSH client, and so its
+     * threads, between many sessions. Defaults to {@link MinaSshClientContext#getDefault()}.
+     */
+    MinaSshClientContext sshClientContext;
+
+    /**
+     * The parser used to decode the messages received from the device. Defaults to
+     * {@link XmlParser#getDefault()}.
+     */
+    XmlParser xmlParser;
+
+    /**
+     * If set to {@code true}, each reply is parsed as it is received, on another thread, rather
+     * than once all of it has arrived - so a large reply is already decoded when its last byte
+     * arrives. Only supported by {@link MinaSshSession}; if every reply parser thread of the
+     * {@link #sshClientContext} is busy, the reply is collected, then parsed, instead. Defaults to
+     * {@code false}.
+     */
+    Boolean parseWhileReceiving;
+
+    /**
+     * The pool of memory that {@link MinaSshSession} collects replies in as they are received.
+     * Defaults to {@link BufferPool#getDefault()}.
+     */
+    BufferPool bufferPool;
+
+    /**
+     * The size, in bytes, above which {@link MinaSshSession} writes a reply to a temporary file as
+     * it is received, rather than holding it in memory. The reply is then read from the file,
+     * memory-mapped, so the heap used by a reply is limited no matter how large it is - e.g. a
+     * full configuration, or a routing table. Replies parsed as they are received are never
+     * written to a file. Defaults to {@code Long.MAX_VALUE}, i.e. never.
+     */
+    Long spillThreshold;
+
+    /**
+     * The directory that replies larger than the {@link #spillThreshold} are written to. Defaults
+     * to the system's temporary directory.
+     */
+    Path spillDirectory;
+
+    /**
+     * The limit on the memory used by replies that {@link MinaSshSession} is receiving, shared
+     * with other devices. Whilst it is used up, devices are stalled until replies are taken.
+     * Defaults to {@link ReplyMemoryBudget#getDefault()}.
+     */
+    ReplyMemoryBudget replyMemoryBudget;
+
     @Builder
     private Device(
         @NonNull final String address,
@@ -141,7 +194,14 @@ public class Device {
         final Duration loginTimeout,
         final Duration readTimeout,
         final Duration sessionHeartbeatInterval,
-        final Class<? extends NetconfSshSession> sshImplementation
+        final Class<? extends NetconfSshSession> sshImplementation,
+        final MinaSshClientContext sshClientContext,
+        final XmlParser xmlParser,
+        final Boolean parseWhileReceiving,
+        final BufferPool bufferPool,
+        final Long spillThreshold,
+        final Path spillDirectory,
+        final ReplyMemoryBudget replyMemoryBudget
     ) {
         this.address = address;
         this.port = ofNullable(port).orElse(830);
@@ -150,7 +210,7 @@ public class Device {
         this.maskedPassword = password == null ? null : "********";
         this.privateKey = privateKey;
         this.maskedPrivateKey = privateKey == null ? null : "****************";
-        this.useKnownHostsFile = useKnownHostsFile;
+        this.useKnownHostsFile = ofNullable(useKnownHostsFile).orElse(false);
         this.connectTimeout = ofNullable(connectTimeout).orElseGet(() -> Duration.ofSeconds(5));
         this.loginTimeout = ofNullable(loginTimeout).orElse(this.connectTimeout);
         this.readTimeout = ofNullable(readTimeout).orElseGet(() -> Duration.ofSeconds(5));
@@ -159,12 +219,25 @@ public class Device {
         this.sshImplementation =
             Optional.<Class<? extends NetconfSshSession>>ofNullable(sshImplementation)
                 .orElse(MinaSshSession.class);
+        this.sshClientContext =
+            ofNullable(sshClientContext).orElseGet(MinaSshClientContext::getDefault);
+        this.xmlParser = ofNullable(xmlParser).orElseGet(XmlParser::getDefault);
+        this.parseWhileReceiving = ofNullable(parseWhileReceiving).orElse(false);
+        this.bufferPool = ofNullable(bufferPool).orElseGet(BufferPool::getDefault);
+        this.spillThreshold = ofNullable(spillThreshold).orElse(Long.MAX_VALUE);
+        this.spillDirectory = ofNullable(spillDirectory)
+            .orElseGet(() -> Paths.get(System.getProperty("java.io.tmpdir")));
+        this.replyMemoryBudget =
+            ofNullable(replyMemoryBudget).orElseGet(ReplyMemoryBudget::getDefault);
 
         if (password != null && privateKey != null) {
             throw new IllegalArgumentException(
                 "A privateKey cannot be supplied with a password"
             );
         }
+        if (this.spillThreshold < 0) {
+            throw new IllegalArgumentException("The spillThreshold cannot be negative");
+        }
         log.info("New device created: {}", this);
     }
 
@@ -180,4 +253,23 @@ public class Device {
         return session;
     }
 
+    /**
+     * Opens a new NETCONF session to the device without blocking the calling thread, so that
+     * sessions to many devices can be established concurrently by only a few threads.
+     *
+     * @return the new session, once connected. This completes exceptionally with a
+     *     {@link NetconfException} if the session could not be established; e.g. a
+     *     {@link net.juniper.netconf.exception.NetconfTimeoutException} if the device did not
+     *     respond in time.
+     */
+    public CompletableFuture<NetconfSession> openSessionAsync() {
+        final NetconfSession session;
+        try {
+            session = new NetconfSession(this);
+        } catch (final RuntimeException e) {
+            return Futures.failed(e);
+        }
+        return session.connectAsync();
+    }
+
 }
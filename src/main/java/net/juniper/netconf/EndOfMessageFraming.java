@@ -0,0 +1,120 @@
+package net.juniper.netconf;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import net.juniper.netconf.element.AbstractNetconfElement;
+
+/**
+ * The NETCONF 1.0 end-of-message framing, in which every message is followed by the
+ * {@code ]]>]]>} separator - see https://datatracker.ietf.org/doc/html/rfc6242#section-4.3.
+ * Any whitespace between the separator and the start of the next message is discarded.
+ */
+public class EndOfMessageFraming implements MessageFraming {
+
+    private static final byte[] MESSAGE_SEPARATOR =
+        AbstractNetconfElement.MESSAGE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public OutputStream newMessageOutputStream(final OutputStream out) {
+        return new SeparatingOutputStream(out);
+    }
+
+    @Override
+    public Decoder newDecoder() {
+        return new EndOfMessageDecoder();
+    }
+
+    @Override
+    public String toString() {
+        return "end-of-message framing";
+    }
+
+    private static class SeparatingOutputStream extends FilterOutputStream {
+
+        private boolean closed;
+
+        SeparatingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.write(MESSAGE_SEPARATOR);
+                out.flush();
+            }
+        }
+    }
+
+    private static class EndOfMessageDecoder implements Decoder {
+
+        private final DelimiterMatcher matcher = new DelimiterMatcher(MESSAGE_SEPARATOR);
+        // The number of bytes of the separator that have been received - these are withheld
+        // from the listener until it is known if they are content or the separator
+        private int matched;
+        private boolean atStartOfMessage = true;
+
+        @Override
+        public void decode(
+            final byte[] b,
+            final int off,
+            final int len,
+            final MessageListener listener
+        ) {
+            // Content that can be passed directly to the listener is done so in bulk
+            int contentStart = off;
+            for (int i = off; i < off + len; i++) {
+                final byte currentByte = b[i];
+                if (atStartOfMessage) {
+                    if (DelimiterMatcher.isWhitespace(currentByte)) {
+                        contentStart = i + 1;
+                        continue;
+                    }
+                    atStartOfMessage = false;
+                }
+                if (matched == 0 && currentByte != MESSAGE_SEPARATOR[0]) {
+                    continue;
+                }
+
+                passContent(b, contentStart, i, listener);
+                final int newMatched = matcher.next(matched, currentByte);
+                // Release any withheld bytes that turned out not to be part of the separator
+                final int released = matched + 1 - newMatched;
+                if (released > matched) {
+                    passContent(MESSAGE_SEPARATOR, 0, matched, listener);
+                    passContent(b, i, i + 1, listener);
+                } else {
+                    passContent(MESSAGE_SEPARATOR, 0, released, listener);
+                }
+                matched = newMatched;
+                contentStart = i + 1;
+
+                if (matched == matcher.length()) {
+                    matched = 0;
+                    atStartOfMessage = true;
+                    listener.onMessageEnd();
+                }
+            }
+            passContent(b, contentStart, off + len, listener);
+        }
+
+        private static void passContent(
+            final byte[] b,
+            final int start,
+            final int end,
+            final MessageListener listener
+        ) {
+            if (end > start) {
+                listener.onMessageData(b, start, end - start);
+            }
+        }
+    }
+}
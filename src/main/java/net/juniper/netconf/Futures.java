@@ -0,0 +1,116 @@
+package net.juniper.netconf;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import net.juniper.netconf.exception.NetconfException;
+
+/**
+ * Utilities for working with {@link CompletableFuture}s.
+ */
+final class Futures {
+
+    // A single thread is used to time out every future, however many sessions are open
+    private static final ScheduledThreadPoolExecutor TIMEOUTS =
+        new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "netconf-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    static {
+        // Most futures complete before they time out, so don't keep the timeouts until then
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
+    private Futures() {
+    }
+
+    /**
+     * Returns a future that has already completed exceptionally.
+     */
+    static <T> CompletableFuture<T> failed(final Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Completes the future exceptionally if it has not otherwise completed within the timeout.
+     *
+     * @param future    the future.
+     * @param timeout   how long to wait for the future to complete.
+     * @param onTimeout supplies the exception the future is completed with if it times out.
+     * @return the same future.
+     */
+    static <T> CompletableFuture<T> withTimeout(
+        final CompletableFuture<T> future,
+        final Duration timeout,
+        final Supplier<? extends Throwable> onTimeout
+    ) {
+        if (!future.isDone()) {
+            final ScheduledFuture<?> timer = TIMEOUTS.schedule(
+                () -> {
+                    if (!future.isDone()) {
+                        future.completeExceptionally(onTimeout.get());
+                    }
+                },
+                timeout.toNanos(),
+                TimeUnit.NANOSECONDS
+            );
+            future.whenComplete((result, throwable) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * Waits for a future to complete.
+     *
+     * @param future the future.
+     * @return the result of the future.
+     * @throws NetconfException if the future completed exceptionally, or the current thread was
+     *                          interrupted.
+     */
+    static <T> T await(final CompletableFuture<T> future) throws NetconfException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            throw toNetconfException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NetconfException("Interrupted waiting for device", e);
+        }
+    }
+
+    /**
+     * Removes any {@link CompletionException} or {@link ExecutionException} wrapping the cause
+     * of a failed future.
+     */
+    static Throwable unwrap(final Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+            && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static NetconfException toNetconfException(final Throwable throwable) {
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof NetconfException) {
+            return (NetconfException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new NetconfException("Unable to communicate with device", cause);
+    }
+}
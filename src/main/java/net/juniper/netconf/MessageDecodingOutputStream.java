@@ -0,0 +1,42 @@
+package net.juniper.netconf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The stream to which data received from the device is written. The data is decoded using the
+ * current message framing, and the content of each message is passed to a listener.
+ */
+class MessageDecodingOutputStream extends OutputStream {
+
+    private final MessageFraming.MessageListener listener;
+    private MessageFraming.Decoder decoder;
+
+    MessageDecodingOutputStream(
+        final MessageFraming messageFraming,
+        final MessageFraming.MessageListener listener
+    ) {
+        this.decoder = messageFraming.newDecoder();
+        this.listener = listener;
+    }
+
+    /**
+     * Changes the framing used to decode any subsequently received data.
+     *
+     * @param messageFraming the new message framing.
+     */
+    synchronized void setMessageFraming(final MessageFraming messageFraming) {
+        this.decoder = messageFraming.newDecoder();
+    }
+
+    @Override
+    public synchronized void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len)
+        throws IOException {
+        decoder.decode(b, off, len, listener);
+    }
+}
@@ -0,0 +1,155 @@
+package net.juniper.netconf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Defines how NETCONF messages are delimited on the wire - see
+ * https://datatracker.ietf.org/doc/html/rfc6242#section-4. The end-of-message framing is used
+ * until the &lt;hello&gt; messages have been exchanged, after which the chunked framing is used
+ * if both peers support {@code urn:ietf:params:netconf:base:1.1}.
+ *
+ * @see EndOfMessageFraming
+ * @see ChunkedFraming
+ */
+public interface MessageFraming {
+
+    /**
+     * Creates a stream that frames a single message. Everything written to the returned stream
+     * is framed and written to the underlying stream; closing the returned stream completes the
+     * message and flushes - but does not close - the underlying stream.
+     *
+     * @param out the underlying stream, e.g. the SSH channel.
+     * @return a stream to write the content of a single message to.
+     */
+    OutputStream newMessageOutputStream(OutputStream out);
+
+    /**
+     * Creates a new decoder, which holds the state of the messages being received.
+     *
+     * @return a new decoder for this framing.
+     */
+    Decoder newDecoder();
+
+    /**
+     * Frames a single message, and writes it to the supplied stream. The message is encoded as
+     * it is written, so the encoded form of the entire message is never held in memory.
+     *
+     * @param message the message to write.
+     * @param out     the underlying stream, e.g. the SSH channel.
+     * @throws IOException if the message could not be written.
+     */
+    default void writeMessage(final CharSequence message, final OutputStream out)
+        throws IOException {
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer chars = CharBuffer.wrap(message);
+        final ByteBuffer bytes = ByteBuffer.allocate(8192);
+        try (final OutputStream messageStream = newMessageOutputStream(out)) {
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                messageStream.write(bytes.array(), 0, bytes.position());
+                bytes.clear();
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(bytes);
+                messageStream.write(bytes.array(), 0, bytes.position());
+                bytes.clear();
+            } while (result.isOverflow());
+        }
+    }
+
+    /**
+     * Frames a single message that is already encoded, and writes it to the supplied stream. A
+     * heap buffer is written without being copied; the position of the buffer is not changed.
+     *
+     * @param utf8Message the message to write, encoded as UTF-8.
+     * @param out         the underlying stream, e.g. the SSH channel.
+     * @throws IOException if the message could not be written.
+     */
+    default void writeMessage(final ByteBuffer utf8Message, final OutputStream out)
+        throws IOException {
+        final ByteBuffer bytes = utf8Message.duplicate();
+        try (final OutputStream messageStream = newMessageOutputStream(out)) {
+            if (bytes.hasArray()) {
+                messageStream.write(
+                    bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            } else {
+                final byte[] buffer = new byte[Math.min(bytes.remaining(), 8192)];
+                while (bytes.hasRemaining()) {
+                    final int length = Math.min(bytes.remaining(), buffer.length);
+                    bytes.get(buffer, 0, length);
+                    messageStream.write(buffer, 0, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Frames a single message that is read from a stream, and writes it to the supplied stream.
+     * The message is written as it is read, so it is never held in memory. The stream the message
+     * is read from is not closed.
+     *
+     * @param utf8Message the stream of the message to write, encoded as UTF-8.
+     * @param out         the underlying stream, e.g. the SSH channel.
+     * @throws IOException if the message could not be read or written.
+     */
+    default void writeMessage(final InputStream utf8Message, final OutputStream out)
+        throws IOException {
+        final byte[] buffer = new byte[8192];
+        try (final OutputStream messageStream = newMessageOutputStream(out)) {
+            int length;
+            while ((length = utf8Message.read(buffer)) != -1) {
+                messageStream.write(buffer, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Decodes framed data received from the device.
+     */
+    interface Decoder {
+
+        /**
+         * Decodes the supplied data, passing the content of any messages to the listener. The
+         * data does not have to align with any message or frame boundaries.
+         *
+         * @param b        the data.
+         * @param off      the start offset in the data.
+         * @param len      the number of bytes to decode.
+         * @param listener the listener to receive the decoded messages.
+         * @throws IOException if the data is not correctly framed.
+         */
+        void decode(byte[] b, int off, int len, MessageListener listener) throws IOException;
+    }
+
+    /**
+     * Receives the content of messages as they are decoded.
+     */
+    interface MessageListener {
+
+        /**
+         * Invoked with the next part of the content of the current message. The listener must
+         * not retain a reference to the supplied array.
+         *
+         * @param b   the buffer containing the content.
+         * @param off the start offset of the content in the buffer.
+         * @param len the number of bytes of content.
+         */
+        void onMessageData(byte[] b, int off, int len);
+
+        /**
+         * Invoked once all the content of the current message has been received.
+         */
+        void onMessageEnd();
+    }
+}
@@ -0,0 +1,239 @@
+package net.juniper.netconf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import net.juniper.netconf.element.RecordableInputStream;
+
+/**
+ * The content of a message that is still being received. The thread receiving data from the
+ * device adds each chunk as it arrives, without waiting, and a parser reads it - blocking until
+ * more data arrives - on another thread. Chunks are released as they are read, so the message is
+ * not held twice. The chunks waiting to be read are counted by a {@link ReplyMemoryBudget.Flow},
+ * so a parser that falls behind stalls the device rather than the chunks growing without limit.
+ *
+ * <p>If the stream is {@link #record() recorded}, what is read is kept in a
+ * {@link SegmentedBuffer} - in pooled segments counted as collected, or in a temporary file once
+ * it grows beyond the spill threshold - until the recording is taken or released.
+ */
+class MessageInputStream extends RecordableInputStream {
+
+    // How long to wait for more data; null to wait until the message ends
+    private final Duration readTimeout;
+    private final ReplyMemoryBudget.Flow replyFlow;
+    private final Supplier<SegmentedBuffer> recordingFactory;
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private byte[] chunk;
+    private int position;
+    private boolean ended;
+    private IOException failure;
+    private boolean closed;
+    private SegmentedBuffer recording;
+
+    MessageInputStream() {
+        this(null);
+    }
+
+    MessageInputStream(final Duration readTimeout) {
+        this(readTimeout, ReplyMemoryBudget.newUnboundedFlow());
+    }
+
+    MessageInputStream(final Duration readTimeout, final ReplyMemoryBudget.Flow replyFlow) {
+        this(readTimeout, replyFlow, () -> new SegmentedBuffer(
+            BufferPool.getDefault(), Long.MAX_VALUE, null, replyFlow));
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param readTimeout      how long to wait for more data; null to wait until the message ends.
+     * @param replyFlow        counts the chunks waiting to be read.
+     * @param recordingFactory creates the buffer the stream is recorded in, if it is recorded.
+     */
+    MessageInputStream(
+        final Duration readTimeout,
+        final ReplyMemoryBudget.Flow replyFlow,
+        final Supplier<SegmentedBuffer> recordingFactory
+    ) {
+        this.readTimeout = readTimeout;
+        this.replyFlow = replyFlow;
+        this.recordingFactory = recordingFactory;
+    }
+
+    /**
+     * Adds data to the end of the message.
+     *
+     * @param b   the data.
+     * @param off the start of the data.
+     * @param len the number of bytes of data.
+     */
+    synchronized void receive(final byte[] b, final int off, final int len) {
+        if (len > 0 && !ended && !closed) {
+            chunks.add(Arrays.copyOfRange(b, off, off + len));
+            replyFlow.reserveQueued(len);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks the end of the message. Once everything received has been read, the stream ends.
+     */
+    synchronized void end() {
+        ended = true;
+        notifyAll();
+    }
+
+    /**
+     * Abandons the message; anything reading the stream, or that subsequently reads it, fails.
+     *
+     * @param cause the reason the message will not be completely received.
+     */
+    synchronized void fail(final IOException cause) {
+        failure = cause;
+        ended = true;
+        clearChunks();
+        releaseRecording();
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len)
+        throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (chunk == null || position == chunk.length) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("The message stream is closed");
+            }
+            chunk = chunks.poll();
+            position = 0;
+            if (chunk != null) {
+                replyFlow.releaseQueued(chunk.length);
+            }
+            if (chunk == null) {
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    awaitData();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for message data");
+                }
+            }
+        }
+        final int length = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, length);
+        position += length;
+        if (recording != null) {
+            recording.write(b, off, length);
+        }
+        return length;
+    }
+
+    private void awaitData() throws InterruptedException, IOException {
+        if (readTimeout == null) {
+            while (chunks.isEmpty() && !ended && !closed) {
+                wait();
+            }
+            return;
+        }
+        final long deadline = System.nanoTime() + readTimeout.toNanos();
+        long remaining = readTimeout.toNanos();
+        while (chunks.isEmpty() && !ended && !closed && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        if (chunks.isEmpty() && !ended && !closed) {
+            throw new SocketTimeoutException(
+                "Timeout waiting for message data after " + readTimeout);
+        }
+    }
+
+    @Override
+    public synchronized int available() {
+        return chunk == null ? 0 : chunk.length - position;
+    }
+
+    @Override
+    public synchronized void record() {
+        if (recording == null) {
+            recording = recordingFactory.get();
+        }
+    }
+
+    /**
+     * Reads the rest of the message, and takes the recording of it. Full segments are handed
+     * over as they are, and the bytes they hold are no longer counted.
+     *
+     * @return the message, as the remaining bytes of each buffer in turn.
+     * @throws IOException if the rest of the message cannot be read, or its recording could not
+     *                     be written to a file.
+     */
+    @Override
+    public synchronized List<ByteBuffer> takeRecording() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("The message stream is not being recorded");
+        }
+        try {
+            final byte[] rest = new byte[8192];
+            while (read(rest, 0, rest.length) != -1) {
+                // Recorded as it is read
+            }
+            try (final SegmentedBuffer.Content content = recording.takeContent()) {
+                return content.takeSegments();
+            }
+        } finally {
+            releaseRecording();
+        }
+    }
+
+    /**
+     * Discards the recording, if it has not been taken, returning its segments to the pool.
+     */
+    synchronized void releaseRecording() {
+        if (recording != null) {
+            recording.release();
+            recording = null;
+        }
+    }
+
+    /**
+     * Stops reading the message; the rest of it is discarded as it is received.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clearChunks();
+        chunk = null;
+        releaseRecording();
+        notifyAll();
+    }
+
+    private void clearChunks() {
+        long bytes = 0;
+        for (final byte[] queuedChunk : chunks) {
+            bytes += queuedChunk.length;
+        }
+        chunks.clear();
+        replyFlow.releaseQueued(bytes);
+    }
+}
@@ -0,0 +1,329 @@
+package net.juniper.netconf;
+
+import java.net.SocketAddress;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.keyverifier.DefaultKnownHostsServerKeyVerifier;
+import org.apache.sshd.client.keyverifier.ServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.AttributeRepository;
+import org.apache.sshd.core.CoreModuleProperties;
+
+/**
+ * The Apache MINA SSHD client - and so the NIO worker threads, timers and buffers that go with
+ * it - shared by every {@link MinaSshSession} that uses this context. The client is started when
+ * the first session borrows it, and stopped once no session has used it for the idle timeout, so
+ * the number of threads used remains constant however many devices are connected to - and
+ * devices connected to one after another share the same client.
+ *
+ * <p>Replies that are parsed as they are received - see {@link Device#getParseWhileReceiving()}
+ * - are each parsed on a thread of the context, up to a limit; once every reply parser thread is
+ * busy, further replies are collected, then parsed, instead.
+ *
+ * <p>Unless a device is configured with a different context - see
+ * {@link Device#getSshClientContext()} - all sessions share the {@link #getDefault() default}
+ * context.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code}
+ * final MinaSshClientContext context = new MinaSshClientContext(4);
+ * final Device device = Device.builder()
+ *     .address("hostname")
+ *     .username("username")
+ *     .password("password")
+ *     .sshClientContext(context)
+ *     .build();
+ * {@code}
+ * </pre>
+ */
+@Log4j2
+public final class MinaSshClientContext {
+
+    /**
+     * The number of NIO worker threads used if not otherwise specified; one more than the number
+     * of available processors.
+     */
+    public static final int DEFAULT_NIO_WORKERS =
+        CoreModuleProperties.NIO_WORKERS.getRequiredDefault();
+
+    /**
+     * The maximum number of replies parsed as they are received, at once, if not otherwise
+     * specified.
+     */
+    public static final int DEFAULT_REPLY_PARSERS = 64;
+
+    /**
+     * How long the SSH client is kept once the last session using it is closed, if not otherwise
+     * specified.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(10);
+
+    // How long an idle reply parser, or housekeeping, thread is kept for
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    // Indicates if the server key of a connection should be checked against the known hosts file
+    static final AttributeRepository.AttributeKey<Boolean> USE_KNOWN_HOSTS_FILE =
+        new AttributeRepository.AttributeKey<>();
+
+    private static final MinaSshClientContext DEFAULT = new MinaSshClientContext();
+
+    private final int nioWorkers;
+    private final int replyParsers;
+    // Each thread waits for the rest of the reply it is parsing, so a reply is only parsed as it
+    // is received if a thread is free, rather than queued behind other replies
+    private final ThreadPoolExecutor replyParserExecutor;
+    private final Duration idleTimeout;
+    // Stops idle clients, and cleans up after sessions that could not be established, so that
+    // neither is done by a thread of the SSH client itself, or by a shared timer thread
+    private final ScheduledThreadPoolExecutor housekeepingExecutor;
+    private SshClient sshClient;
+    private int referenceCount;
+    // Incremented whenever the client is acquired or released, so that a scheduled stop only
+    // stops a client that has been idle ever since it was scheduled
+    private long usageGeneration;
+
+    /**
+     * Creates a new context that uses {@link #DEFAULT_NIO_WORKERS} worker threads.
+     */
+    public MinaSshClientContext() {
+        this(DEFAULT_NIO_WORKERS);
+    }
+
+    /**
+     * Creates a new context that parses up to {@link #DEFAULT_REPLY_PARSERS} replies at once as
+     * they are received.
+     *
+     * @param nioWorkers the number of NIO worker threads used to service every session that
+     *                   uses this context.
+     */
+    public MinaSshClientContext(final int nioWorkers) {
+        this(nioWorkers, DEFAULT_REPLY_PARSERS);
+    }
+
+    /**
+     * Creates a new context.
+     *
+     * @param nioWorkers   the number of NIO worker threads used to service every session that
+     *                     uses this context.
+     * @param replyParsers the maximum number of replies parsed at once as they are received, by
+     *                     every session that uses this context.
+     */
+    public MinaSshClientContext(final int nioWorkers, final int replyParsers) {
+        this(nioWorkers, replyParsers, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Creates a new context.
+     *
+     * @param nioWorkers   the number of NIO worker threads used to service every session that
+     *                     uses this context.
+     * @param replyParsers the maximum number of replies parsed at once as they are received, by
+     *                     every session that uses this context.
+     * @param idleTimeout  how long the SSH client is kept once the last session using it is
+     *                     closed, in case another session is opened.
+     */
+    public MinaSshClientContext(
+        final int nioWorkers,
+        final int replyParsers,
+        final Duration idleTimeout
+    ) {
+        if (nioWorkers <= 0) {
+            throw new IllegalArgumentException("The number of NIO workers must be positive");
+        }
+        if (replyParsers <= 0) {
+            throw new IllegalArgumentException("The number of reply parsers must be positive");
+        }
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("The idle timeout cannot be negative");
+        }
+        this.nioWorkers = nioWorkers;
+        this.replyParsers = replyParsers;
+        this.idleTimeout = idleTimeout;
+        this.housekeepingExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "netconf-ssh-housekeeping");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeepingExecutor.setKeepAliveTime(THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        housekeepingExecutor.allowCoreThreadTimeOut(true);
+        this.replyParserExecutor = new ThreadPoolExecutor(0, replyParsers,
+            THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "netconf-reply-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Returns the context shared by all devices that are not configured with their own.
+     *
+     * @return the default context.
+     */
+    public static MinaSshClientContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the number of NIO worker threads used by this context.
+     *
+     * @return the number of NIO worker threads.
+     */
+    public int getNioWorkers() {
+        return nioWorkers;
+    }
+
+    /**
+     * Returns the maximum number of replies parsed at once as they are received.
+     *
+     * @return the number of reply parser threads.
+     */
+    public int getReplyParsers() {
+        return replyParsers;
+    }
+
+    /**
+     * Returns how long the SSH client is kept once the last session using it is closed.
+     *
+     * @return the idle timeout.
+     */
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Returns the number of sessions currently using this context.
+     *
+     * @return the number of sessions that have borrowed the SSH client, and not yet released it.
+     */
+    public synchronized int getReferenceCount() {
+        return referenceCount;
+    }
+
+    /**
+     * Borrows the SSH client, starting it unless it is already running. Every call to this method
+     * must be followed by a call to {@link #release()}.
+     *
+     * @return the started SSH client.
+     */
+    synchronized SshClient acquire() {
+        if (sshClient == null) {
+            log.debug("Starting SSH client with {} NIO workers", nioWorkers);
+            sshClient = SshClient.setUpDefaultClient();
+            CoreModuleProperties.NIO_WORKERS.set(sshClient, nioWorkers);
+            sshClient.setServerKeyVerifier(new SessionServerKeyVerifier());
+            sshClient.start();
+        }
+        usageGeneration++;
+        referenceCount++;
+        return sshClient;
+    }
+
+    /**
+     * Returns the SSH client borrowed with {@link #acquire()}. If this is the last session using
+     * it, the client is stopped once the idle timeout has passed, on another thread - so the
+     * caller never waits for the client to stop, even if it is a thread of the client itself.
+     */
+    void release() {
+        final long generation;
+        synchronized (this) {
+            if (referenceCount == 0) {
+                throw new IllegalStateException("The SSH client has not been acquired");
+            }
+            referenceCount--;
+            generation = ++usageGeneration;
+            if (referenceCount > 0) {
+                return;
+            }
+        }
+        housekeepingExecutor.schedule(
+            () -> stopIfIdle(generation), idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void stopIfIdle(final long generation) {
+        final SshClient idleClient;
+        synchronized (this) {
+            if (generation != usageGeneration || sshClient == null) {
+                // The client has been used since
+                return;
+            }
+            idleClient = sshClient;
+            sshClient = null;
+        }
+        // Stopped without holding the lock, so sessions can start a new client meanwhile
+        log.debug("Stopping SSH client");
+        idleClient.stop();
+    }
+
+    /**
+     * Runs a task on the housekeeping thread of this context - e.g. closing a session that could
+     * not be established, which may release, and so stop, the SSH client. The task is never run
+     * by the calling thread, which may be a thread of the SSH client or a shared timer thread.
+     *
+     * @param task the task.
+     */
+    void executeHousekeeping(final Runnable task) {
+        housekeepingExecutor.execute(task);
+    }
+
+    /**
+     * Parses a reply on a reply parser thread, if one is free.
+     *
+     * @param parser parses the reply.
+     * @return {@code true} if the reply is being parsed, or {@code false} if every reply parser
+     *     thread is busy.
+     */
+    boolean tryParse(final Runnable parser) {
+        try {
+            replyParserExecutor.execute(parser);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MinaSshClientContext(nioWorkers=" + nioWorkers
+            + ", replyParsers=" + replyParsers
+            + ", idleTimeout=" + idleTimeout + ")";
+    }
+
+    /**
+     * As the SSH client is shared, the way the server key is checked is determined by the
+     * connection context of each session.
+     */
+    private static class SessionServerKeyVerifier implements ServerKeyVerifier {
+
+        private final ServerKeyVerifier knownHostsServerKeyVerifier =
+            new DefaultKnownHostsServerKeyVerifier((clientSession, remoteAddress, serverKey) -> {
+                log.info("Unable to connect to {} - unrecognised server key", remoteAddress);
+                return false;
+            }, true);
+
+        @Override
+        public boolean verifyServerKey(
+            final ClientSession clientSession,
+            final SocketAddress remoteAddress,
+            final PublicKey serverKey
+        ) {
+            final AttributeRepository connectionContext = clientSession.getConnectionContext();
+            if (connectionContext != null
+                && Boolean.TRUE.equals(connectionContext.getAttribute(USE_KNOWN_HOSTS_FILE))) {
+                return knownHostsServerKeyVerifier
+                    .verifyServerKey(clientSession, remoteAddress, serverKey);
+            }
+            return AcceptAllServerKeyVerifier.INSTANCE
+                .verifyServerKey(clientSession, remoteAddress, serverKey);
+        }
+    }
+}
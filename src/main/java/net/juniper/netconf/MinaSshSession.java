@@ -2,21 +2,47 @@ package net.juniper.netconf;
 
 import static java.lang.String.format;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import lombok.extern.log4j.Log4j2;
 import net.juniper.netconf.element.AbstractNetconfElement;
+import net.juniper.netconf.element.ReplyDecoder;
+import net.juniper.netconf.element.Rpc;
+import net.juniper.netconf.element.XmlParser;
 import net.juniper.netconf.exception.NetconfAuthenticationException;
 import net.juniper.netconf.exception.NetconfConnectException;
 import net.juniper.netconf.exception.NetconfException;
+import net.juniper.netconf.exception.NetconfTimeoutException;
 import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.channel.ChannelSubsystem;
 import org.apache.sshd.client.channel.ClientChannel;
-import org.apache.sshd.client.keyverifier.DefaultKnownHostsServerKeyVerifier;
+import org.apache.sshd.client.future.AuthFuture;
+import org.apache.sshd.client.future.ConnectFuture;
+import org.apache.sshd.client.future.OpenFuture;
 import org.apache.sshd.client.session.ClientSession;
-import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.AttributeRepository;
+import org.apache.sshd.common.session.ConnectionService;
 import org.apache.sshd.common.session.SessionHeartbeatController;
+import org.xml.sax.SAXException;
 
 /**
  * An implementation of {@link NetconfSshSession} that uses the
@@ -26,22 +52,77 @@ import org.apache.sshd.common.session.SessionHeartbeatController;
 public class MinaSshSession implements NetconfSshSession {
 
     private Device device;
+    private MinaSshClientContext sshClientContext;
     private SshClient sshClient;
     private ClientSession clientSession;
-    private WaitingByteArrayOutputStream responseStream;
+    // Shared by every channel opened over the same SSH connection
+    private ConnectionReferences connectionReferences;
+    private SegmentedBuffer responseBuffer;
+    private ReplyMemoryBudget.Flow replyFlow;
+    private MessageDecodingOutputStream decodingStream;
     private ClientChannel clientChannel;
     private OutputStream requestStream;
+    private volatile MessageFraming messageFraming = new EndOfMessageFraming();
+    // Requests are written whilst holding this lock, so they are sent in the order they are queued
+    private final Object requestLock = new Object();
+    // Guards the outstanding responses and unsolicited messages
+    private final Object responseLock = new Object();
+    private final Deque<PendingResponse> outstandingResponses = new ArrayDeque<>();
+    private final Deque<SegmentedBuffer.Content> unsolicitedMessages = new ArrayDeque<>();
+    private boolean closed;
 
     public MinaSshSession() {
     }
 
     @Override
     public void openSession(final Device device) throws NetconfException {
+        Futures.await(openSessionAsync(device));
+    }
+
+    @Override
+    public CompletableFuture<Void> openSessionAsync(final Device device) {
         this.device = device;
-        this.sshClient = SshClient.setUpDefaultClient();
-        connect();
-        login();
-        createChannel();
+        this.sshClientContext = device.getSshClientContext();
+        this.sshClient = sshClientContext.acquire();
+        this.connectionReferences = new ConnectionReferences();
+        // Each step is started by the thread that completed the previous step, so no thread is
+        // blocked whilst waiting for the device
+        return closeOnFailure(connect()
+            .thenCompose(ignored -> login())
+            .thenCompose(ignored -> createChannel()));
+    }
+
+    @Override
+    public NetconfSshSession openAdditionalChannel() throws NetconfException {
+        if (!isConnected() || !connectionReferences.retain()) {
+            throw new NetconfException("The SSH session is not connected");
+        }
+        final MinaSshSession session = new MinaSshSession();
+        session.device = device;
+        session.sshClientContext = sshClientContext;
+        session.sshClient = sshClient;
+        session.clientSession = clientSession;
+        session.connectionReferences = connectionReferences;
+        log.debug("Opening additional channel to {}:{}", device::getAddress, device::getPort);
+        Futures.await(session.closeOnFailure(session.createChannel()));
+        return session;
+    }
+
+    private CompletableFuture<Void> closeOnFailure(final CompletableFuture<Void> future) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        future.whenComplete((ignored, throwable) -> {
+            if (throwable == null) {
+                result.complete(null);
+            } else {
+                // The future may have been completed by a thread of the SSH client, or the
+                // shared timeout thread, neither of which should wait for the session to close
+                sshClientContext.executeHousekeeping(() -> {
+                    close();
+                    result.completeExceptionally(Futures.unwrap(throwable));
+                });
+            }
+        });
+        return result;
     }
 
     @Override
@@ -50,165 +131,500 @@ public class MinaSshSession implements NetconfSshSession {
             && clientSession.isOpen()
             && clientSession.isAuthenticated()
             && clientChannel != null
-            && clientSession.isOpen();
+            && clientChannel.isOpen();
     }
 
-    private void connect() throws NetconfConnectException {
-        sshClient.start();
+    private CompletableFuture<Void> connect() {
+        log.debug("Connecting to device at {}:{}", device::getAddress, device::getPort);
+        final CompletableFuture<Void> connected = new CompletableFuture<>();
+        final ConnectFuture connectFuture;
         try {
-            log.debug("Connecting to device at {}:{}",
-                device::getAddress, device::getPort
+            connectFuture = sshClient.connect(
+                device.getUsername(),
+                device.getAddress(),
+                device.getPort(),
+                AttributeRepository.ofKeyValuePair(
+                    MinaSshClientContext.USE_KNOWN_HOSTS_FILE,
+                    device.getUseKnownHostsFile()
+                )
             );
-            if (device.getUseKnownHostsFile()) {
-                sshClient.setServerKeyVerifier(getKnownHostsServerKeyVerifier());
+        } catch (final IOException e) {
+            return Futures.failed(newConnectException(e));
+        }
+        connectFuture.addListener(future -> {
+            if (!future.isConnected()) {
+                connected.completeExceptionally(newConnectException(future.getException()));
+                return;
             }
-            clientSession = sshClient
-                .connect(device.getUsername(), device.getAddress(), device.getPort())
-                .verify(device.getConnectTimeout())
-                .getSession();
+            if (connected.isDone()) {
+                // Connected after timing out
+                future.getClientSession().close(true);
+                return;
+            }
+            clientSession = future.getClientSession();
             if (device.getSessionHeartbeatInterval().toMillis() > 0) {
                 clientSession.setSessionHeartbeat(
                     SessionHeartbeatController.HeartbeatType.IGNORE,
                     device.getSessionHeartbeatInterval()
                 );
             }
-        } catch (final IOException e) {
-            close();
-            throw new NetconfConnectException(
-                format("Unable to connect to device at %s:%d",
-                    device.getAddress(), device.getPort()
-                ), e);
-        }
+            connected.complete(null);
+        });
+        return Futures.withTimeout(connected, device.getConnectTimeout(), () -> {
+            connectFuture.cancel();
+            return newConnectException(
+                newTimeoutException("connecting", device.getConnectTimeout()));
+        });
     }
 
-    private static DefaultKnownHostsServerKeyVerifier getKnownHostsServerKeyVerifier() {
-        return new DefaultKnownHostsServerKeyVerifier((clientSession, remoteAddress, serverKey) -> {
-            log.info("Unable to connect to {} - unrecognised server key", remoteAddress);
-            return false;
-        }, true);
+    private NetconfConnectException newConnectException(final Throwable cause) {
+        return new NetconfConnectException(
+            format("Unable to connect to device at %s:%d", device.getAddress(), device.getPort()),
+            cause
+        );
     }
 
-    private void login() throws NetconfException {
-        if (device.getPassword() != null) {
-            loginWithPassword();
-        } else if (device.getPrivateKey() != null) {
-            loginWithPrivateKey();
-        } else {
-            loginWithIdentityFiles();
-        }
-    }
-
-    private void createChannel() throws NetconfException {
+    private CompletableFuture<Void> login() {
+        final String loginMethod;
+        final AuthFuture authFuture;
         try {
-            clientChannel = clientSession.createChannel(Channel.CHANNEL_SUBSYSTEM, "netconf");
-            responseStream = new WaitingByteArrayOutputStream();
-            clientChannel.setOut(responseStream);
-            clientChannel.open().verify(device.getReadTimeout());
-            requestStream = clientChannel.getInvertedIn();
+            loginMethod = addIdentity();
+            authFuture = clientSession.auth();
+        } catch (final NetconfException e) {
+            return Futures.failed(e);
         } catch (final IOException e) {
-            throw new NetconfException("Unable to create netconf channel to device", e);
+            return Futures.failed(newAuthenticationException(e));
         }
+        final CompletableFuture<Void> loggedIn = new CompletableFuture<>();
+        authFuture.addListener(future -> {
+            if (future.isSuccess()) {
+                log.info("Connected using {} to {}@{}:{}",
+                    () -> loginMethod, device::getUsername, device::getAddress, device::getPort);
+                loggedIn.complete(null);
+            } else {
+                loggedIn.completeExceptionally(
+                    newAuthenticationException(future.getException()));
+            }
+        });
+        return Futures.withTimeout(loggedIn, device.getLoginTimeout(), () -> {
+            authFuture.cancel();
+            return newAuthenticationException(
+                newTimeoutException("logging in", device.getLoginTimeout()));
+        });
     }
 
-    private void loginWithPassword() throws NetconfAuthenticationException {
-        try {
+    /**
+     * Adds the identity used to log in to the device.
+     *
+     * @return a description of the login method.
+     */
+    private String addIdentity() throws NetconfException {
+        if (device.getPassword() != null) {
             log.debug("Logging in with password to device with username '{}'",
                 device.getUsername()
             );
             clientSession.addPasswordIdentity(device.getPassword());
-            clientSession.auth().verify(device.getLoginTimeout());
-        } catch (final IOException e) {
-            close();
-            throw new NetconfAuthenticationException(
-                "Unable to login with username " + device.getUsername(),
-                e
-            );
-        }
-        log.info("Connected using password to {}@{}:{}",
-            device::getUsername, device::getAddress, device::getPort);
-    }
-
-    private void loginWithPrivateKey() throws NetconfException {
-        try {
+            return "password";
+        } else if (device.getPrivateKey() != null) {
             log.debug("Logging in with private key to device with username '{}'",
                 device.getUsername()
             );
             clientSession.addPublicKeyIdentity(KeyUtils.getGetPair(device.getPrivateKey()));
-            clientSession.auth().verify(device.getLoginTimeout());
-        } catch (final IOException e) {
-            close();
-            throw new NetconfAuthenticationException(
-                "Unable to login with username " + device.getUsername(),
-                e
-            );
+            return "private key";
+        } else {
+            log.debug("Logging in with identity files to device with username '{}'",
+                device.getUsername());
+            return "identity files";
         }
-        log.info("Connected using private key to {}@{}:{}",
-            device::getUsername, device::getAddress, device::getPort);
     }
 
-    private void loginWithIdentityFiles() throws NetconfAuthenticationException {
+    private NetconfAuthenticationException newAuthenticationException(final Throwable cause) {
+        return new NetconfAuthenticationException(
+            "Unable to login with username " + device.getUsername(),
+            cause
+        );
+    }
+
+    /**
+     * Creates a buffer for the content of replies, configured by the device.
+     */
+    private SegmentedBuffer newSegmentedBuffer(final ReplyMemoryBudget.Flow flow) {
+        return new SegmentedBuffer(
+            device.getBufferPool(),
+            device.getSpillThreshold(),
+            device.getSpillDirectory(),
+            flow
+        );
+    }
+
+    private CompletableFuture<Void> createChannel() {
+        final NetconfChannel channel;
+        final OpenFuture openFuture;
         try {
-            log.debug("Logging in with identify files to device with username '{}'",
-                device.getUsername());
-            clientSession.auth().verify(device.getLoginTimeout());
-        } catch (final IOException e) {
-            close();
-            throw new NetconfAuthenticationException(
-                "Unable to login with username " + device.getUsername(),
-                e
+            channel = new NetconfChannel(device.getReplyMemoryBudget());
+            clientSession.getService(ConnectionService.class).registerChannel(channel);
+            clientChannel = channel;
+            replyFlow = channel.replyFlow;
+            responseBuffer = newSegmentedBuffer(channel.replyFlow);
+            decodingStream = new MessageDecodingOutputStream(
+                messageFraming,
+                new ResponseListener(responseBuffer)
+            );
+            channel.setOut(decodingStream);
+            channel.addCloseFutureListener(future ->
+                failOutstandingResponses(new NetconfException("The netconf channel was closed"))
             );
+            openFuture = channel.open();
+        } catch (final IOException e) {
+            return Futures.failed(newChannelException(e));
         }
-        log.info("Connected using password to {}@{}:{}",
-            device::getUsername, device::getAddress, device::getPort);
+        final CompletableFuture<Void> created = new CompletableFuture<>();
+        openFuture.addListener(future -> {
+            if (future.isOpened()) {
+                requestStream = channel.getInvertedIn();
+                created.complete(null);
+            } else {
+                created.completeExceptionally(newChannelException(future.getException()));
+            }
+        });
+        return Futures.withTimeout(created, device.getReadTimeout(), () -> {
+            openFuture.cancel();
+            return newChannelException(
+                newTimeoutException("opening channel", device.getReadTimeout()));
+        });
+    }
+
+    private static NetconfException newChannelException(final Throwable cause) {
+        return new NetconfException("Unable to create netconf channel to device", cause);
+    }
+
+    private static NetconfTimeoutException newTimeoutException(
+        final String what,
+        final Duration timeout
+    ) {
+        return new NetconfTimeoutException(format("Timeout %s after %s", what, timeout));
     }
 
     @Override
     public String sendMessage(final String message) throws NetconfException {
-        try {
-            responseStream.reset();
+        return awaitResponse(sendMessageAsync(message));
+    }
+
+    @Override
+    public String sendMessage(final AbstractNetconfElement message) throws NetconfException {
+        return awaitResponse(sendMessageAsync(message));
+    }
+
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final String message) {
+        return sendMessageAsync((CharSequence) message);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The message is encoded into the framing in small pieces as it is written to the SSH
+     * channel, so its encoded form is never held in memory as a whole.
+     */
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final CharSequence message) {
+        return sendMessageAsync(out -> {
             log.debug("Sending:\n{}", message);
-            requestStream.write(
-                (message + AbstractNetconfElement.MESSAGE_SEPARATOR)
-                    .getBytes(StandardCharsets.UTF_8)
-            );
-            requestStream.flush();
-            responseStream.waitForEnding(
-                AbstractNetconfElement.MESSAGE_SEPARATOR,
-                device.getReadTimeout()
-            );
-            final String responseWithMessageSeparator =
-                responseStream.toString(StandardCharsets.UTF_8.name());
-            final String response = responseWithMessageSeparator
-                .trim()
-                .substring(
-                    0,
-                    responseWithMessageSeparator.length()
-                        - AbstractNetconfElement.MESSAGE_SEPARATOR.length()
-                        - 1
-                );
-            log.debug("Received:\n{}", response);
-            return response;
-        } catch (final IOException e) {
-            throw new NetconfException("I/O Exception communicating with device to respond", e);
+            messageFraming.writeMessage(message, out);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The content of the buffer is written to the SSH channel without being copied first,
+     * unless it is a direct buffer.
+     */
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final ByteBuffer utf8Message) {
+        final ByteBuffer message = utf8Message.duplicate();
+        return sendMessageAsync(out -> {
+            log.debug("Sending:\n{}", () -> StandardCharsets.UTF_8.decode(message.duplicate()));
+            messageFraming.writeMessage(message, out);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The message is written to the SSH channel as it is read, so is never held in memory.
+     * Other messages are not sent until the stream has been read. If the stream cannot be read,
+     * the message is ended early; the response to it is discarded.
+     */
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final InputStream utf8Message) {
+        final StringResponse response = new StringResponse();
+        final MessageReadingInputStream message =
+            new MessageReadingInputStream(utf8Message, response);
+        send(response, out -> {
+            log.debug("Sending message read from {}", utf8Message);
+            messageFraming.writeMessage(message, out);
+        });
+        return response.response;
+    }
+
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final AbstractNetconfElement message) {
+        return sendMessageAsync(newElementWriter(message));
+    }
+
+    private CompletableFuture<String> sendMessageAsync(final MessageWriter messageWriter) {
+        final StringResponse response = new StringResponse();
+        send(response, messageWriter);
+        return response.response;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The response is collected in segments from the {@link Device#getBufferPool() buffer
+     * pool} as it is received, then copied once into the returned buffer.
+     */
+    @Override
+    public CompletableFuture<ByteBuffer> sendMessageForBytesAsync(
+        final AbstractNetconfElement message
+    ) {
+        final BytesResponse response = new BytesResponse();
+        send(response, newElementWriter(message));
+        return response.response;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the device is configured to {@link Device#getParseWhileReceiving() parse while
+     * receiving}, or the decoder {@link ReplyDecoder#isStreaming() is streaming}, the content of
+     * the reply is passed to the decoder, on another thread, as each chunk arrives - unless every
+     * {@link MinaSshClientContext#getReplyParsers() reply parser thread} is busy. Otherwise the
+     * reply is collected, then decoded from the bytes received, without being decoded to a String.
+     *
+     * <p>A reply that is collected is matched with its RPC by message-id, so it is decoded by the
+     * right decoder even if the device replies out of order. A reply that is parsed as it is
+     * received is passed to the decoder of the oldest outstanding RPC before its message-id is
+     * known, so is only matched by order.
+     */
+    @Override
+    public <T> CompletableFuture<T> sendRpcAsync(
+        final AbstractNetconfElement rpc,
+        final ReplyDecoder<T> decoder,
+        final XmlParser xmlParser
+    ) {
+        final ReplyMemoryBudget.Flow flow = replyFlow;
+        final String messageId = rpc instanceof Rpc ? ((Rpc) rpc).getMessageId() : null;
+        final ParsingResponse<T> response = new ParsingResponse<>(messageId, decoder, xmlParser,
+            device.getReadTimeout(), device.getParseWhileReceiving() || decoder.isStreaming(),
+            sshClientContext, flow, () -> newSegmentedBuffer(flow));
+        send(response, newElementWriter(rpc));
+        return response.reply;
+    }
+
+    private MessageWriter newElementWriter(final AbstractNetconfElement message) {
+        return out -> {
+            log.debug("Sending:\n{}", message::getXml);
+            // The element is encoded straight into the framing, without an intermediate String
+            try (final OutputStream messageStream = messageFraming.newMessageOutputStream(out)) {
+                message.writeTo(messageStream);
+            }
+        };
+    }
+
+    private void send(final PendingResponse response, final MessageWriter messageWriter) {
+        synchronized (requestLock) {
+            synchronized (responseLock) {
+                if (closed) {
+                    response.fail(new NetconfException("The netconf session is closed"));
+                    return;
+                }
+                final SegmentedBuffer.Content unsolicitedMessage = unsolicitedMessages.poll();
+                if (unsolicitedMessage != null) {
+                    // e.g. the server <hello> which is sent without waiting for a request
+                    response.complete(unsolicitedMessage);
+                } else {
+                    outstandingResponses.add(response);
+                }
+            }
+            try {
+                messageWriter.writeTo(requestStream);
+            } catch (final IOException e) {
+                synchronized (responseLock) {
+                    outstandingResponses.remove(response);
+                }
+                response.fail(new NetconfException(
+                    "I/O Exception communicating with device to respond", e));
+            }
+        }
+    }
+
+    private String awaitResponse(final CompletableFuture<String> response)
+        throws NetconfException {
+        try {
+            return response.get(device.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // The response is left outstanding, so that if it does arrive it is not mistaken for
+            // the response to a later message
+            throw new NetconfTimeoutException("Timeout waiting for device to respond", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof NetconfException) {
+                throw (NetconfException) cause;
+            }
+            throw new NetconfException("Unable to receive response from device", cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NetconfException("Interrupted waiting for device to respond", e);
+        }
+    }
+
+    private void onMessageReceived(final SegmentedBuffer.Content message) {
+        log.debug("Received:\n{}", message::decode);
+        final boolean pipelined;
+        synchronized (responseLock) {
+            pipelined = outstandingResponses.size() > 1;
+        }
+        // The reply can only be to the one outstanding RPC, if only one RPC is outstanding
+        final String messageId = pipelined ? readMessageId(message) : null;
+        final PendingResponse response;
+        synchronized (responseLock) {
+            response = takeResponse(messageId);
+            if (response == null && !closed) {
+                unsolicitedMessages.add(message);
+                return;
+            }
+        }
+        if (response != null) {
+            response.complete(message);
+        } else {
+            message.close();
+        }
+    }
+
+    /**
+     * Reads the message-id of a reply, from its root element, without reading the rest of it.
+     *
+     * @return the message-id, or null if the message does not have one.
+     */
+    private String readMessageId(final SegmentedBuffer.Content message) {
+        try {
+            // Closing the reader leaves the content open
+            final XMLStreamReader reader =
+                device.getXmlParser().createXmlStreamReader(message.newInputStream());
+            try {
+                reader.nextTag();
+                return reader.getAttributeValue(null, "message-id");
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException | RuntimeException e) {
+            // The reply is matched by order, and fails to be decoded as usual
+            log.debug("Unable to read message-id of message", e);
+            return null;
+        }
+    }
+
+    /**
+     * Takes the outstanding response with a message-id, or the oldest response if there is none.
+     * Must be called whilst holding the response lock.
+     */
+    private PendingResponse takeResponse(final String messageId) {
+        if (messageId != null) {
+            final Iterator<PendingResponse> responses = outstandingResponses.iterator();
+            while (responses.hasNext()) {
+                final PendingResponse response = responses.next();
+                if (messageId.equals(response.getMessageId())) {
+                    responses.remove();
+                    return response;
+                }
+            }
+        }
+        return outstandingResponses.poll();
+    }
+
+    private void onMessageFailed(final NetconfException exception) {
+        log.warn("Unable to receive message", exception);
+        final PendingResponse response;
+        synchronized (responseLock) {
+            response = outstandingResponses.poll();
+        }
+        if (response != null) {
+            response.fail(exception);
+        }
+    }
+
+    /**
+     * Returns the response the next message received is for, if its content is to be passed on
+     * as it is received.
+     */
+    private PendingResponse peekContentListeningResponse() {
+        synchronized (responseLock) {
+            final PendingResponse response = outstandingResponses.peek();
+            return response != null && response.getContentListener() != null ? response : null;
+        }
+    }
+
+    private void failOutstandingResponses(final NetconfException exception) {
+        final List<PendingResponse> responses;
+        final List<SegmentedBuffer.Content> messages;
+        synchronized (responseLock) {
+            closed = true;
+            responses = new ArrayList<>(outstandingResponses);
+            outstandingResponses.clear();
+            messages = new ArrayList<>(unsolicitedMessages);
+            unsolicitedMessages.clear();
+        }
+        responses.forEach(response -> response.fail(exception));
+        messages.forEach(SegmentedBuffer.Content::close);
+    }
+
+    @Override
+    public boolean isMessageFramingSupported() {
+        return true;
+    }
+
+    @Override
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The framing is shared")
+    public void setMessageFraming(final MessageFraming messageFraming) {
+        log.debug("Using {} with {}:{}", messageFraming, device.getAddress(), device.getPort());
+        this.messageFraming = messageFraming;
+        if (decodingStream != null) {
+            decodingStream.setMessageFraming(messageFraming);
         }
     }
 
     @Override
     public void close() {
 
+        failOutstandingResponses(new NetconfException("The netconf session was closed"));
+
         close(requestStream, "request stream");
         requestStream = null;
 
-        close(responseStream, "response stream");
-        responseStream = null;
+        if (responseBuffer != null) {
+            responseBuffer.release();
+            responseBuffer = null;
+        }
+        if (replyFlow != null) {
+            replyFlow.close();
+            replyFlow = null;
+        }
+        decodingStream = null;
 
         close(clientChannel, "client channel");
         clientChannel = null;
 
-        close(clientSession, "client session");
+        // The SSH connection, and the SSH client, are shared so are only closed once no
+        // channel is using them
+        if (connectionReferences != null && connectionReferences.release()) {
+            close(clientSession, "client session");
+            sshClientContext.release();
+        }
+        connectionReferences = null;
         clientSession = null;
-
-        close(sshClient, "SSH client");
+        sshClient = null;
     }
 
     private void close(final Closeable closeable, final String what) {
@@ -228,4 +644,373 @@ public class MinaSshSession implements NetconfSshSession {
         }
     }
 
+    /**
+     * Counts the channels open over an SSH connection.
+     */
+    private static class ConnectionReferences {
+
+        private int referenceCount = 1;
+
+        /**
+         * Adds a channel, unless every channel has already been closed.
+         *
+         * @return {@code true} if the channel was added, otherwise {@code false}.
+         */
+        synchronized boolean retain() {
+            if (referenceCount == 0) {
+                return false;
+            }
+            referenceCount++;
+            return true;
+        }
+
+        /**
+         * Removes a channel.
+         *
+         * @return {@code true} if this was the last channel, otherwise {@code false}.
+         */
+        synchronized boolean release() {
+            referenceCount--;
+            return referenceCount == 0;
+        }
+    }
+
+    /**
+     * Writes a message, including its framing, to the SSH channel.
+     */
+    @FunctionalInterface
+    private interface MessageWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads a message that is being sent. A failure to read the message ends it, rather than
+     * failing the write, so the framing is still completed and the device still responds; the
+     * response is failed before the message ends, so whatever the device responds is discarded.
+     */
+    private static final class MessageReadingInputStream extends FilterInputStream {
+
+        private final PendingResponse response;
+        private boolean failed;
+
+        private MessageReadingInputStream(final InputStream in, final PendingResponse response) {
+            super(in);
+            this.response = response;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (failed) {
+                return -1;
+            }
+            try {
+                return super.read(b, off, len);
+            } catch (final IOException e) {
+                failed = true;
+                response.fail(new NetconfException("Unable to read message", e));
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * The response to a message that has been sent.
+     */
+    private interface PendingResponse {
+
+        /**
+         * Returns the message-id of the RPC the response is for, so that a reply received out of
+         * order can be matched with it.
+         *
+         * @return the message-id, or null if the message is not an RPC.
+         */
+        default String getMessageId() {
+            return null;
+        }
+
+        /**
+         * Returns the listener that is passed the content of the response as it is received.
+         *
+         * @return the listener, or null if the response is collected and passed to
+         *     {@link #complete(SegmentedBuffer.Content)}.
+         */
+        default MessageFraming.MessageListener getContentListener() {
+            return null;
+        }
+
+        /**
+         * Completes the response with a message that has been received in full.
+         *
+         * @param message the content of the message, encoded as UTF-8. The response owns the
+         *                content, so must close it once it has been used.
+         */
+        void complete(SegmentedBuffer.Content message);
+
+        void fail(NetconfException exception);
+    }
+
+    /**
+     * A response that is returned as a String.
+     */
+    private static final class StringResponse implements PendingResponse {
+
+        private final CompletableFuture<String> response = new CompletableFuture<>();
+
+        @Override
+        public void complete(final SegmentedBuffer.Content message) {
+            try {
+                response.complete(message.decode());
+            } finally {
+                message.close();
+            }
+        }
+
+        @Override
+        public void fail(final NetconfException exception) {
+            response.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * A response that is passed on as the bytes that were received.
+     */
+    private static final class BytesResponse implements PendingResponse {
+
+        private final CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+
+        @Override
+        public void complete(final SegmentedBuffer.Content message) {
+            try {
+                response.complete(message.copy());
+            } finally {
+                message.close();
+            }
+        }
+
+        @Override
+        public void fail(final NetconfException exception) {
+            response.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * A reply that is decoded - either on another thread as it is received, or once it has been
+     * received in full.
+     */
+    private static final class ParsingResponse<T>
+        implements PendingResponse, MessageFraming.MessageListener {
+
+        private final CompletableFuture<T> reply = new CompletableFuture<>();
+        private final String messageId;
+        private final ReplyDecoder<T> decoder;
+        private final XmlParser xmlParser;
+        private final Duration readTimeout;
+        // Cleared if no reply parser thread is free once the reply starts to arrive
+        private boolean parseWhileReceiving;
+        private final MinaSshClientContext replyParsers;
+        private final ReplyMemoryBudget.Flow replyFlow;
+        // Creates the buffer a reply that is parsed as it is received is recorded in, if the
+        // decoder keeps the XML of the reply
+        private final Supplier<SegmentedBuffer> recordingFactory;
+        private MessageInputStream content;
+
+        private ParsingResponse(
+            final String messageId,
+            final ReplyDecoder<T> decoder,
+            final XmlParser xmlParser,
+            final Duration readTimeout,
+            final boolean parseWhileReceiving,
+            final MinaSshClientContext replyParsers,
+            final ReplyMemoryBudget.Flow replyFlow,
+            final Supplier<SegmentedBuffer> recordingFactory
+        ) {
+            this.messageId = messageId;
+            this.decoder = decoder;
+            this.xmlParser = xmlParser;
+            this.readTimeout = readTimeout;
+            this.parseWhileReceiving = parseWhileReceiving;
+            this.replyParsers = replyParsers;
+            this.replyFlow = replyFlow;
+            this.recordingFactory = recordingFactory;
+        }
+
+        @Override
+        public String getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * Starts parsing the reply, as it starts to arrive, unless no reply parser thread is
+         * free - in which case the reply is collected, then parsed, instead.
+         */
+        @Override
+        public synchronized MessageFraming.MessageListener getContentListener() {
+            if (parseWhileReceiving && content == null) {
+                final MessageInputStream messageStream =
+                    new MessageInputStream(readTimeout, replyFlow, recordingFactory);
+                if (replyParsers.tryParse(() -> parse(messageStream))) {
+                    content = messageStream;
+                } else {
+                    log.debug("Every reply parser thread is busy; collecting reply instead");
+                    parseWhileReceiving = false;
+                }
+            }
+            return parseWhileReceiving ? this : null;
+        }
+
+        @Override
+        public void onMessageData(final byte[] b, final int off, final int len) {
+            getContent().receive(b, off, len);
+        }
+
+        @Override
+        public void onMessageEnd() {
+            getContent().end();
+        }
+
+        private synchronized MessageInputStream getContent() {
+            return content;
+        }
+
+        private void parse(final MessageInputStream messageStream) {
+            try {
+                final T decodedReply = decoder.decode(messageStream, xmlParser);
+                log.debug("Received:\n{}", decodedReply);
+                reply.complete(decodedReply);
+            } catch (final SAXException e) {
+                // Discard the rest of the reply as it arrives
+                messageStream.close();
+                reply.completeExceptionally(
+                    new NetconfException("Unable to parse response from server", e));
+            } catch (final RuntimeException e) {
+                messageStream.close();
+                reply.completeExceptionally(e);
+            } finally {
+                // Whatever was recorded, but not taken by the reply, is no longer needed
+                messageStream.releaseRecording();
+            }
+        }
+
+        @Override
+        public void complete(final SegmentedBuffer.Content message) {
+            // The segments are read as a single stream, rather than copied into a single array;
+            // a streaming reply closes the stream, and so the content, once it has been read
+            boolean closeMessage = !decoder.isStreaming();
+            try {
+                reply.complete(decoder.decode(message.newInputStream(), xmlParser));
+            } catch (final SAXException e) {
+                closeMessage = true;
+                reply.completeExceptionally(
+                    new NetconfException("Unable to parse response from server", e));
+            } catch (final RuntimeException e) {
+                closeMessage = true;
+                reply.completeExceptionally(e);
+            } finally {
+                if (closeMessage) {
+                    message.close();
+                }
+            }
+        }
+
+        @Override
+        public void fail(final NetconfException exception) {
+            reply.completeExceptionally(exception);
+            final MessageInputStream messageStream;
+            synchronized (this) {
+                messageStream = content;
+            }
+            if (messageStream != null) {
+                messageStream.fail(new IOException(exception));
+            }
+        }
+    }
+
+    /**
+     * Collects the content of each message received from the device, or passes it to the
+     * response being parsed as it is received.
+     */
+    private class ResponseListener implements MessageFraming.MessageListener {
+
+        private final SegmentedBuffer responseBuffer;
+        // The response whose content is passed on as it is received, if any
+        private PendingResponse receivingResponse;
+        private boolean receiving;
+
+        ResponseListener(final SegmentedBuffer responseBuffer) {
+            this.responseBuffer = responseBuffer;
+        }
+
+        @Override
+        public void onMessageData(final byte[] b, final int off, final int len) {
+            if (!receiving) {
+                receiving = true;
+                receivingResponse = peekContentListeningResponse();
+            }
+            if (receivingResponse != null) {
+                receivingResponse.getContentListener().onMessageData(b, off, len);
+            } else {
+                responseBuffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void onMessageEnd() {
+            final PendingResponse response =
+                receiving ? receivingResponse : peekContentListeningResponse();
+            receiving = false;
+            receivingResponse = null;
+            if (response != null) {
+                synchronized (responseLock) {
+                    outstandingResponses.remove(response);
+                }
+                response.getContentListener().onMessageEnd();
+                return;
+            }
+            final SegmentedBuffer.Content message;
+            try {
+                message = responseBuffer.takeContent();
+            } catch (final IOException e) {
+                onMessageFailed(new NetconfException("Unable to store message from device", e));
+                return;
+            }
+            // The segments are handed on as they are, rather than copied or decoded to a String
+            onMessageReceived(message);
+        }
+    }
+
+    /**
+     * The netconf subsystem channel. The window for data received from the device is only
+     * returned once the {@link ReplyMemoryBudget} allows, so a device is stalled - rather than
+     * the heap grown - whilst the budget is used up.
+     */
+    private static final class NetconfChannel extends ChannelSubsystem {
+
+        private final ReplyMemoryBudget.Flow replyFlow;
+
+        NetconfChannel(final ReplyMemoryBudget replyMemoryBudget) {
+            super("netconf");
+            this.replyFlow = replyMemoryBudget.newFlow(this::returnWindow);
+        }
+
+        @Override
+        protected void doWriteData(final byte[] data, final int off, final long len)
+            throws IOException {
+            if (isClosing()) {
+                return;
+            }
+            // Unlike the superclass, the window is not returned as soon as the data is written
+            out.write(data, off, (int) len);
+            out.flush();
+            replyFlow.onReceived(len);
+        }
+
+        private void returnWindow(final long bytes) {
+            try {
+                getLocalWindow().consumeAndCheck(bytes);
+            } catch (final IOException e) {
+                log.warn("Unable to return window of netconf channel", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,554 @@
+package net.juniper.netconf;
+
+import static java.util.Optional.ofNullable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import net.juniper.netconf.exception.NetconfTimeoutException;
+
+/**
+ * Runs the same task against every device in a fleet, with a bounded number of devices being
+ * worked on at once - both overall, and within each site. Each device is given a deadline, and
+ * the result for each device is passed to a consumer as soon as it is known, so the results for
+ * the whole fleet never need to be held in memory.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code}
+ * try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+ *     .maxConcurrency(200)
+ *     .maxConcurrencyPerSite(20)
+ *     .siteResolver(device -> device.getAddress().split("\\.")[1])
+ *     .deviceTimeout(Duration.ofMinutes(2))
+ *     .build()) {
+ *
+ *     final NetconfFleetExecutor.Summary summary = executor.execute(
+ *         devices,
+ *         session -> session.executeRpc("<get-software-information/>"),
+ *         result -> log.info("{}: {}", result.getDevice().getAddress(), result.isSuccessful())
+ *     );
+ * }
+ * {@code}
+ * </pre>
+ */
+@Log4j2
+public final class NetconfFleetExecutor implements AutoCloseable {
+
+    /**
+     * The site of every device if no {@link #siteResolver} is supplied.
+     */
+    public static final String DEFAULT_SITE = "default";
+
+    /**
+     * The maximum number of devices worked on at once. Defaults to 64.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * The maximum number of devices in the same site worked on at once. Defaults to the
+     * {@link #maxConcurrency}.
+     */
+    private final int maxConcurrencyPerSite;
+
+    /**
+     * Determines the site of each device. Defaults to placing every device in the
+     * {@link #DEFAULT_SITE}.
+     */
+    private final Function<Device, String> siteResolver;
+
+    /**
+     * The maximum amount of time to spend on each device, including opening the session but not
+     * time spent waiting for a worker thread. If this elapses the thread working on the device
+     * is interrupted, and the device fails with a {@link NetconfTimeoutException}. Defaults to
+     * five minutes. Set to {@code Duration.ZERO} to not limit the time spent on each device.
+     */
+    private final Duration deviceTimeout;
+
+    /**
+     * If supplied, sessions are borrowed from this pool instead of being opened - and closed -
+     * for every device.
+     */
+    private final NetconfSessionPool sessionPool;
+
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final Set<Execution<?>> executions = ConcurrentHashMap.newKeySet();
+
+    @Builder
+    private NetconfFleetExecutor(
+        final Integer maxConcurrency,
+        final Integer maxConcurrencyPerSite,
+        final Function<Device, String> siteResolver,
+        final Duration deviceTimeout,
+        final NetconfSessionPool sessionPool
+    ) {
+        this.maxConcurrency = ofNullable(maxConcurrency).orElse(64);
+        this.maxConcurrencyPerSite = ofNullable(maxConcurrencyPerSite).orElse(this.maxConcurrency);
+        this.siteResolver = ofNullable(siteResolver).orElse(device -> DEFAULT_SITE);
+        this.deviceTimeout = ofNullable(deviceTimeout).orElseGet(() -> Duration.ofMinutes(5));
+        this.sessionPool = sessionPool;
+
+        if (this.maxConcurrency <= 0 || this.maxConcurrencyPerSite <= 0) {
+            throw new IllegalArgumentException("The maximum concurrency must be positive");
+        }
+
+        this.workers = Executors.newFixedThreadPool(
+            this.maxConcurrency, newThreadFactory("netconf-fleet-worker-"));
+        this.deadlines =
+            new ScheduledThreadPoolExecutor(1, newThreadFactory("netconf-fleet-deadline-"));
+        // Most devices complete before their deadline, so don't keep the deadlines until then
+        this.deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs the task against every device, and waits for them all to complete. Devices are
+     * taken from the iterable only as they are ready to be worked on; at most
+     * {@link #maxConcurrency} devices are taken in advance whilst waiting for their site to have
+     * capacity.
+     *
+     * @param devices  the devices to run the task against.
+     * @param task     the task to run with a session to each device.
+     * @param results  receives the result for each device as soon as it is known. This is never
+     *                 called concurrently, but may be called by any thread.
+     * @param <T>      the type of result returned by the task.
+     * @return a count of the devices that succeeded and failed.
+     * @throws InterruptedException if interrupted whilst waiting for the devices to complete. Any
+     *                              devices being worked on are interrupted too, and no further
+     *                              devices are started; devices that were taken but not
+     *                              started fail with a {@link CancellationException}.
+     */
+    public <T> Summary execute(
+        final Iterable<Device> devices,
+        final SessionTask<T> task,
+        final Consumer<DeviceResult<T>> results
+    ) throws InterruptedException {
+        if (workers.isShutdown()) {
+            throw new IllegalStateException("The fleet executor is closed");
+        }
+        final Execution<T> execution = new Execution<>(devices.iterator(), task, results);
+        executions.add(execution);
+        try {
+            execution.await();
+        } finally {
+            executions.remove(execution);
+        }
+        return execution.getSummary();
+    }
+
+    /**
+     * Stops the threads used by this executor; any devices still being worked on are
+     * interrupted, and devices that are waiting to be worked on fail with a
+     * {@link CancellationException}, so that any {@link #execute(Iterable, SessionTask, Consumer)}
+     * in progress returns once the interrupted devices complete.
+     */
+    @Override
+    public void close() {
+        executions.forEach(execution -> execution.stop("The fleet executor is closed"));
+        workers.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    /**
+     * A task run with a session to each device.
+     *
+     * @param <T> the type of result returned by the task.
+     */
+    @FunctionalInterface
+    public interface SessionTask<T> {
+
+        /**
+         * Runs the task.
+         *
+         * @param session an open session to the device.
+         * @return the result of the task.
+         * @throws Exception if the task fails.
+         */
+        T apply(NetconfSession session) throws Exception;
+    }
+
+    /**
+     * The outcome of running a task against a single device.
+     *
+     * @param <T> the type of result returned by the task.
+     */
+    @Value
+    @SuppressFBWarnings(
+        value = {"EI_EXPOSE_REP", "EI_EXPOSE_REP2"},
+        justification = "The failure is passed on as it was thrown"
+    )
+    public static class DeviceResult<T> {
+
+        /**
+         * The device the task was run against.
+         */
+        Device device;
+
+        /**
+         * The site of the device.
+         */
+        String site;
+
+        /**
+         * The value returned by the task, or {@code null} if it failed.
+         */
+        T result;
+
+        /**
+         * The reason the task failed, or {@code null} if it succeeded.
+         */
+        Throwable failure;
+
+        /**
+         * How long the device took, including opening the session.
+         */
+        Duration duration;
+
+        /**
+         * Indicates if the task succeeded.
+         *
+         * @return {@code true} if the task returned a result, otherwise {@code false}.
+         */
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * The number of devices that succeeded and failed.
+     */
+    @Value
+    public static class Summary {
+
+        /**
+         * The number of devices for which the task returned a result.
+         */
+        long succeeded;
+
+        /**
+         * The number of devices that failed - including those that timed out.
+         */
+        long failed;
+
+        /**
+         * The number of devices that did not complete before the deadline.
+         */
+        long timedOut;
+    }
+
+    /**
+     * The state of a single call to {@link #execute(Iterable, SessionTask, Consumer)}.
+     */
+    private final class Execution<T> {
+
+        private final Iterator<Device> devices;
+        private final SessionTask<T> task;
+        private final Consumer<DeviceResult<T>> results;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition finished = lock.newCondition();
+        // Devices waiting for their site to have capacity
+        private final Map<String, Deque<Device>> waitingDevices = new HashMap<>();
+        private final Map<String, Integer> runningPerSite = new HashMap<>();
+        private final Set<DeviceRun> runs = new HashSet<>();
+        private final Object resultsLock = new Object();
+        private int running;
+        private int waiting;
+        private long succeeded;
+        private long failed;
+        private long timedOut;
+        private volatile boolean stopped;
+
+        Execution(
+            final Iterator<Device> devices,
+            final SessionTask<T> task,
+            final Consumer<DeviceResult<T>> results
+        ) {
+            this.devices = devices;
+            this.task = task;
+            this.results = results;
+        }
+
+        void await() throws InterruptedException {
+            lock.lock();
+            try {
+                startDevices(null);
+                while (running > 0) {
+                    finished.await();
+                }
+            } catch (final InterruptedException e) {
+                stop("The fleet execution was interrupted");
+                throw e;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Stops taking devices; devices that are waiting to be worked on fail, and those being
+         * worked on are interrupted.
+         */
+        void stop(final String reason) {
+            lock.lock();
+            try {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                waitingDevices.forEach((site, siteDevices) -> siteDevices.forEach(device ->
+                    report(new DeviceResult<>(device, site, null,
+                        new CancellationException(reason), Duration.ZERO), false)));
+                waitingDevices.clear();
+                waiting = 0;
+                // Cancelling a run that has not started finishes it, so removes it from the runs
+                new ArrayList<>(runs).forEach(run -> run.cancel(reason));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Summary getSummary() {
+            synchronized (resultsLock) {
+                return new Summary(succeeded, failed, timedOut);
+            }
+        }
+
+        /**
+         * Starts as many devices as capacity allows; devices waiting for the site that has just
+         * gained capacity are started before any further devices are taken. Devices waiting for
+         * their site are held in memory, so no more are taken once {@link #maxConcurrency} are
+         * waiting. Must be called whilst holding the lock.
+         */
+        private void startDevices(final String siteWithCapacity) {
+            if (stopped) {
+                return;
+            }
+            if (siteWithCapacity != null) {
+                final Deque<Device> siteDevices = waitingDevices.get(siteWithCapacity);
+                if (siteDevices != null && running < maxConcurrency) {
+                    final Device device = siteDevices.poll();
+                    waiting--;
+                    if (siteDevices.isEmpty()) {
+                        waitingDevices.remove(siteWithCapacity);
+                    }
+                    start(device, siteWithCapacity);
+                }
+            }
+            while (!stopped && running < maxConcurrency && waiting < maxConcurrency
+                && devices.hasNext()) {
+                final Device device = devices.next();
+                final String site = siteResolver.apply(device);
+                if (runningPerSite.getOrDefault(site, 0) < maxConcurrencyPerSite) {
+                    start(device, site);
+                } else {
+                    waitingDevices.computeIfAbsent(site, key -> new ArrayDeque<>()).add(device);
+                    waiting++;
+                }
+            }
+        }
+
+        private void start(final Device device, final String site) {
+            final DeviceRun run = new DeviceRun(device, site);
+            running++;
+            runningPerSite.merge(site, 1, Integer::sum);
+            runs.add(run);
+            try {
+                workers.execute(run);
+            } catch (final RejectedExecutionException e) {
+                // The executor has been closed; this fails the run, and any others waiting
+                stop("The fleet executor is closed");
+            }
+        }
+
+        private void onFinished(final DeviceRun run) {
+            lock.lock();
+            try {
+                running--;
+                runs.remove(run);
+                ofNullable(run.deadline).ifPresent(deadline -> deadline.cancel(false));
+                if (runningPerSite.merge(run.site, -1, Integer::sum) == 0) {
+                    runningPerSite.remove(run.site);
+                }
+                startDevices(run.site);
+                if (running == 0) {
+                    finished.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void report(final DeviceResult<T> result, final boolean isTimeout) {
+            synchronized (resultsLock) {
+                if (result.isSuccessful()) {
+                    succeeded++;
+                } else {
+                    failed++;
+                }
+                if (isTimeout) {
+                    timedOut++;
+                }
+                try {
+                    results.accept(result);
+                } catch (final RuntimeException e) {
+                    log.warn("Unable to pass result for {} to consumer",
+                        result.getDevice().getAddress(), e);
+                }
+            }
+        }
+
+        /**
+         * Runs the task against a single device. A run may be cancelled before it starts, in
+         * which case it never runs the task, but is still finished.
+         */
+        private final class DeviceRun implements Runnable {
+
+            private final Device device;
+            private final String site;
+            // Set once the run has started - or has been cancelled before it started
+            private final AtomicBoolean started = new AtomicBoolean();
+            // Set once a result has been reported - either by the task or the deadline
+            private final AtomicBoolean reported = new AtomicBoolean();
+            private volatile long startedAt;
+            private volatile ScheduledFuture<?> deadline;
+            // The thread running the task, to be interrupted at the deadline
+            private Thread thread;
+
+            DeviceRun(final Device device, final String site) {
+                this.device = device;
+                this.site = site;
+            }
+
+            @Override
+            public void run() {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                startedAt = System.nanoTime();
+                setThread(Thread.currentThread());
+                try {
+                    if (stopped) {
+                        throw new CancellationException("The fleet execution was stopped");
+                    }
+                    scheduleDeadline();
+                    final T result = sessionPool == null ? runWithNewSession() : runWithPool();
+                    reportOnce(result, null);
+                } catch (final Exception e) {
+                    reportOnce(null, e);
+                } finally {
+                    setThread(null);
+                    // Don't leave an interrupt from the deadline for the next run on this thread
+                    Thread.interrupted();
+                    onFinished(this);
+                }
+            }
+
+            private void scheduleDeadline() {
+                if (!deviceTimeout.isZero()) {
+                    try {
+                        deadline = deadlines.schedule(
+                            this::onDeadline, deviceTimeout.toNanos(), TimeUnit.NANOSECONDS);
+                    } catch (final RejectedExecutionException e) {
+                        // The executor has been closed, so this run has been interrupted
+                    }
+                }
+            }
+
+            private T runWithNewSession() throws Exception {
+                try (final NetconfSession session = device.openSession()) {
+                    return task.apply(session);
+                }
+            }
+
+            private T runWithPool() throws Exception {
+                try (final PooledNetconfSession session = sessionPool.borrowSession(device)) {
+                    try {
+                        return task.apply(session.getSession());
+                    } catch (final Exception e) {
+                        // The session may have been left in an unknown state
+                        session.invalidate();
+                        throw e;
+                    }
+                }
+            }
+
+            void onDeadline() {
+                if (reported.compareAndSet(false, true)) {
+                    log.info("Timeout running task against {}", device::getAddress);
+                    report(new DeviceResult<>(device, site, null,
+                        new NetconfTimeoutException("Timeout running task against device"),
+                        elapsed()), true);
+                    interrupt();
+                }
+            }
+
+            /**
+             * Fails the run if it has not yet started, otherwise interrupts it.
+             */
+            void cancel(final String reason) {
+                if (started.compareAndSet(false, true)) {
+                    if (reported.compareAndSet(false, true)) {
+                        report(new DeviceResult<>(device, site, null,
+                            new CancellationException(reason), Duration.ZERO), false);
+                    }
+                    onFinished(this);
+                } else {
+                    interrupt();
+                }
+            }
+
+            private synchronized void setThread(final Thread thread) {
+                this.thread = thread;
+            }
+
+            private synchronized void interrupt() {
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+
+            private void reportOnce(final T result, final Throwable failure) {
+                if (reported.compareAndSet(false, true)) {
+                    report(new DeviceResult<>(device, site, result, failure, elapsed()), false);
+                }
+            }
+
+            private Duration elapsed() {
+                return Duration.ofNanos(System.nanoTime() - startedAt);
+            }
+        }
+    }
+}
@@ -1,13 +1,29 @@
 package net.juniper.netconf;
 
-import java.io.IOException;
+import static java.util.Optional.ofNullable;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.log4j.Log4j2;
 import net.juniper.netconf.element.Hello;
+import net.juniper.netconf.element.ProjectedReply;
+import net.juniper.netconf.element.Projection;
+import net.juniper.netconf.element.RecordDecoder;
+import net.juniper.netconf.element.RecordIterator;
+import net.juniper.netconf.element.ReplyDecoder;
+import net.juniper.netconf.element.Rpc;
 import net.juniper.netconf.element.RpcCloseSession;
+import net.juniper.netconf.element.RpcReply;
 import net.juniper.netconf.exception.NetconfException;
+import net.juniper.netconf.exception.NetconfTimeoutException;
 import org.apache.logging.log4j.CloseableThreadContext;
 import org.xml.sax.SAXException;
 
@@ -18,41 +34,122 @@ import org.xml.sax.SAXException;
 public class NetconfSession implements AutoCloseable {
 
     private static final String NSI = "NSI";
-    private static long nextNetconfSessionId = 1;
+    private static final AtomicLong NEXT_NETCONF_SESSION_ID = new AtomicLong(1);
     private final String currentNetconfSessionId;
     private final Device device;
     private final NetconfSshSession netconfSshSession;
-    private long nextMessageId = 1;
+    private final AtomicLong nextMessageId = new AtomicLong(1);
+    private final Map<String, PendingReply<?>> pendingReplies =
+        new ConcurrentHashMap<>();
     private Hello serverHello;
 
     private static String getNextNetconfSessionId() {
-        return String.valueOf(nextNetconfSessionId++);
+        return String.valueOf(NEXT_NETCONF_SESSION_ID.getAndIncrement());
     }
 
     NetconfSession(final Device device) {
+        this(device, newNetconfSshSession(device));
+    }
+
+    private NetconfSession(final Device device, final NetconfSshSession netconfSshSession) {
         this.currentNetconfSessionId = getNextNetconfSessionId();
         try (final CloseableThreadContext.Instance ignored
                  = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
             this.device = device;
-            try {
-                this.netconfSshSession = device.getSshImplementation().newInstance();
-            } catch (final InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(
-                    "Unable to instantiate instance of class "
-                        + device.getSshImplementation().getName(),
-                    e
-                );
-            }
+            this.netconfSshSession = netconfSshSession;
             log.info("New NetconfSession created");
         }
     }
 
+    private static NetconfSshSession newNetconfSshSession(final Device device) {
+        try {
+            return device.getSshImplementation().newInstance();
+        } catch (final InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(
+                "Unable to instantiate instance of class "
+                    + device.getSshImplementation().getName(),
+                e
+            );
+        }
+    }
+
     void connect() throws NetconfException {
         try (final CloseableThreadContext.Instance ignored
                  = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
-            netconfSshSession.openSession(device);
-            sendHello();
+            try {
+                netconfSshSession.openSession(device);
+                sendHello();
+            } catch (final NetconfException | RuntimeException e) {
+                netconfSshSession.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Connects to the device without blocking the calling thread; the SSH connection,
+     * authentication, channel and &lt;hello&gt; exchange are each started once the previous step
+     * completes.
+     *
+     * @return this session, once it has connected. This completes exceptionally with a
+     *     {@link NetconfException} if the session could not be established.
+     */
+    CompletableFuture<NetconfSession> connectAsync() {
+        final CompletableFuture<NetconfSession> connected = new CompletableFuture<>();
+        try (final CloseableThreadContext.Instance ignored
+                 = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
+            netconfSshSession.openSessionAsync(device)
+                .thenCompose(ignore -> Futures.withTimeout(
+                    netconfSshSession.sendMessageAsync(newClientHello()),
+                    device.getReadTimeout(),
+                    () -> new NetconfTimeoutException("Timeout waiting for device to respond")))
+                .whenComplete((response, throwable) -> {
+                    Throwable failure = throwable;
+                    if (failure == null) {
+                        try {
+                            onServerHello(response);
+                        } catch (final NetconfException | RuntimeException e) {
+                            failure = e;
+                        }
+                    }
+                    if (failure == null) {
+                        connected.complete(this);
+                    } else {
+                        netconfSshSession.close();
+                        connected.completeExceptionally(Futures.unwrap(failure));
+                    }
+                });
+        }
+        return connected;
+    }
+
+    /**
+     * Opens another NETCONF session to the same device, as a new channel over the SSH connection
+     * used by this session - so without the cost of connecting and authenticating again. The
+     * new session is independent of this one; it has its own &lt;hello&gt; exchange, and must be
+     * closed separately. The SSH connection is closed once every session using it is closed.
+     *
+     * @return a new NETCONF session.
+     * @throws NetconfException if a new session could not be opened, or the SSH implementation
+     *                          does not support multiple channels.
+     */
+    public NetconfSession openAdditionalSession() throws NetconfException {
+        final NetconfSshSession additionalChannel;
+        try (final CloseableThreadContext.Instance ignored
+                 = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
+            additionalChannel = netconfSshSession.openAdditionalChannel();
+        }
+        final NetconfSession session = new NetconfSession(device, additionalChannel);
+        try (final CloseableThreadContext.Instance ignored
+                 = CloseableThreadContext.put(NSI, session.currentNetconfSessionId)) {
+            try {
+                session.sendHello();
+            } catch (final NetconfException | RuntimeException e) {
+                additionalChannel.close();
+                throw e;
+            }
         }
+        return session;
     }
 
     /**
@@ -73,60 +170,320 @@ public class NetconfSession implements AutoCloseable {
                  = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
             if (netconfSshSession.isConnected()) {
                 netconfSshSession.sendMessage(RpcCloseSession.builder()
-                    .messageId(String.valueOf(nextMessageId++))
-                    .build()
-                    .getXml());
+                    .messageId(String.valueOf(nextMessageId.getAndIncrement()))
+                    .build());
             }
             netconfSshSession.close();
             log.info("Disconnected from {}:{}", device::getAddress, device::getPort);
         }
     }
 
+    /**
+     * Executes an RPC on the device, and waits for the reply.
+     *
+     * @param rpc The content of the &lt;rpc&gt; element, e.g. {@code <get-config>...</get-config>}.
+     * @return the reply from the device.
+     * @throws NetconfException if the RPC could not be sent, or the reply was not received in
+     *                          time.
+     * @see #sendAsync(String)
+     */
+    public RpcReply executeRpc(final String rpc) throws NetconfException {
+        return awaitReply(sendAsync(rpc));
+    }
+
+    /**
+     * Executes an RPC on the device, and waits for the values selected from the reply.
+     *
+     * @param rpc        The content of the &lt;rpc&gt; element, e.g.
+     *                   {@code <get-interface-information/>}.
+     * @param projection Selects the values to extract from the reply.
+     * @return the values selected from the reply from the device.
+     * @throws NetconfException if the RPC could not be sent, or the reply was not received in
+     *                          time.
+     * @see #sendAsync(String, Projection)
+     */
+    public ProjectedReply executeRpc(final String rpc, final Projection projection)
+        throws NetconfException {
+        return awaitReply(sendAsync(rpc, projection));
+    }
+
+    /**
+     * Executes an RPC on the device, and waits for the start of the reply; the records in the
+     * reply are then read one at a time, as they are requested. If the device is not configured
+     * to {@link Device#getParseWhileReceiving() parse while receiving}, the reply is still read
+     * as it is received. The iterator must be closed once it has been used.
+     *
+     * @param rpc        The content of the &lt;rpc&gt; element, e.g.
+     *                   {@code <get-route-information/>}.
+     * @param recordPath The path of the records in the reply, e.g.
+     *                   {@code route-information/route-table/rt}; see {@link RecordDecoder}.
+     * @return an iterator over the records in the reply from the device. If the rest of the reply
+     *     is not received in time, or cannot be parsed, reading the next record throws an
+     *     {@link IllegalStateException}.
+     * @throws NetconfException if the RPC could not be sent, or the reply was not received in
+     *                          time.
+     */
+    public RecordIterator iterateRecords(final String rpc, final String recordPath)
+        throws NetconfException {
+        return awaitReply(sendAsync(rpc, RecordDecoder.forPath(recordPath)));
+    }
+
+    private <T> T awaitReply(final CompletableFuture<T> reply) throws NetconfException {
+        try {
+            return reply.get(device.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            reply.cancel(false);
+            // In case the reply was received after all
+            reply.thenAccept(NetconfSession::discard);
+            throw new NetconfTimeoutException("Timeout waiting for device to respond", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof NetconfException) {
+                throw (NetconfException) cause;
+            }
+            throw new NetconfException("Unable to receive reply from device", cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NetconfException("Interrupted waiting for device to respond", e);
+        }
+    }
+
+    /**
+     * Sends an RPC to the device without waiting for the reply. Several RPCs may be outstanding
+     * at once; they are written to the device back-to-back, and each reply is matched to its RPC
+     * using the message-id. Note that the returned future may be completed by the thread that
+     * receives data from the device, so any long-running dependent actions should be executed
+     * asynchronously.
+     *
+     * @param rpc The content of the &lt;rpc&gt; element, e.g. {@code <get-config>...</get-config>}.
+     * @return the reply from the device. This completes exceptionally with a
+     *     {@link NetconfException} if the RPC could not be sent, the reply could not be parsed or
+     *     the session is closed before the reply is received.
+     */
+    public CompletableFuture<RpcReply> sendAsync(final String rpc) {
+        return send(rpc, ReplyDecoder.rpcReply());
+    }
+
+    /**
+     * Sends an RPC to the device without waiting for the reply, as {@link #sendAsync(String)},
+     * and extracts only the values selected by a projection from the reply. Neither a document
+     * nor the XML of the reply is kept; if the device is configured to
+     * {@link Device#getParseWhileReceiving() parse while receiving}, the reply is never held in
+     * memory as a whole.
+     *
+     * <p>A reply that is parsed as it is received is decoded for the oldest outstanding RPC,
+     * before its message-id is known. So if the device replies out of order to outstanding RPCs
+     * that decode their replies differently - e.g. one with a projection, and one without - both
+     * RPCs fail. Replies that are collected before they are parsed are matched by message-id.
+     *
+     * @param rpc        The content of the &lt;rpc&gt; element, e.g.
+     *                   {@code <get-interface-information/>}.
+     * @param projection Selects the values to extract from the reply.
+     * @return the values selected from the reply from the device. This completes exceptionally
+     *     with a {@link NetconfException} if the RPC could not be sent, the reply could not be
+     *     parsed or the session is closed before the reply is received.
+     */
+    public CompletableFuture<ProjectedReply> sendAsync(
+        final String rpc,
+        final Projection projection
+    ) {
+        return send(rpc, projection);
+    }
+
+    /**
+     * Sends an RPC to the device without waiting for the reply, as {@link #sendAsync(String)};
+     * once the start of the reply has been received, the records in it are read one at a time,
+     * as they are requested. The iterator must be closed once it has been used.
+     *
+     * <p>As the reply is parsed as it is received, it is matched with its RPC by order, as
+     * described by {@link #sendAsync(String, Projection)}.
+     *
+     * @param rpc     The content of the &lt;rpc&gt; element, e.g.
+     *                {@code <get-route-information/>}.
+     * @param records Identifies the records in the reply.
+     * @return an iterator over the records in the reply from the device. This completes
+     *     exceptionally with a {@link NetconfException} if the RPC could not be sent, the start of
+     *     the reply could not be parsed or the session is closed before it is received.
+     * @see #iterateRecords(String, String)
+     */
+    public CompletableFuture<RecordIterator> sendAsync(
+        final String rpc,
+        final RecordDecoder records
+    ) {
+        return send(rpc, records);
+    }
+
+    private <T> CompletableFuture<T> send(final String rpc, final ReplyDecoder<T> decoder) {
+        try (final CloseableThreadContext.Instance ignored
+                 = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
+            final String messageId = String.valueOf(nextMessageId.getAndIncrement());
+            final PendingReply<T> pendingReply = new PendingReply<>(decoder);
+            final CompletableFuture<T> reply = pendingReply.reply;
+            pendingReplies.put(messageId, pendingReply);
+            reply.whenComplete((decodedReply, throwable) ->
+                pendingReplies.remove(messageId, pendingReply));
+            netconfSshSession.sendRpcAsync(
+                Rpc.builder()
+                    .messageId(messageId)
+                    .content(rpc)
+                    .build(),
+                decoder,
+                device.getXmlParser()
+            ).whenComplete((decodedReply, throwable) -> {
+                if (throwable != null) {
+                    onReplyFailed(reply, Futures.unwrap(throwable));
+                } else {
+                    onReplyReceived(messageId, decoder, decodedReply);
+                }
+            });
+            return reply;
+        }
+    }
+
+    /**
+     * Passes a reply to the RPC with the same message-id. Replies are received in the same order
+     * as the RPCs were sent, so a reply without a message-id is passed to the RPC it was received
+     * in response to.
+     */
+    private <T> void onReplyReceived(
+        final String expectedMessageId,
+        final ReplyDecoder<T> decoder,
+        final T decodedReply
+    ) {
+        try (final CloseableThreadContext.Instance ignored
+                 = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
+            final String messageId =
+                ofNullable(decoder.getMessageId(decodedReply)).orElse(expectedMessageId);
+            final PendingReply<?> pendingReply = pendingReplies.get(messageId);
+            if (pendingReply == null) {
+                log.warn("Discarding reply with unexpected message-id '{}'", messageId);
+                discard(decodedReply);
+            } else if (!pendingReply.complete(decoder, decodedReply, messageId)) {
+                discard(decodedReply);
+            }
+        }
+    }
+
+    /**
+     * Releases a reply that will not be used. A reply that is still being read, such as a
+     * {@link RecordIterator}, must be closed so the rest of it is discarded.
+     */
+    private static void discard(final Object decodedReply) {
+        if (decodedReply instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) decodedReply).close();
+            } catch (final Exception e) {
+                log.warn("Unable to close discarded reply", e);
+            }
+        }
+    }
+
+    /**
+     * Fails an RPC that could not be sent, or whose reply could not be received - or parsed, in
+     * which case the reply is taken to be the one received in response to it.
+     */
+    private void onReplyFailed(final CompletableFuture<?> reply, final Throwable cause) {
+        if (cause.getCause() instanceof SAXException) {
+            try (final CloseableThreadContext.Instance ignored
+                     = CloseableThreadContext.put(NSI, currentNetconfSessionId)) {
+                log.warn("Unexpected response received from server", cause);
+            }
+        }
+        reply.completeExceptionally(cause);
+    }
+
+    /**
+     * An RPC awaiting its reply, and how that reply is decoded.
+     */
+    private static final class PendingReply<T> {
+
+        private final CompletableFuture<T> reply = new CompletableFuture<>();
+        private final ReplyDecoder<T> decoder;
+
+        private PendingReply(final ReplyDecoder<T> decoder) {
+            this.decoder = decoder;
+        }
+
+        /**
+         * Completes the RPC with a reply, which was decoded for the RPC it was matched with as it
+         * was received - by message-id if it was collected first, otherwise by order. If a reply
+         * parsed as it was received arrived out of order, and the two RPCs decode their replies
+         * differently, the reply cannot be used.
+         *
+         * @return {@code true} if the RPC was completed with the reply, or {@code false} if the
+         *     reply was not used.
+         */
+        @SuppressWarnings("unchecked")
+        private <R> boolean complete(
+            final ReplyDecoder<R> replyDecoder,
+            final R decodedReply,
+            final String messageId
+        ) {
+            if (decoder.equals(replyDecoder)) {
+                return reply.complete((T) decodedReply);
+            }
+            reply.completeExceptionally(new NetconfException(
+                "The reply to message-id '" + messageId + "' was received out of order"));
+            return false;
+        }
+    }
 
     /*
         TODO:
         1. Make the capabilities flexible
         2. request-reboot
-        3. execute arbitrary rpc
-        4. lock-config
-        5. unlock-config
-        6. load-config (XML)
-        7. load-config (text)
-        8. load-set-config
-        9. load-xml-file
-        10. load-text-file
-        11. load-set-file
-        12. commit
-        13. commit-confirm
-        14. commit-full
-        15. commit-config
-        16. get-candidate/running-config
-        17. get-running-config-and-state
-        18. get-data
-        19. validate
-        20. run-cli
-        21. close-config
+        3. lock-config
+        4. unlock-config
+        5. load-config (XML)
+        6. load-config (text)
+        7. load-set-config
+        8. load-xml-file
+        9. load-text-file
+        10. load-set-file
+        11. commit
+        12. commit-confirm
+        13. commit-full
+        14. commit-config
+        15. get-candidate/running-config
+        16. get-running-config-and-state
+        17. get-data
+        18. validate
+        19. run-cli
+        20. close-config
      */
 
 
     private void sendHello() throws NetconfException {
-        final Hello clientHello = Hello.builder().capabilities(
-            Arrays.asList(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0,
-                Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#candidate",
-                Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#confirmed-commit",
-                Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#validate",
-                Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#url?protocol=http,ftp,file")).build();
-        final String serverHello = netconfSshSession.sendMessage(clientHello.getXml());
+        onServerHello(netconfSshSession.sendMessage(newClientHello()));
+    }
+
+    private Hello newClientHello() {
+        final List<String> capabilities = new ArrayList<>();
+        capabilities.add(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0);
+        // NETCONF 1.1 requires chunked framing, which only some SSH implementations support
+        if (netconfSshSession.isMessageFramingSupported()) {
+            capabilities.add(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_1);
+        }
+        capabilities.addAll(Arrays.asList(
+            Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#candidate",
+            Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#confirmed-commit",
+            Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#validate",
+            Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "#url?protocol=http,ftp,file"));
+        return Hello.builder().capabilities(capabilities).build();
+    }
+
+    private void onServerHello(final String serverHello) throws NetconfException {
         try {
-            this.serverHello = Hello.from(serverHello);
-        } catch (final ParserConfigurationException
-            | IOException
-            | SAXException
-            | XPathExpressionException e
-        ) {
+            this.serverHello = Hello.from(serverHello, device.getXmlParser());
+        } catch (final SAXException e) {
             log.warn("Unexpected response received from server: {}", serverHello, e);
             throw new NetconfException("Unable to parse response from server", e);
         }
+        // Both peers have now advertised their capabilities, so use the best common framing
+        if (this.serverHello.hasCapability(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_1)
+            && netconfSshSession.isMessageFramingSupported()) {
+            netconfSshSession.setMessageFraming(new ChunkedFraming());
+        }
     }
 
 }
@@ -0,0 +1,453 @@
+package net.juniper.netconf;
+
+import static java.util.Optional.ofNullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Builder;
+import lombok.extern.log4j.Log4j2;
+import net.juniper.netconf.exception.NetconfException;
+import net.juniper.netconf.exception.NetconfTimeoutException;
+
+/**
+ * A pool of open NETCONF sessions, kept for each device, so that sessions can be reused rather
+ * than connecting, authenticating and exchanging &lt;hello&gt; elements every time one is
+ * needed.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code}
+ * final NetconfSessionPool pool = NetconfSessionPool.builder()
+ *     .maxSessions(4)
+ *     .maxIdleTime(Duration.ofMinutes(5))
+ *     .build();
+ *
+ * try(final PooledNetconfSession pooledSession = pool.borrowSession(device)) {
+ *     final RpcReply reply = pooledSession.getSession().executeRpc(...);
+ *     ....
+ * }
+ * {@code}
+ * </pre>
+ *
+ * <h2>Validation</h2>
+ * A session is only lent if it is still connected. Additionally, a session that has not been
+ * used for the {@link #validationInterval} is checked by executing the {@link #validationRpc} -
+ * if a reply is not received, the session is discarded and another used.
+ *
+ * <h2>Eviction</h2>
+ * Sessions that have not been used for the {@link #maxIdleTime}, or that have been open for
+ * longer than the {@link #maxLifetime}, are closed - apart from the first
+ * {@link #minSessions} of each device, which are replaced instead.
+ */
+@Log4j2
+public final class NetconfSessionPool implements AutoCloseable {
+
+    /**
+     * The RPC used to validate idle sessions if not otherwise specified. As the filter is
+     * empty, no configuration is selected, so the device has very little work to do.
+     */
+    public static final String DEFAULT_VALIDATION_RPC
+        = "<get-config><source><running/></source><filter type=\"subtree\"/></get-config>";
+
+    /**
+     * The minimum number of sessions kept open to each device the pool has been used with.
+     * Defaults to zero.
+     */
+    private final int minSessions;
+
+    /**
+     * The maximum number of sessions - whether lent or idle - open to each device. Defaults to
+     * eight.
+     */
+    private final int maxSessions;
+
+    /**
+     * The maximum amount of time to wait for a session to be available. Defaults to
+     * thirty seconds.
+     */
+    private final Duration borrowTimeout;
+
+    /**
+     * How long a session can remain idle before it is closed. Defaults to ten minutes. Set to
+     * {@code Duration.ZERO} to never close idle sessions.
+     */
+    private final Duration maxIdleTime;
+
+    /**
+     * How long a session can remain open. Defaults to {@code Duration.ZERO}, which means
+     * sessions are not closed however long they have been open.
+     */
+    private final Duration maxLifetime;
+
+    /**
+     * A session that has not been used for this long is validated, with the
+     * {@link #validationRpc}, before it is lent. Defaults to thirty seconds. Set to
+     * {@code Duration.ZERO} to validate a session every time it is lent.
+     */
+    private final Duration validationInterval;
+
+    /**
+     * The content of the &lt;rpc&gt; element used to validate sessions. Defaults to
+     * {@link #DEFAULT_VALIDATION_RPC}.
+     */
+    private final String validationRpc;
+
+    /**
+     * How often idle and expired sessions are closed. Defaults to thirty seconds.
+     */
+    private final Duration evictionInterval;
+
+    private final Map<Device, DevicePool> devicePools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictionExecutor;
+    private volatile boolean closed;
+
+    @Builder
+    private NetconfSessionPool(
+        final Integer minSessions,
+        final Integer maxSessions,
+        final Duration borrowTimeout,
+        final Duration maxIdleTime,
+        final Duration maxLifetime,
+        final Duration validationInterval,
+        final String validationRpc,
+        final Duration evictionInterval
+    ) {
+        this.minSessions = ofNullable(minSessions).orElse(0);
+        this.maxSessions = ofNullable(maxSessions).orElse(8);
+        this.borrowTimeout = ofNullable(borrowTimeout).orElseGet(() -> Duration.ofSeconds(30));
+        this.maxIdleTime = ofNullable(maxIdleTime).orElseGet(() -> Duration.ofMinutes(10));
+        this.maxLifetime = ofNullable(maxLifetime).orElse(Duration.ZERO);
+        this.validationInterval =
+            ofNullable(validationInterval).orElseGet(() -> Duration.ofSeconds(30));
+        this.validationRpc = ofNullable(validationRpc).orElse(DEFAULT_VALIDATION_RPC);
+        this.evictionInterval =
+            ofNullable(evictionInterval).orElseGet(() -> Duration.ofSeconds(30));
+
+        if (this.maxSessions <= 0) {
+            throw new IllegalArgumentException("The maximum number of sessions must be positive");
+        }
+        if (this.minSessions < 0 || this.minSessions > this.maxSessions) {
+            throw new IllegalArgumentException(
+                "The minimum number of sessions must be between zero and the maximum");
+        }
+        if (this.evictionInterval.isNegative() || this.evictionInterval.isZero()) {
+            throw new IllegalArgumentException("The eviction interval must be positive");
+        }
+
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "netconf-session-pool-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictionExecutor.scheduleWithFixedDelay(
+            this::evict,
+            this.evictionInterval.toNanos(),
+            this.evictionInterval.toNanos(),
+            TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Borrows a session to the device, opening a new one if no idle session is available and
+     * the maximum number of sessions to the device has not been reached. The session must be
+     * returned to the pool by closing the {@link PooledNetconfSession}.
+     *
+     * @param device the device the session is required for.
+     * @return an open session to the device.
+     * @throws NetconfTimeoutException if no session became available within the borrow
+     *                                 timeout.
+     * @throws NetconfException        if the pool is closed, or a new session could not be
+     *                                 opened.
+     */
+    public PooledNetconfSession borrowSession(final Device device) throws NetconfException {
+        if (closed) {
+            throw new NetconfException("The session pool is closed");
+        }
+        return devicePools
+            .computeIfAbsent(device, DevicePool::new)
+            .borrowSession(System.nanoTime() + borrowTimeout.toNanos());
+    }
+
+    /**
+     * Returns the number of idle sessions to the device.
+     *
+     * @param device the device.
+     * @return the number of sessions open to the device that are not currently lent.
+     */
+    public int getIdleCount(final Device device) {
+        return ofNullable(devicePools.get(device)).map(DevicePool::getIdleCount).orElse(0);
+    }
+
+    /**
+     * Returns the number of sessions to the device, both idle and lent.
+     *
+     * @param device the device.
+     * @return the number of sessions to the device, including any being opened.
+     */
+    public int getSessionCount(final Device device) {
+        return ofNullable(devicePools.get(device)).map(DevicePool::getSessionCount).orElse(0);
+    }
+
+    /**
+     * Closes the pool, and every idle session. Sessions that are lent are closed when they are
+     * returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictionExecutor.shutdownNow();
+        devicePools.values().forEach(DevicePool::close);
+    }
+
+    void evict() {
+        devicePools.values().forEach(DevicePool::evict);
+    }
+
+    private static boolean hasElapsed(final Duration duration, final long since, final long now) {
+        return !duration.isZero() && now - since >= duration.toNanos();
+    }
+
+    private static void closeSession(final NetconfSession session) {
+        try {
+            session.close();
+        } catch (final NetconfException | RuntimeException e) {
+            log.warn("Unable to close session", e);
+        }
+    }
+
+    /**
+     * A session in the pool, and when it was opened and last used.
+     */
+    private static final class Entry {
+
+        private final NetconfSession session;
+        private final long openedAt;
+        private long lastUsedAt;
+
+        Entry(final NetconfSession session) {
+            this.session = session;
+            this.openedAt = System.nanoTime();
+            this.lastUsedAt = openedAt;
+        }
+    }
+
+    /**
+     * The sessions to a single device.
+     */
+    private final class DevicePool {
+
+        private final Device device;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition sessionReturned = lock.newCondition();
+        // The most recently used sessions are at the front, so idle sessions collect at the back
+        private final Deque<Entry> idleSessions = new ArrayDeque<>();
+        // All sessions, whether lent, idle or being opened
+        private int sessionCount;
+
+        DevicePool(final Device device) {
+            this.device = device;
+        }
+
+        PooledNetconfSession borrowSession(final long deadline) throws NetconfException {
+            while (true) {
+                final Entry entry = takeIdleSessionOrReserve(deadline);
+                final Entry lentEntry = entry == null ? openSession() : entry;
+                if (entry == null || isValid(entry)) {
+                    return new PooledNetconfSession(
+                        lentEntry.session,
+                        invalidated -> returnSession(lentEntry, invalidated)
+                    );
+                }
+                discard(entry);
+            }
+        }
+
+        /**
+         * Takes an idle session, or if there is none but a new session may be opened reserves
+         * space for it.
+         *
+         * @return an idle session, or {@code null} if a new session should be opened.
+         */
+        private Entry takeIdleSessionOrReserve(final long deadline) throws NetconfException {
+            long remaining = deadline - System.nanoTime();
+            lock.lock();
+            try {
+                while (true) {
+                    final Entry entry = idleSessions.pollFirst();
+                    if (entry != null) {
+                        return entry;
+                    }
+                    if (sessionCount < maxSessions) {
+                        sessionCount++;
+                        return null;
+                    }
+                    if (remaining <= 0) {
+                        throw new NetconfTimeoutException(
+                            "Timeout waiting for a session to " + device.getAddress());
+                    }
+                    remaining = sessionReturned.awaitNanos(remaining);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NetconfException(
+                    "Interrupted waiting for a session to " + device.getAddress(), e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Opens a new session, for which space has already been reserved.
+         */
+        private Entry openSession() throws NetconfException {
+            try {
+                log.debug("Opening new pooled session to {}", device::getAddress);
+                return new Entry(device.openSession());
+            } catch (final NetconfException | RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private boolean isValid(final Entry entry) {
+            final long now = System.nanoTime();
+            if (hasElapsed(maxLifetime, entry.openedAt, now) || !entry.session.isConnected()) {
+                return false;
+            }
+            if (!validationInterval.isZero()
+                && now - entry.lastUsedAt < validationInterval.toNanos()) {
+                return true;
+            }
+            try {
+                entry.session.executeRpc(validationRpc);
+                return true;
+            } catch (final NetconfException e) {
+                log.info("Discarding session to {} that failed validation",
+                    device.getAddress(), e);
+                return false;
+            }
+        }
+
+        void returnSession(final Entry entry, final boolean invalidated) {
+            final long now = System.nanoTime();
+            if (closed
+                || invalidated
+                || hasElapsed(maxLifetime, entry.openedAt, now)
+                || !entry.session.isConnected()) {
+                discard(entry);
+                return;
+            }
+            entry.lastUsedAt = now;
+            lock.lock();
+            try {
+                idleSessions.addFirst(entry);
+                sessionReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void discard(final Entry entry) {
+            closeSession(entry.session);
+            release();
+        }
+
+        /**
+         * Releases the space reserved for a session that has been closed.
+         */
+        private void release() {
+            lock.lock();
+            try {
+                sessionCount--;
+                sessionReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void evict() {
+            final long now = System.nanoTime();
+            final List<Entry> evicted = new ArrayList<>();
+            int replacements = 0;
+            lock.lock();
+            try {
+                final Iterator<Entry> iterator = idleSessions.descendingIterator();
+                while (iterator.hasNext()) {
+                    final Entry entry = iterator.next();
+                    final boolean expired = hasElapsed(maxLifetime, entry.openedAt, now);
+                    final boolean idle = hasElapsed(maxIdleTime, entry.lastUsedAt, now);
+                    if (expired || (idle && sessionCount - evicted.size() > minSessions)) {
+                        iterator.remove();
+                        evicted.add(entry);
+                    }
+                }
+                // The reservations for the evicted sessions are kept for any replacements
+                sessionCount -= evicted.size();
+                while (sessionCount < minSessions) {
+                    sessionCount++;
+                    replacements++;
+                }
+                if (!evicted.isEmpty()) {
+                    sessionReturned.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!evicted.isEmpty()) {
+                log.debug("Closing {} idle or expired sessions to {}",
+                    evicted.size(), device.getAddress());
+            }
+            evicted.forEach(entry -> closeSession(entry.session));
+            for (int i = 0; i < replacements; i++) {
+                try {
+                    returnSession(openSession(), false);
+                } catch (final NetconfException | RuntimeException e) {
+                    log.warn("Unable to open session to {}", device.getAddress(), e);
+                }
+            }
+        }
+
+        int getIdleCount() {
+            lock.lock();
+            try {
+                return idleSessions.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getSessionCount() {
+            lock.lock();
+            try {
+                return sessionCount;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            final List<Entry> idle;
+            lock.lock();
+            try {
+                idle = new ArrayList<>(idleSessions);
+                idleSessions.clear();
+                sessionCount -= idle.size();
+                sessionReturned.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            idle.forEach(entry -> closeSession(entry.session));
+        }
+    }
+}
@@ -1,6 +1,18 @@
 package net.juniper.netconf;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import net.juniper.netconf.element.AbstractNetconfElement;
+import net.juniper.netconf.element.ReplyDecoder;
+import net.juniper.netconf.element.RpcReply;
+import net.juniper.netconf.element.XmlParser;
 import net.juniper.netconf.exception.NetconfException;
+import org.xml.sax.SAXException;
 
 /**
  * An interface that allows different SSH implementations to be used to communicate with devices.
@@ -15,6 +27,24 @@ public interface NetconfSshSession extends AutoCloseable {
      */
     void openSession(final Device device) throws NetconfException;
 
+    /**
+     * Opens the NETCONF SSH session to the specified device, without waiting for the session
+     * to open. Implementations that cannot open a session asynchronously open it before
+     * returning.
+     *
+     * @param device The device to connect to.
+     * @return a future that completes once the session is open. This completes exceptionally
+     *     with a {@link NetconfException} if a session could not be opened.
+     */
+    default CompletableFuture<Void> openSessionAsync(final Device device) {
+        try {
+            openSession(device);
+            return CompletableFuture.completedFuture(null);
+        } catch (final NetconfException e) {
+            return Futures.failed(e);
+        }
+    }
+
     /**
      * Indicates if the NETCONF session is connected.
      *
@@ -31,6 +61,210 @@ public interface NetconfSshSession extends AutoCloseable {
      */
     String sendMessage(final String message) throws NetconfException;
 
+    /**
+     * Sends an element over the NETCONF SSH session. Implementations should write the element
+     * directly to the SSH channel with {@link AbstractNetconfElement#writeTo}; by default, it is
+     * sent as a String.
+     *
+     * @param message The element to send.
+     * @return the response to the message from the device - excluding any message separator.
+     * @throws NetconfException if the message could not be sent or the response received.
+     */
+    default String sendMessage(final AbstractNetconfElement message) throws NetconfException {
+        return sendMessage(message.getXml());
+    }
+
+    /**
+     * Sends a message over the NETCONF SSH session without waiting for the response, so that
+     * several messages can be outstanding at once. Responses are matched with messages in the
+     * order they are received; if a message is received before any message has been sent - e.g.
+     * the server &lt;hello&gt; - it is used as the response to the next message sent.
+     * Implementations should return as soon as the message is written; by default, the message
+     * is sent with {@link #sendMessage(String)}, which waits for the response, so messages are
+     * never outstanding at once.
+     *
+     * @param message The message to send.
+     * @return the response to the message from the device - excluding any message framing. This
+     *     completes exceptionally with a {@link NetconfException} if the message could not be
+     *     sent or the session is closed before the response is received.
+     */
+    default CompletableFuture<String> sendMessageAsync(final String message) {
+        try {
+            return CompletableFuture.completedFuture(sendMessage(message));
+        } catch (final NetconfException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    /**
+     * Sends a message over the NETCONF SSH session without waiting for the response, as
+     * {@link #sendMessageAsync(String)}. Implementations should encode the message as it is
+     * written to the SSH channel, so that, e.g., a {@link StringBuilder} holding a large
+     * configuration is not copied; by default, it is sent as a String.
+     *
+     * @param message The message to send.
+     * @return the response to the message from the device - excluding any message framing.
+     */
+    default CompletableFuture<String> sendMessageAsync(final CharSequence message) {
+        return sendMessageAsync(message.toString());
+    }
+
+    /**
+     * Sends a message that is already encoded over the NETCONF SSH session without waiting for
+     * the response, as {@link #sendMessageAsync(String)}. Implementations should write the
+     * buffer directly to the SSH channel; by default, it is decoded and sent as a String. The
+     * position of the buffer is not changed.
+     *
+     * @param utf8Message The message to send, encoded as UTF-8.
+     * @return the response to the message from the device - excluding any message framing.
+     */
+    default CompletableFuture<String> sendMessageAsync(final ByteBuffer utf8Message) {
+        return sendMessageAsync(StandardCharsets.UTF_8.decode(utf8Message.duplicate()).toString());
+    }
+
+    /**
+     * Sends a message that is read from a stream over the NETCONF SSH session without waiting
+     * for the response, as {@link #sendMessageAsync(String)}. Implementations should write the
+     * message to the SSH channel as it is read, so that it is never held in memory; by default,
+     * it is read in full and sent as a String. The stream is read before this returns, but is
+     * not closed.
+     *
+     * @param utf8Message The stream of the message to send, encoded as UTF-8.
+     * @return the response to the message from the device - excluding any message framing. This
+     *     completes exceptionally with a {@link NetconfException} if the message could not be
+     *     read.
+     */
+    default CompletableFuture<String> sendMessageAsync(final InputStream utf8Message) {
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try {
+            int length;
+            while ((length = utf8Message.read(buffer)) != -1) {
+                message.write(buffer, 0, length);
+            }
+            return sendMessageAsync(message.toString(StandardCharsets.UTF_8.name()));
+        } catch (final IOException e) {
+            return Futures.failed(new NetconfException("Unable to read message", e));
+        }
+    }
+
+    /**
+     * Sends an element over the NETCONF SSH session without waiting for the response, as
+     * {@link #sendMessageAsync(String)}. Implementations should write the element directly to
+     * the SSH channel with {@link AbstractNetconfElement#writeTo}; by default, it is sent as a
+     * String.
+     *
+     * @param message The element to send.
+     * @return the response to the message from the device - excluding any message framing.
+     */
+    default CompletableFuture<String> sendMessageAsync(final AbstractNetconfElement message) {
+        return sendMessageAsync(message.getXml());
+    }
+
+    /**
+     * Sends an element over the NETCONF SSH session without waiting for the response, as
+     * {@link #sendMessageAsync(AbstractNetconfElement)}, and returns the response as the UTF-8
+     * bytes received, so that it can be parsed without first being decoded to a String.
+     * Implementations should return the bytes received without decoding them; by default, the
+     * response is received as a String and encoded.
+     *
+     * @param message The element to send.
+     * @return a read-only buffer of the response to the message from the device, encoded as
+     *     UTF-8 - excluding any message framing.
+     */
+    default CompletableFuture<ByteBuffer> sendMessageForBytesAsync(
+        final AbstractNetconfElement message
+    ) {
+        return sendMessageAsync(message).thenApply(response ->
+            ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer());
+    }
+
+    /**
+     * Sends an RPC over the NETCONF SSH session without waiting for the reply, as
+     * {@link #sendMessageAsync(AbstractNetconfElement)}, and parses the reply.
+     *
+     * @param rpc       The RPC to send.
+     * @param xmlParser The parser used to decode the reply.
+     * @return the reply from the device. This completes exceptionally with a
+     *     {@link NetconfException} if the message could not be sent, the session is closed before
+     *     the reply is received, or the reply cannot be parsed.
+     * @see #sendRpcAsync(AbstractNetconfElement, ReplyDecoder, XmlParser)
+     */
+    default CompletableFuture<RpcReply> sendRpcAsync(
+        final AbstractNetconfElement rpc,
+        final XmlParser xmlParser
+    ) {
+        return sendRpcAsync(rpc, ReplyDecoder.rpcReply(), xmlParser);
+    }
+
+    /**
+     * Sends an RPC over the NETCONF SSH session without waiting for the reply, as
+     * {@link #sendMessageAsync(AbstractNetconfElement)}, and decodes the reply. Implementations
+     * may decode the reply as it is received; by default, it is decoded once it has been
+     * received in full.
+     *
+     * @param rpc       The RPC to send.
+     * @param decoder   Decodes the reply.
+     * @param xmlParser The parser used to read the reply.
+     * @param <T>       The type the reply is decoded to.
+     * @return the decoded reply. This completes exceptionally with a {@link NetconfException} if
+     *     the message could not be sent, the session is closed before the reply is received, or
+     *     the reply cannot be decoded.
+     */
+    default <T> CompletableFuture<T> sendRpcAsync(
+        final AbstractNetconfElement rpc,
+        final ReplyDecoder<T> decoder,
+        final XmlParser xmlParser
+    ) {
+        return sendMessageAsync(rpc).thenApply(response -> {
+            try {
+                return decoder.decode(response, xmlParser);
+            } catch (final SAXException e) {
+                throw new CompletionException(
+                    new NetconfException("Unable to parse response from server", e));
+            }
+        });
+    }
+
+    /**
+     * Indicates if the framing of messages can be changed with
+     * {@link #setMessageFraming(MessageFraming)}, and so if the session can use the
+     * {@link ChunkedFraming} of NETCONF 1.1. NETCONF 1.1 is only advertised to the device if it
+     * can. By default, it cannot.
+     *
+     * @return {@code true} if the message framing can be changed, otherwise {@code false}.
+     */
+    default boolean isMessageFramingSupported() {
+        return false;
+    }
+
+    /**
+     * Sets the framing used for all subsequent messages sent and received. Sessions use the
+     * {@link EndOfMessageFraming} until this is called. This is only called if
+     * {@link #isMessageFramingSupported()}; by default, the framing cannot be changed.
+     *
+     * @param messageFraming The message framing to use.
+     * @throws NetconfException if the message framing cannot be changed.
+     */
+    default void setMessageFraming(final MessageFraming messageFraming) throws NetconfException {
+        throw new NetconfException(
+            getClass().getName() + " does not support changing the message framing");
+    }
+
+    /**
+     * Opens another NETCONF SSH session to the same device, as a new channel over the existing
+     * SSH connection. This avoids the cost of connecting and authenticating again. The SSH
+     * connection remains open until this and all the other sessions that share it are closed.
+     *
+     * @return a new, open, NETCONF SSH session.
+     * @throws NetconfException if this session is not connected, does not support multiple
+     *                          channels or a new channel could not be opened.
+     */
+    default NetconfSshSession openAdditionalChannel() throws NetconfException {
+        throw new NetconfException(
+            getClass().getName() + " does not support multiple channels per connection");
+    }
+
     /**
      * Closes the session to the device.
      */
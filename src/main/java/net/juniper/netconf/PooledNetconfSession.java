@@ -0,0 +1,54 @@
+package net.juniper.netconf;
+
+import java.util.function.Consumer;
+
+/**
+ * A session borrowed from a {@link NetconfSessionPool}. Closing this returns the session to the
+ * pool, rather than closing the session itself.
+ */
+public final class PooledNetconfSession implements AutoCloseable {
+
+    private final NetconfSession session;
+    // Returns the session to the pool; passed true if the session should be discarded
+    private final Consumer<Boolean> onReturn;
+    private boolean invalidated;
+    private boolean returned;
+
+    PooledNetconfSession(final NetconfSession session, final Consumer<Boolean> onReturn) {
+        this.session = session;
+        this.onReturn = onReturn;
+    }
+
+    /**
+     * Returns the borrowed session. This must not be used once this has been closed, nor closed
+     * directly.
+     *
+     * @return the session.
+     */
+    public NetconfSession getSession() {
+        if (returned) {
+            throw new IllegalStateException("The session has been returned to the pool");
+        }
+        return session;
+    }
+
+    /**
+     * Marks the session as unusable - e.g. because it is in an unknown state following an error
+     * - so that it is closed, instead of being returned to the pool.
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * Returns the session to the pool, unless it has been invalidated in which case it is
+     * closed. Subsequent calls have no effect.
+     */
+    @Override
+    public void close() {
+        if (!returned) {
+            returned = true;
+            onReturn.accept(invalidated);
+        }
+    }
+}
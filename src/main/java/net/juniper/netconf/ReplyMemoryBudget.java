@@ -0,0 +1,334 @@
+package net.juniper.netconf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * A limit on the memory used by replies that are still being received, shared by every session
+ * that uses it - so that many sessions receiving large replies at once make the process slower,
+ * rather than exhaust its heap.
+ *
+ * <p>Whilst the budget is used up, a session that is holding reply data does not return the
+ * SSH channel window for the data it receives, so the device stops sending once the window is
+ * exhausted. The window is returned as replies are taken from the session - or, for replies
+ * parsed as they are received, as they are read - and the budget becomes available again. So
+ * that replies always complete, one session at a time that is collecting a reply continues to
+ * receive regardless; the budget may therefore be exceeded by up to one reply, plus the window
+ * of each session. Reply data written to a temporary file - see
+ * {@link Device#getSpillThreshold()} - does not count towards the budget.
+ *
+ * <p>Unless a device is configured with a different budget - see
+ * {@link Device#getReplyMemoryBudget()} - all sessions share the {@link #getDefault() default}
+ * budget, of a quarter of the maximum heap size.
+ *
+ * <p>Example:
+ * <pre>
+ * {@code}
+ * // Allow up to 512 MiB of replies to be received at once
+ * final ReplyMemoryBudget replyMemoryBudget = new ReplyMemoryBudget(512 * 1024 * 1024);
+ * final Device device = Device.builder()
+ *     .address("hostname")
+ *     .username("username")
+ *     .password("password")
+ *     .replyMemoryBudget(replyMemoryBudget)
+ *     .build();
+ * ...
+ * log.info("{} bytes of replies in flight", replyMemoryBudget.getInFlightBytes());
+ * {@code}
+ * </pre>
+ */
+@Log4j2
+public final class ReplyMemoryBudget {
+
+    private static final ReplyMemoryBudget DEFAULT =
+        new ReplyMemoryBudget(Runtime.getRuntime().maxMemory() / 4);
+
+    private final long maximumBytes;
+    // Guarded by this budget
+    private long inFlightBytes;
+    private long stallCount;
+    // In the order they were stalled, so the longest stalled continues first
+    private final Set<Flow> stalledFlows = new LinkedHashSet<>();
+    // The flow that continues to receive whilst the budget is used up
+    private Flow privilegedFlow;
+
+    /**
+     * Creates a new budget.
+     *
+     * @param maximumBytes the number of bytes of replies that may be held in memory, across every
+     *                     session using the budget, before sessions are stalled.
+     */
+    public ReplyMemoryBudget(final long maximumBytes) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("The maximum bytes must not be negative");
+        }
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Returns the budget shared by all devices that are not configured with their own.
+     *
+     * @return the default budget.
+     */
+    public static ReplyMemoryBudget getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the size of the budget.
+     *
+     * @return the number of bytes of replies that may be held before sessions are stalled.
+     */
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    /**
+     * Returns the amount of memory currently used by replies that are being received.
+     *
+     * @return the number of bytes of replies held in memory.
+     */
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Returns the number of sessions currently stalled, waiting for the budget to become
+     * available.
+     *
+     * @return the number of stalled sessions.
+     */
+    public synchronized int getStalledSessionCount() {
+        return stalledFlows.size();
+    }
+
+    /**
+     * Returns the number of times a session has been stalled since the budget was created.
+     *
+     * @return the number of stalls.
+     */
+    public synchronized long getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Creates the account of the reply data received by a single session.
+     *
+     * @param windowReleaser returns window to the device, for the number of bytes passed to it.
+     * @return the new flow.
+     */
+    Flow newFlow(final LongConsumer windowReleaser) {
+        return new Flow(windowReleaser);
+    }
+
+    /**
+     * Creates a flow of content that is not subject to any budget.
+     *
+     * @return the new flow.
+     */
+    static Flow newUnboundedFlow() {
+        return new ReplyMemoryBudget(Long.MAX_VALUE).newFlow(bytes -> { });
+    }
+
+    private void resume(final List<Flow> flows) {
+        flows.forEach(Flow::returnWithheldWindow);
+    }
+
+    /**
+     * Returns the stalled flows that may now continue. Must be called whilst holding the lock.
+     */
+    private List<Flow> takeResumableFlows() {
+        final List<Flow> flows = new ArrayList<>();
+        if (inFlightBytes <= maximumBytes) {
+            flows.addAll(stalledFlows);
+            stalledFlows.clear();
+        } else if (privilegedFlow == null) {
+            // Let the longest stalled flow that is collecting a message complete it
+            final Iterator<Flow> iterator = stalledFlows.iterator();
+            while (iterator.hasNext()) {
+                final Flow flow = iterator.next();
+                if (flow.collectedBytes > 0) {
+                    iterator.remove();
+                    privilegedFlow = flow;
+                    flows.add(flow);
+                    break;
+                }
+            }
+        }
+        return flows;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReplyMemoryBudget(maximumBytes=" + maximumBytes
+            + ", inFlightBytes=" + inFlightBytes
+            + ", stalledSessionCount=" + stalledFlows.size() + ")";
+    }
+
+    /**
+     * The reply data received by a single session. Data is reserved whilst it is held in memory,
+     * either {@link #reserveCollected collected} until the end of its message, or
+     * {@link #reserveQueued queued} until it is read; as each packet of data is
+     * {@link #onReceived received}, its window is either returned to the device immediately or,
+     * if the budget is used up, withheld until it is available again.
+     *
+     * <p>A session that holds only queued data is resumed once it has all been read. Collected
+     * data can only be released once the rest of its message has been received, so one session
+     * holding collected data continues to receive whilst the others are stalled.
+     */
+    final class Flow {
+
+        private final LongConsumer windowReleaser;
+        // Guarded by the budget
+        private long collectedBytes;
+        private long queuedBytes;
+        private long withheldWindow;
+        private boolean closed;
+
+        private Flow(final LongConsumer windowReleaser) {
+            this.windowReleaser = windowReleaser;
+        }
+
+        /**
+         * Counts data that is held until the end of its message has been received.
+         *
+         * @param bytes the number of bytes held.
+         */
+        void reserveCollected(final long bytes) {
+            synchronized (ReplyMemoryBudget.this) {
+                if (!closed) {
+                    collectedBytes += bytes;
+                    inFlightBytes += bytes;
+                }
+            }
+        }
+
+        /**
+         * Counts collected data that is no longer held.
+         *
+         * @param bytes the number of bytes no longer held.
+         */
+        void releaseCollected(final long bytes) {
+            final List<Flow> resumableFlows;
+            synchronized (ReplyMemoryBudget.this) {
+                final long releasedBytes = Math.min(bytes, collectedBytes);
+                collectedBytes -= releasedBytes;
+                inFlightBytes -= releasedBytes;
+                resumableFlows = onReleased();
+            }
+            resume(resumableFlows);
+        }
+
+        /**
+         * Counts data that is held until it has been read.
+         *
+         * @param bytes the number of bytes held.
+         */
+        void reserveQueued(final long bytes) {
+            synchronized (ReplyMemoryBudget.this) {
+                if (!closed) {
+                    queuedBytes += bytes;
+                    inFlightBytes += bytes;
+                }
+            }
+        }
+
+        /**
+         * Counts queued data that is no longer held.
+         *
+         * @param bytes the number of bytes no longer held.
+         */
+        void releaseQueued(final long bytes) {
+            final List<Flow> resumableFlows;
+            synchronized (ReplyMemoryBudget.this) {
+                final long releasedBytes = Math.min(bytes, queuedBytes);
+                queuedBytes -= releasedBytes;
+                inFlightBytes -= releasedBytes;
+                resumableFlows = onReleased();
+            }
+            resume(resumableFlows);
+        }
+
+        /**
+         * Returns the flows that may continue now that data has been released. Must be called
+         * whilst holding the lock.
+         */
+        private List<Flow> onReleased() {
+            if (privilegedFlow == this && collectedBytes == 0) {
+                privilegedFlow = null;
+            }
+            final List<Flow> resumableFlows = takeResumableFlows();
+            if (collectedBytes == 0 && queuedBytes == 0 && stalledFlows.remove(this)) {
+                resumableFlows.add(this);
+            }
+            return resumableFlows;
+        }
+
+        /**
+         * Returns the window for data received from the device, unless the budget is used up.
+         * The data must already have been reserved, if it is held.
+         *
+         * @param bytes the number of bytes received.
+         */
+        void onReceived(final long bytes) {
+            synchronized (ReplyMemoryBudget.this) {
+                if (closed) {
+                    return;
+                }
+                if (stalledFlows.contains(this)) {
+                    withheldWindow += bytes;
+                    return;
+                }
+                if (collectedBytes + queuedBytes > 0 && inFlightBytes > maximumBytes) {
+                    if (privilegedFlow == null && collectedBytes > 0) {
+                        privilegedFlow = this;
+                    } else if (privilegedFlow != this) {
+                        withheldWindow += bytes;
+                        stalledFlows.add(this);
+                        stallCount++;
+                        log.debug("Stalled session, with {} bytes of replies in flight",
+                            inFlightBytes);
+                        return;
+                    }
+                }
+            }
+            windowReleaser.accept(bytes);
+        }
+
+        /**
+         * Releases everything held, once the session is closed.
+         */
+        void close() {
+            final List<Flow> resumableFlows;
+            synchronized (ReplyMemoryBudget.this) {
+                closed = true;
+                inFlightBytes -= collectedBytes + queuedBytes;
+                collectedBytes = 0;
+                queuedBytes = 0;
+                withheldWindow = 0;
+                stalledFlows.remove(this);
+                if (privilegedFlow == this) {
+                    privilegedFlow = null;
+                }
+                resumableFlows = takeResumableFlows();
+            }
+            resume(resumableFlows);
+        }
+
+        private void returnWithheldWindow() {
+            final long bytes;
+            synchronized (ReplyMemoryBudget.this) {
+                bytes = withheldWindow;
+                withheldWindow = 0;
+            }
+            if (bytes > 0) {
+                windowReleaser.accept(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package net.juniper.netconf;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.log4j.Log4j2;
+import net.juniper.netconf.element.RecordableInputStream;
+
+/**
+ * Collects the content of a message as it is received, in segments taken from a
+ * {@link BufferPool}. Unlike a growing array, nothing is copied as the message grows. The
+ * message is taken as the segments themselves, which are read as a single stream, and returned
+ * to the pool once the message has been decoded - so nothing is held between messages, and the
+ * message is never copied into a single array.
+ *
+ * <p>Once a message grows beyond the spill threshold, it is instead written to a temporary file
+ * as it is received, and taken as a read-only, memory-mapped, buffer of the file - so the heap
+ * used by a message is limited no matter how large it is. The file is deleted once the message
+ * has been taken, if not before; the mapped content remains available until the buffer is
+ * garbage collected.
+ *
+ * <p>The bytes held in segments are counted by a {@link ReplyMemoryBudget.Flow}, until they are
+ * written to a file, or the message taken from the buffer is released.
+ */
+@Log4j2
+class SegmentedBuffer {
+
+    private final BufferPool bufferPool;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+    private final ReplyMemoryBudget.Flow replyFlow;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long size;
+    // The number of bytes held in segments, and so reserved from the budget
+    private long reservedBytes;
+    private boolean released;
+    // The file the message is written to, once it exceeds the spill threshold
+    private FileChannel spillChannel;
+    private IOException spillFailure;
+
+    SegmentedBuffer(final BufferPool bufferPool) {
+        this(bufferPool, Long.MAX_VALUE, null, ReplyMemoryBudget.newUnboundedFlow());
+    }
+
+    /**
+     * Creates a buffer that writes messages larger than a threshold to a temporary file.
+     *
+     * @param bufferPool     the pool the segments are taken from.
+     * @param spillThreshold the size, in bytes, above which a message is written to a file.
+     * @param spillDirectory the directory the files are created in; if null, the default
+     *                       temporary-file directory.
+     * @param replyFlow      counts the bytes held in segments.
+     */
+    SegmentedBuffer(
+        final BufferPool bufferPool,
+        final long spillThreshold,
+        final Path spillDirectory,
+        final ReplyMemoryBudget.Flow replyFlow
+    ) {
+        this.bufferPool = bufferPool;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.replyFlow = replyFlow;
+    }
+
+    /**
+     * Adds data to the end of the content.
+     *
+     * @param b   the data.
+     * @param off the start of the data.
+     * @param len the number of bytes of data.
+     */
+    synchronized void write(final byte[] b, final int off, final int len) {
+        if (released || spillFailure != null) {
+            return;
+        }
+        if (spillChannel == null && size + len > spillThreshold) {
+            spill();
+        }
+        if (spillChannel != null) {
+            writeToFile(ByteBuffer.wrap(b, off, len));
+        } else if (spillFailure == null) {
+            writeToSegments(b, off, len);
+        }
+        size += len;
+    }
+
+    private void writeToSegments(final byte[] b, final int off, final int len) {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || !segment.hasRemaining()) {
+                segment = bufferPool.acquire();
+                segments.add(segment);
+            }
+            final int length = Math.min(remaining, segment.remaining());
+            segment.put(b, offset, length);
+            offset += length;
+            remaining -= length;
+        }
+        reservedBytes += len;
+        replyFlow.reserveCollected(len);
+    }
+
+    /**
+     * Moves the content collected so far to a new temporary file, which the rest of the message
+     * is then written to.
+     */
+    private void spill() {
+        log.debug("Writing message of more than {} bytes to a temporary file", spillThreshold);
+        Path file = null;
+        try {
+            // The file is only readable by its owner, as the message may contain secrets
+            file = spillDirectory == null
+                ? Files.createTempFile("netconf-message-", ".xml")
+                : Files.createTempFile(spillDirectory, "netconf-message-", ".xml");
+            spillChannel = openSpillChannel(file);
+        } catch (final IOException e) {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (final IOException deleteFailure) {
+                    e.addSuppressed(deleteFailure);
+                }
+            }
+            onSpillFailure(e);
+            releaseSegments();
+            return;
+        }
+        // The segments are only released once they have all been written, or writing has failed
+        for (int i = 0; i < segments.size() && spillFailure == null; i++) {
+            final ByteBuffer segment = segments.get(i);
+            segment.flip();
+            writeToFile(segment);
+        }
+        releaseSegments();
+    }
+
+    /**
+     * Opens the temporary file a message is written to, which is deleted once it is closed.
+     *
+     * @param file the new, empty, file.
+     * @return the channel the message is written to, and read from.
+     * @throws IOException if the file cannot be opened.
+     */
+    FileChannel openSpillChannel(final Path file) throws IOException {
+        return FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE);
+    }
+
+    private void writeToFile(final ByteBuffer data) {
+        try {
+            while (data.hasRemaining()) {
+                spillChannel.write(data);
+            }
+        } catch (final IOException e) {
+            onSpillFailure(e);
+        }
+    }
+
+    /**
+     * Discards the message, which can no longer be collected in full. Any segments still held
+     * are released by the caller.
+     */
+    private void onSpillFailure(final IOException exception) {
+        log.warn("Unable to write message to a temporary file", exception);
+        spillFailure = exception;
+        closeSpillChannel();
+    }
+
+    /**
+     * Returns the number of bytes collected.
+     *
+     * @return the size of the content.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Takes the content, so that the buffer is empty again. Content held in segments is taken as
+     * the segments themselves, which - and the bytes reserved for them - are held until the
+     * content is closed; content written to a file is taken as a read-only buffer mapped from
+     * the file.
+     *
+     * @return the content, which must be closed once it has been used.
+     * @throws IOException if the content could not be written to, or mapped from, a file.
+     */
+    synchronized Content takeContent() throws IOException {
+        try {
+            if (spillFailure != null) {
+                throw new IOException("Unable to write message to a temporary file", spillFailure);
+            }
+            if (spillChannel != null) {
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Unable to hold a message of " + size + " bytes");
+                }
+                return new Content(
+                    Collections.singletonList(
+                        spillChannel.map(FileChannel.MapMode.READ_ONLY, 0, size)),
+                    size, null, replyFlow, 0);
+            }
+            for (final ByteBuffer segment : segments) {
+                segment.flip();
+            }
+            final Content content =
+                new Content(new ArrayList<>(segments), size, bufferPool, replyFlow, reservedBytes);
+            // The segments, and the bytes reserved for them, are now held by the content
+            segments.clear();
+            reservedBytes = 0;
+            return content;
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the segments to the pool, deletes any temporary file, and discards anything
+     * subsequently written.
+     */
+    synchronized void release() {
+        released = true;
+        reset();
+    }
+
+    private void reset() {
+        releaseSegments();
+        closeSpillChannel();
+        spillFailure = null;
+        size = 0;
+    }
+
+    private void releaseSegments() {
+        segments.forEach(bufferPool::release);
+        segments.clear();
+        if (reservedBytes > 0) {
+            replyFlow.releaseCollected(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    private void closeSpillChannel() {
+        if (spillChannel != null) {
+            try {
+                // The file is deleted as it is closed, if it was not as it was opened
+                spillChannel.close();
+            } catch (final IOException e) {
+                log.warn("Unable to close temporary file", e);
+            }
+            spillChannel = null;
+        }
+    }
+
+    /**
+     * A message taken from a buffer - either the segments it was collected in, or a buffer
+     * mapped from the file it was written to. The segments are only returned to the pool, and the
+     * bytes reserved for them only released, once the content is closed, or its segments are
+     * taken over by a reply.
+     */
+    static final class Content implements Closeable {
+
+        private final long size;
+        // The pool the segments are returned to, or null if the content is mapped from a file
+        private final BufferPool bufferPool;
+        private final ReplyMemoryBudget.Flow replyFlow;
+        private List<ByteBuffer> segments;
+        private long reservedBytes;
+        private volatile boolean closed;
+
+        private Content(
+            final List<ByteBuffer> segments,
+            final long size,
+            final BufferPool bufferPool,
+            final ReplyMemoryBudget.Flow replyFlow,
+            final long reservedBytes
+        ) {
+            this.segments = segments;
+            this.size = size;
+            this.bufferPool = bufferPool;
+            this.replyFlow = replyFlow;
+            this.reservedBytes = reservedBytes;
+        }
+
+        /**
+         * Returns the number of bytes of content.
+         *
+         * @return the size of the content.
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * Creates a stream of the content, without copying it. Closing the stream closes the
+         * content; if the stream is recorded, the segments are taken over by whatever takes the
+         * recording.
+         *
+         * @return a new stream.
+         */
+        RecordableInputStream newInputStream() {
+            return new ContentInputStream(this, duplicateSegments());
+        }
+
+        private synchronized List<ByteBuffer> duplicateSegments() {
+            final List<ByteBuffer> buffers = new ArrayList<>();
+            if (segments != null) {
+                segments.forEach(segment -> buffers.add(segment.duplicate()));
+            }
+            return buffers;
+        }
+
+        /**
+         * Decodes the content as UTF-8.
+         *
+         * @return the content.
+         */
+        String decode() {
+            // A character may be split between segments, so they are decoded as a single stream
+            final StringBuilder content =
+                new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+            final char[] chars = new char[8192];
+            try (final Reader reader = new InputStreamReader(
+                new ContentInputStream(null, duplicateSegments()), StandardCharsets.UTF_8)) {
+                int length = reader.read(chars);
+                while (length != -1) {
+                    content.append(chars, 0, length);
+                    length = reader.read(chars);
+                }
+            } catch (final IOException e) {
+                throw new IllegalStateException("Unable to decode message", e);
+            }
+            return content.toString();
+        }
+
+        /**
+         * Copies the content into a heap buffer of exactly its size - unless it is mapped from a
+         * file, in which case the mapped buffer itself is returned.
+         *
+         * @return the content, as the remaining bytes of a read-only buffer.
+         */
+        synchronized ByteBuffer copy() {
+            if (segments == null) {
+                return ByteBuffer.allocate(0);
+            }
+            if (bufferPool == null) {
+                return segments.get(0).asReadOnlyBuffer();
+            }
+            final ByteBuffer copy = ByteBuffer.allocate((int) size);
+            segments.forEach(segment -> copy.put(segment.duplicate()));
+            copy.flip();
+            return copy.asReadOnlyBuffer();
+        }
+
+        /**
+         * Takes over the segments, so that they are neither returned to the pool nor counted by
+         * the budget. Segments that are only partly filled are copied, so that they can be
+         * returned to the pool rather than held mostly unused.
+         *
+         * @return the content, as the remaining bytes of each buffer in turn.
+         */
+        synchronized List<ByteBuffer> takeSegments() {
+            if (segments == null) {
+                throw new IllegalStateException("The message content has been released");
+            }
+            final List<ByteBuffer> taken = new ArrayList<>(segments.size());
+            for (final ByteBuffer segment : segments) {
+                if (bufferPool == null || segment.limit() == segment.capacity()) {
+                    taken.add(segment);
+                } else {
+                    final ByteBuffer copy = ByteBuffer.allocate(segment.remaining());
+                    copy.put(segment.duplicate()).flip();
+                    taken.add(copy);
+                    bufferPool.release(segment);
+                }
+            }
+            segments = null;
+            releaseReservedBytes();
+            return taken;
+        }
+
+        /**
+         * Returns the segments to the pool, unless they have been taken over.
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (segments != null) {
+                if (bufferPool != null) {
+                    segments.forEach(bufferPool::release);
+                }
+                segments = null;
+            }
+            releaseReservedBytes();
+        }
+
+        private void releaseReservedBytes() {
+            if (reservedBytes > 0) {
+                replyFlow.releaseCollected(reservedBytes);
+                reservedBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads the segments of a message in turn. Once the content is closed, the segments may be
+     * reused, so the stream can no longer be read.
+     */
+    private static final class ContentInputStream extends RecordableInputStream {
+
+        // Null if the stream does not own the content
+        private final Content content;
+        private final List<ByteBuffer> buffers;
+        private int index;
+
+        private ContentInputStream(final Content content, final List<ByteBuffer> buffers) {
+            this.content = content;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final ByteBuffer buffer = nextBuffer();
+            return buffer == null ? -1 : buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer buffer = nextBuffer();
+            if (buffer == null) {
+                return -1;
+            }
+            final int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        private ByteBuffer nextBuffer() throws IOException {
+            if (content != null && content.closed) {
+                throw new IOException("The message content has been released");
+            }
+            while (index < buffers.size() && !buffers.get(index).hasRemaining()) {
+                index++;
+            }
+            return index < buffers.size() ? buffers.get(index) : null;
+        }
+
+        @Override
+        public int available() {
+            return index < buffers.size() ? buffers.get(index).remaining() : 0;
+        }
+
+        @Override
+        public void record() {
+            // The whole message is already held, so is always recorded
+        }
+
+        @Override
+        public List<ByteBuffer> takeRecording() {
+            index = buffers.size();
+            return content.takeSegments();
+        }
+
+        @Override
+        public void close() {
+            if (content != null) {
+                content.close();
+            }
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package net.juniper.netconf.element;
 
 import static java.lang.String.format;
+import static java.util.Optional.ofNullable;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import lombok.EqualsAndHashCode;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.Value;
 import lombok.experimental.NonFinal;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * The base class from which all other NETCONF elements extend.
@@ -31,50 +42,294 @@ public abstract class AbstractNetconfElement {
         "urn:ietf:params:xml:ns:netconf:base:1.0";
     public static final String URN_IETF_PARAMS_NETCONF_BASE_1_0 =
         "urn:ietf:params:netconf:base:1.0";
+    public static final String URN_IETF_PARAMS_NETCONF_BASE_1_1 =
+        "urn:ietf:params:netconf:base:1.1";
+
+    // Transformers are not thread-safe, but can be reused by the same thread
+    private static final ThreadLocal<Transformer> TRANSFORMER =
+        ThreadLocal.withInitial(AbstractNetconfElement::createTransformer);
 
     /**
      * The W3C document representing this element. Note that although ths field is mutable, it
      * should not be changed. Altering this field will not change any properties of this class,
      * not even it's XML representation. It can however be used to extract additional information
-     * received in the message that is not directly exposed by the class.
+     * received in the message that is not directly exposed by the class. For elements parsed
+     * from XML, or that write their own XML, the document is only built the first time it is
+     * requested.
      */
+    @NonFinal
     @ToString.Exclude
-    @EqualsAndHashCode.Exclude
-    @SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "There is little alternative")
-    Document document;
+    volatile Document document;
+
+    /**
+     * The XML representation of this element. For elements created from a document, or that
+     * write their own XML, this is only created the first time it is requested.
+     */
+    @NonFinal
+    @ToString.Exclude
+    volatile String xml;
 
     /**
-     * The XML representation of this element.
+     * The XML representation of this element, encoded as UTF-8, for elements parsed from bytes.
+     * Only these bytes are retained - possibly in several buffers, e.g. the segments the element
+     * was received in; the XML is decoded each time it is requested.
      */
+    @Getter(AccessLevel.NONE)
     @ToString.Exclude
-    String xml;
+    Utf8Content utf8Xml;
 
+    /**
+     * The parser used to build the document of an element parsed from XML, or null to use the
+     * {@link XmlParser#getDefault() default}.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    XmlParser xmlParser;
+
+    /**
+     * Creates an element from a document. If the document is null, the element instead writes
+     * its own XML with {@link #writeXml(XmlWriter)}, and the document is only built the first
+     * time it is requested.
+     *
+     * @param document the document representing the element, or null.
+     */
     protected AbstractNetconfElement(final Document document) {
         this.document = document;
-        this.xml = createXml(document);
+        this.utf8Xml = null;
+        this.xmlParser = null;
     }
 
-    protected static Document createBlankDocument() {
+    /**
+     * Creates an element from XML that has already been parsed to extract its properties, so the
+     * document representing it is not needed unless requested.
+     *
+     * @param xml the XML representing the element.
+     */
+    protected AbstractNetconfElement(final String xml) {
+        this(xml, null, null);
+    }
+
+    /**
+     * Creates an element from XML that has already been parsed to extract its properties. The
+     * element is backed by the bytes, which must not be changed.
+     *
+     * @param utf8Xml the XML representing the element, encoded as UTF-8.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "Avoids copying the reply")
+    protected AbstractNetconfElement(final byte[] utf8Xml) {
+        this(null, Utf8Content.of(ByteBuffer.wrap(utf8Xml)), null);
+    }
+
+    /**
+     * Creates an element from the XML read by an {@link XmlScanner}, which is either a String or
+     * UTF-8 bytes - held in buffers which may be direct or memory-mapped. The document, if
+     * requested, is parsed by the same parser as the scanner used.
+     */
+    AbstractNetconfElement(
+        final String xml,
+        final Utf8Content utf8Xml,
+        final XmlParser xmlParser
+    ) {
+        this.xml = xml;
+        this.utf8Xml = utf8Xml;
+        this.xmlParser = xmlParser;
+    }
+
+    /**
+     * Returns the W3C document representing this element.
+     *
+     * @return the document.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "There is little alternative")
+    public Document getDocument() {
+        Document parsedDocument = document;
+        if (parsedDocument == null) {
+            synchronized (this) {
+                parsedDocument = document;
+                if (parsedDocument == null) {
+                    parsedDocument = parseDocument();
+                    document = parsedDocument;
+                }
+            }
+        }
+        return parsedDocument;
+    }
+
+    /**
+     * Returns the XML representation of this element. For elements parsed from bytes, the XML
+     * is decoded - and so a new String allocated - on every call; use
+     * {@link #writeTo(OutputStream)} to copy the XML elsewhere without decoding it.
+     *
+     * @return the XML.
+     */
+    public String getXml() {
+        if (utf8Xml != null) {
+            return utf8Xml.decode();
+        }
+        String serialisedXml = xml;
+        if (serialisedXml == null) {
+            // The document is not thread-safe, even for reading, so is only serialised once
+            synchronized (this) {
+                serialisedXml = xml;
+                if (serialisedXml == null) {
+                    serialisedXml = document != null ? createXml(document) : writeXml();
+                    xml = serialisedXml;
+                }
+            }
+        }
+        return serialisedXml;
+    }
+
+    /**
+     * Indicates if another element is equal to this one, i.e. has the same XML representation.
+     * Elements parsed from bytes are compared without decoding their XML, unless compared to an
+     * element that is not.
+     *
+     * @param o the other object.
+     * @return true if the other object is an equal element.
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof AbstractNetconfElement)) {
+            return false;
+        }
+        final AbstractNetconfElement other = (AbstractNetconfElement) o;
+        if (!other.canEqual(this)) {
+            return false;
+        }
+        if (utf8Xml != null && other.utf8Xml != null) {
+            return utf8Xml.contentEquals(other.utf8Xml);
+        }
+        return getXml().equals(other.getXml());
+    }
+
+    /**
+     * Indicates if another object may be equal to this one - overridden by the equals methods
+     * Lombok generates for subclasses.
+     *
+     * @param other the other object.
+     * @return true if the other object is an element.
+     */
+    protected boolean canEqual(final Object other) {
+        return other instanceof AbstractNetconfElement;
+    }
+
+    /**
+     * Returns the hash code of the XML representation of this element - calculated without
+     * decoding the XML for elements parsed from bytes.
+     *
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode() {
+        return utf8Xml != null ? utf8Xml.contentHashCode() : getXml().hashCode();
+    }
+
+    /**
+     * Writes the XML representation of this element, encoded as UTF-8. For elements that write
+     * their own XML, neither a document nor a String is created.
+     *
+     * @param out the stream to write the XML to. This is not flushed or closed.
+     * @throws IOException if the XML could not be written.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        if (utf8Xml != null) {
+            utf8Xml.writeTo(out);
+            return;
+        }
+        final XmlWriter writer = new XmlWriter(out);
+        if (xml != null || document != null) {
+            writer.xml(getXml());
+        } else {
+            writeXml(writer);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes the XML representation of this element. This must be overridden by elements that
+     * are created without a document or XML, and is not otherwise called.
+     *
+     * @param writer the writer to write the XML to.
+     * @throws IOException if the XML could not be written.
+     */
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        throw new IllegalStateException(
+            getClass().getName() + " was created without a document or XML");
+    }
+
+    private String writeXml() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            return createDocumentBuilderFactory().newDocumentBuilder().newDocument();
-        } catch (final ParserConfigurationException e) {
-            throw new IllegalStateException("Unable to create document builder", e);
+            final XmlWriter writer = new XmlWriter(out);
+            writeXml(writer);
+            writer.finish();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to write XML", e);
         }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
     }
 
+    private InputSource createInputSource() {
+        if (utf8Xml == null) {
+            return new InputSource(new StringReader(getXml()));
+        }
+        final InputSource inputSource = new InputSource(utf8Xml.newInputStream());
+        inputSource.setEncoding(StandardCharsets.UTF_8.name());
+        return inputSource;
+    }
+
+    protected static Document createBlankDocument() {
+        return getDocumentBuilder().newDocument();
+    }
+
+    /**
+     * Creates a namespace aware document builder factory, with secure processing enabled and
+     * document type declarations disallowed - NETCONF messages do not use them.
+     *
+     * @return a new factory.
+     */
     protected static DocumentBuilderFactory createDocumentBuilderFactory() {
-        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setNamespaceAware(true);
-        return documentBuilderFactory;
+        return JaxpXmlParser.configure(DocumentBuilderFactory.newInstance());
     }
 
-    protected static String createXml(final Document document) {
+    /**
+     * Returns the document builder of the current thread, which is reset ready for use. The
+     * builder must not be used after the current thread has requested it again.
+     *
+     * @return the document builder.
+     */
+    protected static DocumentBuilder getDocumentBuilder() {
+        return JaxpXmlParser.getInstance().getDocumentBuilder();
+    }
+
+    private Document parseDocument() {
+        try {
+            return ofNullable(xmlParser).orElseGet(XmlParser::getDefault)
+                .parseDocument(createInputSource());
+        } catch (final IOException | SAXException e) {
+            throw new IllegalStateException("Unable to parse XML to document", e);
+        }
+    }
+
+    private static Transformer createTransformer() {
         try {
-            final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            final Transformer transformer = transformerFactory.newTransformer();
+            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
             transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            return transformer;
+        } catch (final TransformerConfigurationException e) {
+            throw new IllegalStateException("Unable to create transformer", e);
+        }
+    }
+
+    protected static String createXml(final Document document) {
+        try {
             final StringWriter stringWriter = new StringWriter();
-            transformer.transform(new DOMSource(document), new StreamResult(stringWriter));
+            TRANSFORMER.get()
+                .transform(new DOMSource(document), new StreamResult(stringWriter));
             return stringWriter.toString();
         } catch (final TransformerException e) {
             throw new IllegalStateException("Unable to transform document to XML", e);
@@ -0,0 +1,47 @@
+package net.juniper.netconf.element;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An XPath expression that is compiled once per thread, rather than every time it is evaluated.
+ * Neither {@link XPath} nor {@link XPathExpression} are thread-safe, so each thread that
+ * evaluates the expression compiles its own copy the first time it does so.
+ */
+final class CachedXpathExpression {
+
+    private static final ThreadLocal<XPath> X_PATH =
+        ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+
+    private final String expression;
+    private final ThreadLocal<XPathExpression> compiledExpression = new ThreadLocal<>();
+
+    CachedXpathExpression(final String expression) {
+        this.expression = expression;
+    }
+
+    private XPathExpression getCompiledExpression() throws XPathExpressionException {
+        XPathExpression compiled = compiledExpression.get();
+        if (compiled == null) {
+            compiled = X_PATH.get().compile(expression);
+            compiledExpression.set(compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Evaluates the expression as an element.
+     *
+     * @param node the context node.
+     * @return the first matching element, or null if none match.
+     * @throws XPathExpressionException if the expression cannot be evaluated.
+     */
+    Element evaluateElement(final Node node) throws XPathExpressionException {
+        return (Element) getCompiledExpression().evaluate(node, XPathConstants.NODE);
+    }
+}
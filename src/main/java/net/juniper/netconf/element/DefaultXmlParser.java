@@ -0,0 +1,12 @@
+package net.juniper.netconf.element;
+
+/**
+ * Holds the parser returned by {@link XmlParser#getDefault()}.
+ */
+final class DefaultXmlParser {
+
+    static volatile XmlParser xmlParser = JaxpXmlParser.getInstance();
+
+    private DefaultXmlParser() {
+    }
+}
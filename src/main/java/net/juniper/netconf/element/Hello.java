@@ -2,25 +2,21 @@ package net.juniper.netconf.element;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Singular;
 import lombok.ToString;
 import lombok.Value;
 import lombok.extern.log4j.Log4j2;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -33,13 +29,10 @@ import org.xml.sax.SAXException;
 @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "There is little alternative")
 public class Hello extends AbstractNetconfElement {
 
-    private static final String XPATH_HELLO = getXpathFor("hello");
-    private static final String XPATH_HELLO_SESSION_ID
-        = XPATH_HELLO + getXpathFor("session-id");
-    private static final String XPATH_HELLO_CAPABILITIES
-        = XPATH_HELLO + getXpathFor("capabilities");
-    private static final String XPATH_HELLO_CAPABILITIES_CAPABILITY
-        = XPATH_HELLO_CAPABILITIES + getXpathFor("capability");
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    String namespacePrefix;
 
     String sessionId;
 
@@ -55,7 +48,8 @@ public class Hello extends AbstractNetconfElement {
     }
 
     /**
-     * Creates a Hello object based on the supplied XML.
+     * Creates a Hello object based on the supplied XML. The session-id and capabilities are
+     * extracted without building a document; the document is only built if it is requested.
      *
      * @param xml The XML of the NETCONF &lt;hello&gt;
      * @return a new, immutable, Hello object.
@@ -70,23 +64,82 @@ public class Hello extends AbstractNetconfElement {
         SAXException,
         XPathExpressionException {
 
-        final Document document = createDocumentBuilderFactory()
-            .newDocumentBuilder()
-            .parse(new InputSource(new StringReader(xml)));
-        final XPath xPath = XPathFactory.newInstance().newXPath();
-        final String sessionId = xPath.evaluate(XPATH_HELLO_SESSION_ID, document);
-        final HelloBuilder builder = Hello.builder()
-            .originalDocument(document)
-            .sessionId(sessionId);
-        final NodeList capabilities = (NodeList) xPath.evaluate(
-            XPATH_HELLO_CAPABILITIES_CAPABILITY,
-            document,
-            XPathConstants.NODESET);
-        for (int i = 0; i < capabilities.getLength(); i++) {
-            final Node node = capabilities.item(i);
-            builder.capability(node.getTextContent());
+        return from(xml, XmlParser.getDefault());
+    }
+
+    /**
+     * Creates a Hello object based on the supplied XML, using the supplied parser.
+     *
+     * @param xml       The XML of the NETCONF &lt;hello&gt;
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @return a new, immutable, Hello object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    public static Hello from(final String xml, final XmlParser xmlParser) throws SAXException {
+        try (final XmlScanner scanner = new XmlScanner(xmlParser, xml)) {
+            return parse(scanner);
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse hello: " + e.getMessage(), e);
         }
-        final Hello hello = builder.build();
+    }
+
+    /**
+     * Creates a Hello object based on the supplied XML, encoded as UTF-8. The Hello is backed by
+     * the bytes, which must not be changed.
+     *
+     * @param utf8Xml The XML of the NETCONF &lt;hello&gt;, encoded as UTF-8.
+     * @return a new, immutable, Hello object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    public static Hello from(final byte[] utf8Xml) throws SAXException {
+        return from(utf8Xml, XmlParser.getDefault());
+    }
+
+    /**
+     * Creates a Hello object based on the supplied XML, encoded as UTF-8, using the supplied
+     * parser. The Hello is backed by the bytes, which must not be changed.
+     *
+     * @param utf8Xml   The XML of the NETCONF &lt;hello&gt;, encoded as UTF-8.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @return a new, immutable, Hello object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    public static Hello from(final byte[] utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        try (final XmlScanner scanner = new XmlScanner(xmlParser, utf8Xml)) {
+            return parse(scanner);
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse hello: " + e.getMessage(), e);
+        }
+    }
+
+    private static Hello parse(final XmlScanner scanner) throws XMLStreamException {
+        scanner.nextRootElement();
+        String sessionId = null;
+        final List<String> capabilities = new ArrayList<>();
+        if (scanner.isNetconfElement("hello")) {
+            while (scanner.nextChildElement()) {
+                if (sessionId == null && scanner.isNetconfElement("session-id")) {
+                    sessionId = scanner.readUntrimmedTextContent();
+                } else if (scanner.isNetconfElement("capabilities")) {
+                    while (scanner.nextChildElement()) {
+                        if (scanner.isNetconfElement("capability")) {
+                            capabilities.add(scanner.readUntrimmedTextContent());
+                        } else {
+                            scanner.skipElement();
+                        }
+                    }
+                } else {
+                    scanner.skipElement();
+                }
+            }
+        } else {
+            scanner.skipElement();
+        }
+        scanner.skipToEnd();
+        // As with XPath, a missing session-id is an empty string
+        final Hello hello = new Hello(scanner,
+            sessionId == null ? "" : sessionId, capabilities);
         log.trace("hello is: {}", hello::getXml);
         return hello;
     }
@@ -98,57 +151,34 @@ public class Hello extends AbstractNetconfElement {
         final String sessionId,
         @Singular("capability") final List<String> capabilities
     ) {
-        super(getDocument(originalDocument, namespacePrefix, sessionId, capabilities));
+        super(originalDocument);
+        this.namespacePrefix = namespacePrefix;
         this.sessionId = sessionId;
         this.capabilities = Collections.unmodifiableList(capabilities);
     }
 
-    private static Document getDocument(
-        final Document originalDocument,
-        final String namespacePrefix,
+    private Hello(
+        final XmlScanner scanner,
         final String sessionId,
         final List<String> capabilities
     ) {
-        if (originalDocument != null) {
-            return originalDocument;
-        } else {
-            return createDocument(namespacePrefix, sessionId, capabilities);
-        }
+        super(scanner.getXml(), scanner.getUtf8Xml(), scanner.getXmlParser());
+        this.namespacePrefix = null;
+        this.sessionId = sessionId;
+        this.capabilities = Collections.unmodifiableList(capabilities);
     }
 
-    private static Document createDocument(
-        final String namespacePrefix,
-        final String sessionId,
-        final List<String> capabilities
-    ) {
-
-        final Document createdDocument = createBlankDocument();
-
-        final Element helloElement
-            = createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "hello");
-        helloElement.setPrefix(namespacePrefix);
-        createdDocument.appendChild(helloElement);
-
-        final Element capabilitiesElement
-            = createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "capabilities");
-        capabilitiesElement.setPrefix(namespacePrefix);
-        capabilities.forEach(capability -> {
-            final Element capabilityElement =
-                createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "capability");
-            capabilityElement.setTextContent(capability);
-            capabilityElement.setPrefix(namespacePrefix);
-            capabilitiesElement.appendChild(capabilityElement);
-        });
-        helloElement.appendChild(capabilitiesElement);
-
-        if (sessionId != null) {
-            final Element sessionIdElement
-                = createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "session-id");
-            sessionIdElement.setPrefix(namespacePrefix);
-            sessionIdElement.setTextContent(sessionId);
-            helloElement.appendChild(sessionIdElement);
+    @Override
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        writer.startElement(namespacePrefix, "hello")
+            .namespace(namespacePrefix, URN_XML_NS_NETCONF_BASE_1_0)
+            .startElement(namespacePrefix, "capabilities");
+        for (final String capability : capabilities) {
+            writer.textElement(namespacePrefix, "capability", capability);
         }
-        return createdDocument;
+        writer.endElement()
+            .textElement(namespacePrefix, "session-id", sessionId)
+            .endElement();
     }
 
 }
@@ -0,0 +1,147 @@
+package net.juniper.netconf.element;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * An {@link XmlParser} that uses the JAXP APIs - StAX to read the fields of elements, and DOM
+ * to parse documents. By default, the platform implementations are used, as located by
+ * {@link XMLInputFactory#newInstance()} and {@link DocumentBuilderFactory#newInstance()};
+ * other implementations, such as Woodstox or Aalto, can be supplied explicitly:
+ * <pre>{@code
+ * XmlParser.setDefault(new JaxpXmlParser(
+ *     com.fasterxml.aalto.stax.InputFactoryImpl::new,
+ *     DocumentBuilderFactory::newInstance));
+ * }</pre>
+ *
+ * <p>Neither factories nor document builders are thread-safe, so each thread that uses the
+ * parser creates its own, once, and reuses them.
+ */
+public class JaxpXmlParser implements XmlParser {
+
+    private static final String DISALLOW_DOCTYPE_DECL =
+        "http://apache.org/xml/features/disallow-doctype-decl";
+    private static final JaxpXmlParser INSTANCE = new JaxpXmlParser();
+
+    private final ThreadLocal<XMLInputFactory> xmlInputFactory;
+    private final ThreadLocal<DocumentBuilder> documentBuilder;
+
+    /**
+     * Creates a parser that uses the platform implementations.
+     */
+    public JaxpXmlParser() {
+        this(XMLInputFactory::newInstance, DocumentBuilderFactory::newInstance);
+    }
+
+    /**
+     * Creates a parser that uses the supplied implementations. Each factory is configured to be
+     * namespace aware and to reject, or ignore, document type declarations.
+     *
+     * @param xmlInputFactorySupplier       creates the factory for the StAX readers.
+     * @param documentBuilderFactorySupplier creates the factory for the document builders.
+     */
+    public JaxpXmlParser(
+        final Supplier<XMLInputFactory> xmlInputFactorySupplier,
+        final Supplier<DocumentBuilderFactory> documentBuilderFactorySupplier
+    ) {
+        this.xmlInputFactory = ThreadLocal.withInitial(
+            () -> configure(xmlInputFactorySupplier.get()));
+        this.documentBuilder = ThreadLocal.withInitial(
+            () -> createDocumentBuilder(configure(documentBuilderFactorySupplier.get())));
+    }
+
+    /**
+     * Returns the parser that uses the platform implementations, shared by all devices.
+     *
+     * @return the shared parser.
+     */
+    public static JaxpXmlParser getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public XMLStreamReader createXmlStreamReader(final String xml) throws XMLStreamException {
+        return xmlInputFactory.get().createXMLStreamReader(new StringReader(xml));
+    }
+
+    @Override
+    public XMLStreamReader createXmlStreamReader(final byte[] utf8Xml)
+        throws XMLStreamException {
+        return xmlInputFactory.get().createXMLStreamReader(
+            new ByteArrayInputStream(utf8Xml), StandardCharsets.UTF_8.name());
+    }
+
+    @Override
+    public XMLStreamReader createXmlStreamReader(final InputStream utf8Xml)
+        throws XMLStreamException {
+        return xmlInputFactory.get().createXMLStreamReader(
+            utf8Xml, StandardCharsets.UTF_8.name());
+    }
+
+    @Override
+    public Document parseDocument(final InputSource inputSource)
+        throws IOException, SAXException {
+        return getDocumentBuilder().parse(inputSource);
+    }
+
+    /**
+     * Returns the document builder of the current thread, which is reset ready for use. The
+     * builder must not be used after the current thread has requested it again.
+     *
+     * @return the document builder.
+     */
+    public DocumentBuilder getDocumentBuilder() {
+        final DocumentBuilder threadDocumentBuilder = documentBuilder.get();
+        threadDocumentBuilder.reset();
+        return threadDocumentBuilder;
+    }
+
+    private static XMLInputFactory configure(final XMLInputFactory xmlInputFactory) {
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return xmlInputFactory;
+    }
+
+    /**
+     * Configures a document builder factory to be namespace aware, with secure processing
+     * enabled and document type declarations disallowed - NETCONF messages do not use them.
+     */
+    static DocumentBuilderFactory configure(final DocumentBuilderFactory documentBuilderFactory) {
+        documentBuilderFactory.setNamespaceAware(true);
+        documentBuilderFactory.setXIncludeAware(false);
+        documentBuilderFactory.setExpandEntityReferences(false);
+        try {
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            documentBuilderFactory.setFeature(DISALLOW_DOCTYPE_DECL, true);
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to configure document builder factory", e);
+        }
+        return documentBuilderFactory;
+    }
+
+    private static DocumentBuilder createDocumentBuilder(
+        final DocumentBuilderFactory documentBuilderFactory
+    ) {
+        try {
+            return documentBuilderFactory.newDocumentBuilder();
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create document builder", e);
+        }
+    }
+}
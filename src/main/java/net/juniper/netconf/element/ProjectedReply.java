@@ -0,0 +1,104 @@
+package net.juniper.netconf.element;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * The values selected from an rpc-reply by a {@link Projection}, together with the status of the
+ * reply. Nothing else of the reply is kept.
+ */
+@Value
+public class ProjectedReply {
+
+    String messageId;
+    boolean ok;
+    @SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "False positive - list is immutable"
+    )
+    List<RpcError> errors;
+    @Getter(AccessLevel.NONE)
+    Map<String, List<String>> values;
+
+    ProjectedReply(
+        final String messageId,
+        final boolean ok,
+        final List<RpcError> errors,
+        final Map<String, List<String>> values
+    ) {
+        this.messageId = messageId;
+        this.ok = ok;
+        this.errors = Collections.unmodifiableList(errors);
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Indicates if the reply has any errors.
+     *
+     * @return {@code true} if the RPC reply has any errors, otherwise {@code false}.
+     */
+    public boolean hasErrors() {
+        return errors.stream()
+            .anyMatch(error -> error.getErrorSeverity() == RpcError.ErrorSeverity.ERROR);
+    }
+
+    /**
+     * Returns every value selected by a selector, in the order they appear in the reply.
+     *
+     * @param selector the name of the selector.
+     * @return the values; this is empty if nothing matched the selector.
+     * @throws IllegalArgumentException if the projection has no selector with the name.
+     */
+    public List<String> getValues(final String selector) {
+        final List<String> selected = values.get(selector);
+        if (selected == null) {
+            throw new IllegalArgumentException("Unknown selector '" + selector + "'");
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the first value selected by a selector.
+     *
+     * @param selector the name of the selector.
+     * @return the value, or null if nothing matched the selector.
+     * @throws IllegalArgumentException if the projection has no selector with the name.
+     */
+    public String getValue(final String selector) {
+        final List<String> selected = getValues(selector);
+        return selected.isEmpty() ? null : selected.get(0);
+    }
+
+    /**
+     * Returns the first value selected by a selector, as a long - e.g. a counter.
+     *
+     * @param selector     the name of the selector.
+     * @param defaultValue the value returned if nothing matched the selector.
+     * @return the value.
+     * @throws IllegalArgumentException if the projection has no selector with the name.
+     * @throws NumberFormatException    if the value is not a number.
+     */
+    public long getLong(final String selector, final long defaultValue) {
+        final String value = getValue(selector);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Returns every value selected by a selector, as longs.
+     *
+     * @param selector the name of the selector.
+     * @return the values, in the order they appear in the reply.
+     * @throws IllegalArgumentException if the projection has no selector with the name.
+     * @throws NumberFormatException    if any value is not a number.
+     */
+    public long[] getLongs(final String selector) {
+        return getValues(selector).stream()
+            .mapToLong(Long::parseLong)
+            .toArray();
+    }
+}
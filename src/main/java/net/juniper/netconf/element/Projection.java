@@ -0,0 +1,301 @@
+package net.juniper.netconf.element;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+import org.xml.sax.SAXException;
+
+/**
+ * Selects values from an rpc-reply as it is read, without building a document or keeping the
+ * XML. Only the selected values are kept, so the memory used depends on what is selected rather
+ * than on the size of the reply. For example, to poll the counters of each interface:
+ * <pre>{@code
+ * final Projection projection = Projection.builder()
+ *     .selector("name", "interface-information/physical-interface/name")
+ *     .selector("input-packets",
+ *         "interface-information/physical-interface/traffic-statistics/input-packets")
+ *     .build();
+ * final ProjectedReply reply =
+ *     session.executeRpc("<get-interface-information><statistics/></get-interface-information>",
+ *         projection);
+ * final List<String> names = reply.getValues("name");
+ * final long[] inputPackets = reply.getLongs("input-packets");
+ * }</pre>
+ *
+ * <p>Each selector is a path of element names, separated by {@code /}, relative to the
+ * &lt;rpc-reply&gt; element. Names are matched ignoring namespaces, and {@code *} matches any
+ * element. An element selects its trimmed text content; a final step of {@code @name} selects an
+ * attribute of the element instead. &lt;ok/&gt; and &lt;rpc-error&gt; elements are always read.
+ */
+@Value
+public class Projection implements ReplyDecoder<ProjectedReply> {
+
+    /**
+     * The paths of the selected values, by the name of each selector.
+     */
+    @SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "False positive - map is immutable"
+    )
+    Map<String, String> selectors;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    Step root;
+
+    @Builder
+    private Projection(@Singular final Map<String, String> selectors) {
+        if (selectors.isEmpty()) {
+            throw new IllegalArgumentException("A projection requires at least one selector");
+        }
+        this.selectors = selectors;
+        this.root = new Step();
+        selectors.forEach((name, path) -> root.add(name, path));
+    }
+
+    /**
+     * Builds a projection; each selector is added with {@code selector(name, path)}.
+     */
+    @SuppressFBWarnings(
+        value = "UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR",
+        justification = "The generated builder initialises the selectors when first added"
+    )
+    public static class ProjectionBuilder {
+    }
+
+    @Override
+    public ProjectedReply decode(final String xml, final XmlParser xmlParser)
+        throws SAXException {
+        try (final XmlScanner scanner = new XmlScanner(xmlParser, xml)) {
+            return project(scanner);
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ProjectedReply decode(final InputStream utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        try (final XmlScanner scanner = new XmlScanner(xmlParser, utf8Xml, false)) {
+            return project(scanner);
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getMessageId(final ProjectedReply reply) {
+        return reply.getMessageId();
+    }
+
+    private ProjectedReply project(final XmlScanner scanner) throws XMLStreamException {
+        final Map<String, List<String>> values = new LinkedHashMap<>();
+        selectors.keySet().forEach(name -> values.put(name, new ArrayList<>()));
+        String messageId = null;
+        boolean ok = false;
+        final List<RpcError> errors = new ArrayList<>();
+
+        scanner.nextRootElement();
+        if (scanner.isNetconfElement("rpc-reply")) {
+            messageId = scanner.getAttribute("message-id");
+            final List<Step> roots = Collections.singletonList(root);
+            while (scanner.nextChildElement()) {
+                if (scanner.isNetconfElement("ok")) {
+                    ok = true;
+                    scanner.skipElement();
+                } else if (scanner.isNetconfElement("rpc-error")) {
+                    errors.add(scanner.readRpcError());
+                } else {
+                    readSelected(scanner, roots, values);
+                }
+            }
+        } else {
+            scanner.skipElement();
+        }
+        scanner.skipToEnd();
+
+        values.replaceAll((name, selected) -> Collections.unmodifiableList(selected));
+        return new ProjectedReply(messageId, ok, errors, values);
+    }
+
+    /**
+     * Moves from the start of an element to its end, collecting the values selected from it and
+     * its descendants. Elements that nothing is selected from are skipped.
+     */
+    private static void readSelected(
+        final XmlScanner scanner,
+        final List<Step> parents,
+        final Map<String, List<String>> values
+    ) throws XMLStreamException {
+        final XMLStreamReader reader = scanner.getReader();
+        final Deque<Selection> selections = new ArrayDeque<>();
+        int collectingText = 0;
+        List<Step> steps = match(parents, reader.getLocalName());
+        while (true) {
+            if (steps.isEmpty() && collectingText == 0) {
+                scanner.skipElement();
+            } else {
+                final Selection selection = new Selection(steps, scanner, values);
+                selections.push(selection);
+                if (selection.text != null) {
+                    collectingText++;
+                }
+            }
+            if (selections.isEmpty()) {
+                return;
+            }
+            // Read up to the start of the next element that may be selected
+            int event = reader.next();
+            while (event != START_ELEMENT) {
+                if (event == END_ELEMENT) {
+                    final Selection selection = selections.pop();
+                    if (selection.text != null) {
+                        collectingText--;
+                        selection.addText(values);
+                    }
+                    if (selections.isEmpty()) {
+                        return;
+                    }
+                } else if (collectingText > 0
+                    && (event == CHARACTERS || event == CDATA || event == SPACE)) {
+                    for (final Selection selection : selections) {
+                        if (selection.text != null) {
+                            selection.text.append(reader.getTextCharacters(),
+                                reader.getTextStart(), reader.getTextLength());
+                        }
+                    }
+                }
+                event = reader.next();
+            }
+            steps = match(selections.peek().steps, reader.getLocalName());
+        }
+    }
+
+    private static List<Step> match(final List<Step> parents, final String localName) {
+        List<Step> matched = Collections.emptyList();
+        for (final Step parent : parents) {
+            matched = add(matched, parent.children.get(localName));
+            matched = add(matched, parent.anyChild);
+        }
+        return matched;
+    }
+
+    private static List<Step> add(final List<Step> steps, final Step step) {
+        if (step == null) {
+            return steps;
+        }
+        final List<Step> added = steps.isEmpty() ? new ArrayList<>(2) : steps;
+        added.add(step);
+        return added;
+    }
+
+    /**
+     * A step in the paths of the selectors; the root step represents the &lt;rpc-reply&gt;.
+     */
+    private static final class Step {
+
+        private final Map<String, Step> children = new HashMap<>();
+        private Step anyChild;
+        private final List<String> textSelectors = new ArrayList<>();
+        private final Map<String, List<String>> attributeSelectors = new HashMap<>();
+
+        private void add(final String name, final String path) {
+            final String[] names = path.split("/", -1);
+            Step step = this;
+            for (int i = 0; i < names.length; i++) {
+                final String stepName = names[i];
+                final boolean attribute = stepName.startsWith("@");
+                if (stepName.isEmpty() || attribute && (i == 0 || i < names.length - 1)) {
+                    throw new IllegalArgumentException(
+                        "Invalid path '" + path + "' for selector '" + name + "'");
+                }
+                if (attribute) {
+                    step.attributeSelectors
+                        .computeIfAbsent(stepName.substring(1), key -> new ArrayList<>())
+                        .add(name);
+                    return;
+                }
+                if ("*".equals(stepName)) {
+                    if (step.anyChild == null) {
+                        step.anyChild = new Step();
+                    }
+                    step = step.anyChild;
+                } else {
+                    step = step.children.computeIfAbsent(stepName, child -> new Step());
+                }
+            }
+            step.textSelectors.add(name);
+        }
+    }
+
+    /**
+     * An element that values are being selected from.
+     */
+    private static final class Selection {
+
+        private final List<Step> steps;
+        // Collects the text content, if the text is selected
+        private final StringBuilder text;
+
+        private Selection(
+            final List<Step> steps,
+            final XmlScanner scanner,
+            final Map<String, List<String>> values
+        ) {
+            this.steps = steps;
+            boolean selectsText = false;
+            for (final Step step : steps) {
+                selectsText |= !step.textSelectors.isEmpty();
+                step.attributeSelectors.forEach((attribute, names) -> {
+                    final String value = getAttribute(scanner.getReader(), attribute);
+                    if (value != null) {
+                        names.forEach(name -> values.get(name).add(value));
+                    }
+                });
+            }
+            this.text = selectsText ? new StringBuilder() : null;
+        }
+
+        /**
+         * Returns the first attribute with a local name, in any namespace.
+         */
+        private static String getAttribute(final XMLStreamReader reader, final String localName) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (localName.equals(reader.getAttributeLocalName(i))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        private void addText(final Map<String, List<String>> values) {
+            final String value = text.toString().trim();
+            for (final Step step : steps) {
+                step.textSelectors.forEach(name -> values.get(name).add(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.juniper.netconf.element;
+
+import java.io.InputStream;
+import javax.xml.stream.XMLStreamException;
+import lombok.Value;
+import org.xml.sax.SAXException;
+
+/**
+ * Decodes a reply containing many repeated elements - e.g. each &lt;rt&gt; of a
+ * &lt;route-information&gt; - to a {@link RecordIterator}, which reads one record at a time.
+ *
+ * <p>The path of the records is a list of element names, separated by {@code /}, relative to the
+ * &lt;rpc-reply&gt; element - e.g. {@code route-information/route-table/rt}. Names are matched
+ * ignoring namespaces, and {@code *} matches any element.
+ */
+@Value
+public class RecordDecoder implements ReplyDecoder<RecordIterator> {
+
+    /**
+     * The path of the records.
+     */
+    String path;
+
+    private RecordDecoder(final String path) {
+        for (final String name : path.split("/", -1)) {
+            if (name.isEmpty() || name.startsWith("@")) {
+                throw new IllegalArgumentException("Invalid record path '" + path + "'");
+            }
+        }
+        this.path = path;
+    }
+
+    /**
+     * Creates a decoder for the records at a path.
+     *
+     * @param path the path of the records, e.g. {@code interface-information/physical-interface}.
+     * @return the decoder.
+     */
+    public static RecordDecoder forPath(final String path) {
+        return new RecordDecoder(path);
+    }
+
+    @Override
+    public RecordIterator decode(final String xml, final XmlParser xmlParser)
+        throws SAXException {
+        try {
+            return new RecordIterator(new XmlScanner(xmlParser, xml), null, path.split("/"));
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public RecordIterator decode(final InputStream utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        try {
+            return new RecordIterator(
+                new XmlScanner(xmlParser, utf8Xml, false), utf8Xml, path.split("/"));
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public String getMessageId(final RecordIterator reply) {
+        return reply.getMessageId();
+    }
+}
@@ -0,0 +1,300 @@
+package net.juniper.netconf.element;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.extern.log4j.Log4j2;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Iterates over the records of a reply, e.g. each &lt;physical-interface&gt; of a
+ * &lt;get-interface-information&gt;, reading the reply only as each record is requested. Each
+ * record is returned as the root element of its own document, with the namespaces of its
+ * ancestors declared on it, so that a record can be discarded once it has been used; if the reply
+ * is read from the device as it is received, the whole reply is never held in memory.
+ * <pre>{@code
+ * try (final RecordIterator interfaces = session.iterateRecords(
+ *     "<get-interface-information/>", "interface-information/physical-interface")) {
+ *     while (interfaces.hasNext()) {
+ *         final Element physicalInterface = interfaces.next();
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The &lt;ok/&gt; and &lt;rpc-error&gt; elements of the reply are read as they are reached, so
+ * are only complete once every record has been read. If the reply cannot be read, {@link #hasNext}
+ * and {@link #next} throw an {@link IllegalStateException}. The iterator must be closed if it is
+ * not read to the end.
+ */
+@Log4j2
+public final class RecordIterator implements Iterator<Element>, AutoCloseable {
+
+    private static final String ANY_ELEMENT = "*";
+
+    private final XmlScanner scanner;
+    private final XMLStreamReader reader;
+    private final InputStream stream;
+    private final String[] path;
+    private final String messageId;
+    private final List<RpcError> errors = new ArrayList<>();
+    // The namespaces declared on the <rpc-reply>, and on each ancestor of the next record
+    private final Deque<List<String[]>> namespaces = new ArrayDeque<>();
+    private boolean ok;
+    private int depth;
+    private Element nextRecord;
+    private boolean finished;
+
+    RecordIterator(final XmlScanner scanner, final InputStream stream, final String[] path)
+        throws XMLStreamException {
+        this.scanner = scanner;
+        this.reader = scanner.getReader();
+        this.stream = stream;
+        this.path = path.clone();
+        scanner.nextRootElement();
+        if (scanner.isNetconfElement("rpc-reply")) {
+            this.messageId = scanner.getAttribute("message-id");
+            namespaces.push(getNamespaces());
+        } else {
+            this.messageId = null;
+            finish();
+        }
+    }
+
+    /**
+     * Returns the message-id of the reply.
+     *
+     * @return the message-id, or null if the reply does not have one.
+     */
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Indicates if the reply contains an &lt;ok/&gt; element, of those read so far.
+     *
+     * @return {@code true} if an &lt;ok/&gt; element has been read, otherwise {@code false}.
+     */
+    public boolean isOk() {
+        return ok;
+    }
+
+    /**
+     * Returns the errors in the reply, of those read so far.
+     *
+     * @return the errors.
+     */
+    public List<RpcError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRecord == null && !finished) {
+            try {
+                nextRecord = readNextRecord();
+            } catch (final XMLStreamException e) {
+                close();
+                throw new IllegalStateException("Unable to read the next record", e);
+            }
+        }
+        return nextRecord != null;
+    }
+
+    @Override
+    public Element next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Element record = nextRecord;
+        nextRecord = null;
+        return record;
+    }
+
+    /**
+     * Returns the remaining records as a stream. Closing the stream closes this iterator.
+     *
+     * @return the stream of records.
+     */
+    public Stream<Element> stream() {
+        final Spliterator<Element> records = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(records, false).onClose(this::close);
+    }
+
+    /**
+     * Stops reading the reply. The rest of the reply is discarded.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finish();
+        }
+    }
+
+    private Element readNextRecord() throws XMLStreamException {
+        while (true) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                if (depth == 0 && scanner.isNetconfElement("ok")) {
+                    ok = true;
+                    scanner.skipElement();
+                } else if (depth == 0 && scanner.isNetconfElement("rpc-error")) {
+                    errors.add(scanner.readRpcError());
+                } else if (!matches(path[depth], reader.getLocalName())) {
+                    scanner.skipElement();
+                } else if (depth == path.length - 1) {
+                    return readRecord();
+                } else {
+                    namespaces.push(getNamespaces());
+                    depth++;
+                }
+            } else if (event == END_ELEMENT) {
+                if (depth == 0) {
+                    // The end of the <rpc-reply>
+                    scanner.skipToEnd();
+                    finish();
+                    return null;
+                }
+                namespaces.pop();
+                depth--;
+            }
+        }
+    }
+
+    private static boolean matches(final String name, final String localName) {
+        return ANY_ELEMENT.equals(name) || name.equals(localName);
+    }
+
+    /**
+     * Reads the record the reader is at the start of into a new document.
+     */
+    private Element readRecord() throws XMLStreamException {
+        final Document document = AbstractNetconfElement.createBlankDocument();
+        final Element record = createElement(document);
+        // Declare the namespaces of the ancestors, so the record can be used on its own
+        final Set<String> declaredPrefixes = new HashSet<>();
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            declaredPrefixes.add(nullToEmpty(reader.getNamespacePrefix(i)));
+        }
+        for (final List<String[]> ancestorNamespaces : namespaces) {
+            for (final String[] namespace : ancestorNamespaces) {
+                if (declaredPrefixes.add(namespace[0])) {
+                    declareNamespace(record, namespace[0], namespace[1]);
+                }
+            }
+        }
+        document.appendChild(record);
+
+        Node parent = record;
+        while (parent != document) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                parent = parent.appendChild(createElement(document));
+            } else if (event == END_ELEMENT) {
+                parent = parent.getParentNode();
+            } else if (event == CHARACTERS || event == SPACE) {
+                parent.appendChild(document.createTextNode(reader.getText()));
+            } else if (event == CDATA) {
+                parent.appendChild(document.createCDATASection(reader.getText()));
+            }
+        }
+        return record;
+    }
+
+    private Element createElement(final Document document) {
+        final String prefix = reader.getPrefix();
+        final Element element = document.createElementNS(
+            emptyToNull(reader.getNamespaceURI()),
+            prefix == null || prefix.isEmpty()
+                ? reader.getLocalName() : prefix + ":" + reader.getLocalName());
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            declareNamespace(element, nullToEmpty(reader.getNamespacePrefix(i)),
+                reader.getNamespaceURI(i));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String attributePrefix = reader.getAttributePrefix(i);
+            element.setAttributeNS(
+                emptyToNull(reader.getAttributeNamespace(i)),
+                attributePrefix == null || attributePrefix.isEmpty()
+                    ? reader.getAttributeLocalName(i)
+                    : attributePrefix + ":" + reader.getAttributeLocalName(i),
+                reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    /**
+     * Returns the namespaces declared on the current element, as prefix and URI pairs. The
+     * default namespace has an empty prefix.
+     */
+    private List<String[]> getNamespaces() {
+        final List<String[]> declared = new ArrayList<>(reader.getNamespaceCount());
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            declared.add(new String[] {
+                nullToEmpty(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i)
+            });
+        }
+        return declared;
+    }
+
+    private static void declareNamespace(
+        final Element element,
+        final String prefix,
+        final String namespaceUri
+    ) {
+        element.setAttributeNS(
+            XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+            prefix.isEmpty()
+                ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+            nullToEmpty(namespaceUri));
+    }
+
+    private static String emptyToNull(final String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String nullToEmpty(final String value) {
+        return value == null ? "" : value;
+    }
+
+    private void finish() {
+        finished = true;
+        nextRecord = null;
+        try {
+            scanner.close();
+        } catch (final XMLStreamException e) {
+            log.warn("Unable to close reader", e);
+        }
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (final IOException e) {
+                log.warn("Unable to close stream", e);
+            }
+        }
+    }
+}
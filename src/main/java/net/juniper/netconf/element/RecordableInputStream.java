@@ -0,0 +1,31 @@
+package net.juniper.netconf.element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A stream that can keep the bytes read from it, in memory that it already manages - e.g. the
+ * segments a reply is received in - so that a reply parsed from the stream can be backed by the
+ * bytes that were read, without the parser copying them into memory of its own.
+ * {@link RpcReply#from(InputStream, XmlParser)} records a stream of this type rather than
+ * copying it.
+ */
+public abstract class RecordableInputStream extends InputStream {
+
+    /**
+     * Starts keeping the bytes read from the stream. This is called before anything is read.
+     */
+    public abstract void record();
+
+    /**
+     * Reads the rest of the stream, and returns every byte read since recording started. The
+     * caller takes ownership of the buffers, which are no longer counted or reused by the stream.
+     *
+     * @return the recorded bytes - the remaining bytes of each buffer, in turn. These must not be
+     *     changed.
+     * @throws IOException if the rest of the stream cannot be read.
+     */
+    public abstract List<ByteBuffer> takeRecording() throws IOException;
+}
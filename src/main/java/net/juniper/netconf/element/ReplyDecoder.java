@@ -0,0 +1,79 @@
+package net.juniper.netconf.element;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.xml.sax.SAXException;
+
+/**
+ * Decodes the reply to an RPC. A reply may be decoded once it has been received in full, from a
+ * String, or from a stream while it is still being received.
+ *
+ * @param <T> the type the reply is decoded to.
+ */
+public interface ReplyDecoder<T> {
+
+    /**
+     * Returns the decoder that creates an {@link RpcReply}, as {@link RpcReply#from(String)}.
+     *
+     * @return the decoder.
+     */
+    static ReplyDecoder<RpcReply> rpcReply() {
+        return RpcReplyDecoder.INSTANCE;
+    }
+
+    /**
+     * Decodes a reply that has been received in full.
+     *
+     * @param xml       the XML of the reply.
+     * @param xmlParser the parser used to read the XML.
+     * @return the decoded reply.
+     * @throws SAXException if the XML cannot be parsed.
+     */
+    T decode(String xml, XmlParser xmlParser) throws SAXException;
+
+    /**
+     * Decodes a reply as it is read from a stream, up to the end of the stream - unless the
+     * decoder {@link #isStreaming() is streaming}.
+     *
+     * @param utf8Xml   the stream of XML of the reply, encoded as UTF-8. This is not closed,
+     *                  unless the decoder is streaming.
+     * @param xmlParser the parser used to read the XML.
+     * @return the decoded reply.
+     * @throws SAXException if the XML cannot be read or parsed.
+     */
+    T decode(InputStream utf8Xml, XmlParser xmlParser) throws SAXException;
+
+    /**
+     * Decodes a reply that has been received in full, as UTF-8 bytes - the remaining bytes of the
+     * buffer. The position of the buffer is not changed. By default, the bytes are read as a
+     * stream, without being copied - even if the buffer is direct or memory-mapped.
+     *
+     * @param utf8Xml   the XML of the reply, encoded as UTF-8. Its content must not be changed.
+     * @param xmlParser the parser used to read the XML.
+     * @return the decoded reply.
+     * @throws SAXException if the XML cannot be parsed.
+     */
+    default T decode(final ByteBuffer utf8Xml, final XmlParser xmlParser) throws SAXException {
+        return decode(XmlScanner.newInputStream(utf8Xml), xmlParser);
+    }
+
+    /**
+     * Indicates if the decoded reply continues to read the stream once it has been returned by
+     * {@link #decode(InputStream, XmlParser)} - e.g. a {@link RecordIterator}, which reads each
+     * record as it is requested. Such a reply takes ownership of the stream. Sessions that can
+     * decode replies as they are received always do so for these decoders.
+     *
+     * @return {@code true} if the reply is read as it is used, otherwise {@code false}.
+     */
+    default boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Returns the message-id of a decoded reply, so the reply can be matched with its RPC.
+     *
+     * @param reply the decoded reply.
+     * @return the message-id, or null if the reply does not have one.
+     */
+    String getMessageId(T reply);
+}
@@ -0,0 +1,56 @@
+package net.juniper.netconf.element;
+
+import java.io.IOException;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+import org.w3c.dom.Document;
+
+/**
+ * Class to represent a NETCONF rpc element - https://datatracker.ietf.org/doc/html/rfc6241#section-4.1
+ * The element is written directly as UTF-8 when it is sent, so neither a document nor a String
+ * is created unless requested.
+ */
+@Value
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class Rpc extends AbstractNetconfElement {
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    String namespacePrefix;
+
+    String messageId;
+
+    /**
+     * The content of the &lt;rpc&gt; element, e.g. {@code <get-config>...</get-config>}. This is
+     * written as-is, so must be well-formed XML. Unprefixed elements are in the NETCONF
+     * namespace, unless a namespace prefix is used for the &lt;rpc&gt; element.
+     */
+    String content;
+
+    @Builder
+    private Rpc(
+        final String namespacePrefix,
+        final String messageId,
+        final String content
+    ) {
+        super((Document) null);
+        this.namespacePrefix = namespacePrefix;
+        this.messageId = messageId;
+        this.content = content;
+    }
+
+    @Override
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        writer.startElement(namespacePrefix, "rpc")
+            .namespace(namespacePrefix, URN_XML_NS_NETCONF_BASE_1_0)
+            .attribute("message-id", messageId)
+            .xml(content)
+            .endElement();
+    }
+}
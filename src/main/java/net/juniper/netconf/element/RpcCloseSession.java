@@ -4,12 +4,11 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.io.StringReader;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.Value;
 import lombok.extern.log4j.Log4j2;
@@ -32,6 +31,12 @@ public class RpcCloseSession extends AbstractNetconfElement {
         = getXpathFor("rpc");
     private static final String XPATH_RPC_MESSAGE_ID
         = XPATH_RPC + getXpathFor("message-id");
+    private static final CachedXpathExpression RPC = new CachedXpathExpression(XPATH_RPC);
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    String namespacePrefix;
 
     String messageId;
 
@@ -51,15 +56,9 @@ public class RpcCloseSession extends AbstractNetconfElement {
         SAXException,
         XPathExpressionException {
 
-        final Document document = createDocumentBuilderFactory()
-            .newDocumentBuilder()
+        final Document document = getDocumentBuilder()
             .parse(new InputSource(new StringReader(xml)));
-        final XPath xPath = XPathFactory.newInstance().newXPath();
-        final Element rpcElement = (Element) xPath.evaluate(
-            XPATH_RPC,
-            document,
-            XPathConstants.NODE
-        );
+        final Element rpcElement = RPC.evaluateElement(document);
         final RpcCloseSession rpcCloseSession = RpcCloseSession.builder()
             .messageId(rpcElement.getAttribute("message-id"))
             .build();
@@ -73,39 +72,19 @@ public class RpcCloseSession extends AbstractNetconfElement {
         final String namespacePrefix,
         final String messageId
     ) {
-        super(getDocument(originalDocument, namespacePrefix, messageId));
+        super(originalDocument);
+        this.namespacePrefix = namespacePrefix;
         this.messageId = messageId;
     }
 
-    private static Document getDocument(
-        final Document originalDocument,
-        final String namespacePrefix,
-        final String messageId
-    ) {
-        if (originalDocument != null) {
-            return originalDocument;
-        } else {
-            return createDocument(namespacePrefix, messageId);
-        }
-    }
-
-    private static Document createDocument(
-        final String namespacePrefix,
-        final String messageId
-    ) {
-
-        final Document createdDocument = createBlankDocument();
-
-        final Element rpcElement
-            = createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "rpc");
-        rpcElement.setPrefix(namespacePrefix);
-        rpcElement.setAttribute("message-id", messageId);
-        createdDocument.appendChild(rpcElement);
-        final Element closeSessionElement
-            = createdDocument.createElementNS(URN_XML_NS_NETCONF_BASE_1_0, "close-session");
-        rpcElement.appendChild(closeSessionElement);
-
-        return createdDocument;
+    @Override
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        writer.startElement(namespacePrefix, "rpc")
+            .namespace(namespacePrefix, URN_XML_NS_NETCONF_BASE_1_0)
+            .attribute("message-id", messageId)
+            .startElement(namespacePrefix, "close-session")
+            .endElement()
+            .endElement();
     }
 
 }
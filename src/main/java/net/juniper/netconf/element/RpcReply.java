@@ -4,17 +4,21 @@ import static java.util.Optional.ofNullable;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Singular;
 import lombok.ToString;
 import lombok.Value;
@@ -22,8 +26,8 @@ import lombok.experimental.NonFinal;
 import lombok.extern.log4j.Log4j2;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -39,35 +43,6 @@ public class RpcReply extends AbstractNetconfElement {
 
     protected static final String XPATH_RPC_REPLY
         = getXpathFor("rpc-reply");
-    private static final String XPATH_RPC_REPLY_OK
-        = XPATH_RPC_REPLY + getXpathFor("ok");
-    private static final String XPATH_RPC_REPLY_ERROR
-        = XPATH_RPC_REPLY + getXpathFor("rpc-error");
-    private static final String XPATH_RPC_REPLY_ERROR_TYPE
-        = getXpathFor("error-type");
-    private static final String XPATH_RPC_REPLY_ERROR_TAG
-        = getXpathFor("error-tag");
-    private static final String XPATH_RPC_REPLY_ERROR_SEVERITY
-        = getXpathFor("error-severity");
-    private static final String XPATH_RPC_REPLY_ERROR_PATH = getXpathFor("error-path");
-    private static final String XPATH_RPC_REPLY_ERROR_MESSAGE
-        = getXpathFor("error-message");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO = getXpathFor("error-info");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_BAD_ATTRIBUTE
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("bad-attribute");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_BAD_ELEMENT
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("bad-element");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_BAD_NAMESPACE
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("bad-namespace");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_SESSION_ID
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("session-id");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_OK_ELEMENT
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("ok-element");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_ERR_ELEMENT
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("err-element");
-    private static final String XPATH_RPC_REPLY_ERROR_INFO_NO_OP_ELEMENT
-        = XPATH_RPC_REPLY_ERROR_INFO + getXpathFor("noop-element");
-
     String messageId;
     boolean ok;
     @SuppressFBWarnings(
@@ -75,6 +50,18 @@ public class RpcReply extends AbstractNetconfElement {
         justification = "False positive - list is immutable"
     )
     List<RpcError> errors;
+    @Getter(AccessLevel.PROTECTED)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    String namespacePrefix;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int errorCount;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    int warningCount;
 
     /**
      * Indicates if the reply has any errors or warnings.
@@ -91,8 +78,7 @@ public class RpcReply extends AbstractNetconfElement {
      * @return {@code true} if the RPC reply has any errors, otherwise {@code false}.
      */
     public boolean hasErrors() {
-        return errors.stream().anyMatch(error ->
-            error.getErrorSeverity() == RpcError.ErrorSeverity.ERROR);
+        return errorCount > 0;
     }
 
     /**
@@ -101,8 +87,7 @@ public class RpcReply extends AbstractNetconfElement {
      * @return {@code true} if the RPC reply has any warnings, otherwise {@code false}.
      */
     public boolean hasWarnings() {
-        return errors.stream().anyMatch(error ->
-            error.getErrorSeverity() == RpcError.ErrorSeverity.WARNING);
+        return warningCount > 0;
     }
 
     /**
@@ -117,45 +102,130 @@ public class RpcReply extends AbstractNetconfElement {
      * @throws SAXException                 If the XML cannot be parsed
      * @throws XPathExpressionException     If there is a problem in the parsing expressions
      */
-    @SuppressWarnings("unchecked")
     public static <T extends AbstractNetconfElement> T from(final String xml)
         throws ParserConfigurationException, IOException, SAXException, XPathExpressionException {
 
-        final Document document = createDocumentBuilderFactory().newDocumentBuilder()
-            .parse(new InputSource(new StringReader(xml)));
-        final XPath xPath = XPathFactory.newInstance().newXPath();
+        return from(xml, XmlParser.getDefault());
+    }
 
-        final Element loadConfigResultsElement = (Element) xPath.evaluate(
-            RpcReplyLoadConfigResults.XPATH_RPC_REPLY_LOAD_CONFIG_RESULT,
-            document,
-            XPathConstants.NODE
-        );
-        if (loadConfigResultsElement != null) {
-            return (T) RpcReplyLoadConfigResults.from(xml);
-        }
+    /**
+     * Generates an RpcReply object from XML, using the supplied parser.
+     *
+     * @param xml       The XML representing the reply.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @param <T>       The type of reply being generated - {@link RpcReply} or
+     *                  {@link RpcReplyLoadConfigResults}.
+     * @return an RpcReply object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractNetconfElement> T from(
+        final String xml,
+        final XmlParser xmlParser
+    ) throws SAXException {
 
-        final Element rpcReplyElement = (Element) xPath.evaluate(
-            XPATH_RPC_REPLY,
-            document,
-            XPathConstants.NODE
-        );
-        final Element rpcReplyOkElement = (Element) xPath.evaluate(
-            XPATH_RPC_REPLY_OK,
-            document,
-            XPathConstants.NODE
-        );
-        final List<RpcError> errorList = getRpcErrors(document, xPath, XPATH_RPC_REPLY_ERROR);
+        final RpcReply rpcReply = RpcReplyParser.parse(xml, xmlParser);
+        log.trace("rpc-reply is: {}", rpcReply::getXml);
+        return (T) rpcReply;
+    }
+
+    /**
+     * Generates an RpcReply object from XML encoded as UTF-8. The reply is backed by the bytes,
+     * which must not be changed; its fields are extracted without building a document, and the
+     * XML is only decoded if it is requested.
+     *
+     * @param utf8Xml The XML representing the reply, encoded as UTF-8.
+     * @param <T>     The type of reply being generated - {@link RpcReply} or
+     *                {@link RpcReplyLoadConfigResults}.
+     * @return an RpcReply object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    public static <T extends AbstractNetconfElement> T from(final byte[] utf8Xml)
+        throws SAXException {
 
-        final RpcReply rpcReply = RpcReply.builder()
-            .messageId(getAttribute(rpcReplyElement, "message-id"))
-            .ok(rpcReplyOkElement != null)
-            .errors(errorList)
-            .originalDocument(document)
-            .build();
+        return from(utf8Xml, XmlParser.getDefault());
+    }
+
+    /**
+     * Generates an RpcReply object from XML encoded as UTF-8, using the supplied parser. The
+     * reply is backed by the bytes, which must not be changed.
+     *
+     * @param utf8Xml   The XML representing the reply, encoded as UTF-8.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @param <T>       The type of reply being generated - {@link RpcReply} or
+     *                  {@link RpcReplyLoadConfigResults}.
+     * @return an RpcReply object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractNetconfElement> T from(
+        final byte[] utf8Xml,
+        final XmlParser xmlParser
+    ) throws SAXException {
+
+        return from(ByteBuffer.wrap(utf8Xml), xmlParser);
+    }
+
+    /**
+     * Generates an RpcReply object from the remaining bytes of a buffer of XML encoded as UTF-8,
+     * using the supplied parser. The reply is backed by the buffer, without copying it - even if
+     * it is direct or memory-mapped - so its content must not be changed. The position of the
+     * buffer is not changed.
+     *
+     * @param utf8Xml   The XML representing the reply, encoded as UTF-8.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @param <T>       The type of reply being generated - {@link RpcReply} or
+     *                  {@link RpcReplyLoadConfigResults}.
+     * @return an RpcReply object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractNetconfElement> T from(
+        final ByteBuffer utf8Xml,
+        final XmlParser xmlParser
+    ) throws SAXException {
+
+        final RpcReply rpcReply = RpcReplyParser.parse(utf8Xml.duplicate(), xmlParser);
         log.trace("rpc-reply is: {}", rpcReply::getXml);
         return (T) rpcReply;
     }
 
+    /**
+     * Generates an RpcReply object from a stream of XML encoded as UTF-8, using the supplied
+     * parser. The reply is decoded as the stream is read, so that a reply that is still being
+     * received is already parsed when the last of it arrives; the stream is read to its end, and
+     * the reply is backed by the bytes that were read - in the memory the stream already holds
+     * them in, if it is a {@link RecordableInputStream}.
+     *
+     * @param utf8Xml   The stream of XML representing the reply, encoded as UTF-8. This is not
+     *                  closed.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @param <T>       The type of reply being generated - {@link RpcReply} or
+     *                  {@link RpcReplyLoadConfigResults}.
+     * @return an RpcReply object.
+     * @throws SAXException If the XML cannot be read or parsed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractNetconfElement> T from(
+        final InputStream utf8Xml,
+        final XmlParser xmlParser
+    ) throws SAXException {
+
+        final RpcReply rpcReply = RpcReplyParser.parse(utf8Xml, xmlParser);
+        log.trace("rpc-reply is: {}", rpcReply::getXml);
+        return (T) rpcReply;
+    }
+
+    /**
+     * Finds the errors in a reply document using an XPath query. Replies are no longer parsed
+     * this way; this is kept only for compatibility with subclasses that use it.
+     *
+     * @param document   the reply document.
+     * @param exPath     the XPath used to evaluate the query.
+     * @param xpathQuery selects the rpc-error elements.
+     * @return the errors in the reply.
+     * @throws XPathExpressionException if the query cannot be evaluated.
+     */
     protected static List<RpcError> getRpcErrors(
         final Document document,
         final XPath exPath,
@@ -167,94 +237,68 @@ public class RpcReply extends AbstractNetconfElement {
             XPathConstants.NODESET
         );
         final List<RpcError> errorList = new ArrayList<>();
-        for (int i = 1; i <= errors.getLength(); i++) {
-            final String expressionPrefix = String.format("%s[%d]", xpathQuery, i);
-            final String errorType = exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_TYPE,
-                document
-            );
-            final String errorTag = exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_TAG,
-                document
-            );
-            final String errorSeverity = exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_SEVERITY,
-                document
-            );
-            final Element errorMessageElement = (Element) exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_MESSAGE,
-                document,
-                XPathConstants.NODE
-            );
-            final Element errorPathElement = (Element) exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_PATH,
-                document,
-                XPathConstants.NODE
-            );
-            final RpcError.RpcErrorBuilder errorBuilder = RpcError.builder()
-                .errorType(RpcError.ErrorType.from(errorType))
-                .errorTag(RpcError.ErrorTag.from(errorTag))
-                .errorSeverity(RpcError.ErrorSeverity.from(errorSeverity))
-                .errorMessage(getTextContent(errorMessageElement))
-                .errorMessageLanguage(getAttribute(errorMessageElement, "xml:lang"))
-                .errorPath(getTextContent(errorPathElement));
+        for (int i = 0; i < errors.getLength(); i++) {
+            errorList.add(getRpcError((Element) errors.item(i)));
+        }
+        return errorList;
+    }
 
-            final Element errorInfoElement = (Element) exPath.evaluate(
-                expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO,
-                document,
-                XPathConstants.NODE
-            );
-            if (errorInfoElement != null) {
-                final Element badAttributeElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_BAD_ATTRIBUTE,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element badElementAttribute = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_BAD_ELEMENT,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element badNamespaceElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_BAD_NAMESPACE,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element sessionIdElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_SESSION_ID,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element okElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_OK_ELEMENT,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element errElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_ERR_ELEMENT,
-                    document,
-                    XPathConstants.NODE
-                );
-                final Element noOpElement = (Element) exPath.evaluate(
-                    expressionPrefix + XPATH_RPC_REPLY_ERROR_INFO_NO_OP_ELEMENT,
-                    document,
-                    XPathConstants.NODE
-                );
+    /**
+     * Creates an RpcError from an rpc-error element, in one pass over its children.
+     */
+    private static RpcError getRpcError(final Element errorElement) {
+        final Map<String, Element> children = getNetconfChildElements(errorElement);
+        final Element errorMessageElement = children.get("error-message");
+        final RpcError.RpcErrorBuilder errorBuilder = RpcError.builder()
+            .errorType(RpcError.ErrorType.from(getTextContent(children.get("error-type"))))
+            .errorTag(RpcError.ErrorTag.from(getTextContent(children.get("error-tag"))))
+            .errorSeverity(
+                RpcError.ErrorSeverity.from(getTextContent(children.get("error-severity"))))
+            .errorMessage(getTextContent(errorMessageElement))
+            .errorMessageLanguage(getAttribute(errorMessageElement, "xml:lang"))
+            .errorPath(getTextContent(children.get("error-path")));
+
+        final Element errorInfoElement = children.get("error-info");
+        if (errorInfoElement != null) {
+            final Map<String, Element> errorInfo = getNetconfChildElements(errorInfoElement);
+            errorBuilder.errorInfo(RpcError.RpcErrorInfo.builder()
+                .badAttribute(getTextContent(errorInfo.get("bad-attribute")))
+                .badElement(getTextContent(errorInfo.get("bad-element")))
+                .badNamespace(getTextContent(errorInfo.get("bad-namespace")))
+                .sessionId(getTextContent(errorInfo.get("session-id")))
+                .okElement(getTextContent(errorInfo.get("ok-element")))
+                .errElement(getTextContent(errorInfo.get("err-element")))
+                .noOpElement(getTextContent(errorInfo.get("noop-element")))
+                .build());
+        }
+        return errorBuilder.build();
+    }
+
+    /**
+     * Returns the first child element with each local name in the NETCONF namespace.
+     */
+    private static Map<String, Element> getNetconfChildElements(final Element element) {
+        final Map<String, Element> children = new HashMap<>();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                && URN_XML_NS_NETCONF_BASE_1_0.equals(child.getNamespaceURI())) {
+                children.putIfAbsent(child.getLocalName(), (Element) child);
+            }
+        }
+        return children;
+    }
 
-                final RpcError.RpcErrorInfo errorInfo = RpcError.RpcErrorInfo.builder()
-                    .badAttribute(getTextContent(badAttributeElement))
-                    .badElement(getTextContent(badElementAttribute))
-                    .badNamespace(getTextContent(badNamespaceElement))
-                    .sessionId(getTextContent(sessionIdElement))
-                    .okElement(getTextContent(okElement))
-                    .errElement(getTextContent(errElement))
-                    .noOpElement(getTextContent(noOpElement))
-                    .build();
-                errorBuilder.errorInfo(errorInfo);
+    private static int countErrors(
+        final List<RpcError> errors,
+        final RpcError.ErrorSeverity errorSeverity
+    ) {
+        int count = 0;
+        for (final RpcError error : errors) {
+            if (error.getErrorSeverity() == errorSeverity) {
+                count++;
             }
-            errorList.add(errorBuilder.build());
         }
-        return errorList;
+        return count;
     }
 
     @Builder
@@ -265,54 +309,83 @@ public class RpcReply extends AbstractNetconfElement {
         final boolean ok,
         @Singular("error") final List<RpcError> errors
     ) {
-        super(getDocument(originalDocument, namespacePrefix, messageId, ok, errors));
+        super(originalDocument);
+        this.namespacePrefix = namespacePrefix;
         this.messageId = messageId;
         this.ok = ok;
         this.errors = Collections.unmodifiableList(errors);
+        this.errorCount = countErrors(errors, RpcError.ErrorSeverity.ERROR);
+        this.warningCount = countErrors(errors, RpcError.ErrorSeverity.WARNING);
     }
 
-    private static Document getDocument(
-        final Document originalDocument,
-        final String namespacePrefix,
+    /**
+     * Creates a reply from XML that has already been parsed to extract its properties.
+     *
+     * @param xml       The XML representing the reply.
+     * @param messageId The message-id of the reply.
+     * @param ok        Whether the reply contains an &lt;ok/&gt; element.
+     * @param errors    The errors in the reply.
+     */
+    protected RpcReply(
+        final String xml,
         final String messageId,
         final boolean ok,
         final List<RpcError> errors
     ) {
-        if (originalDocument != null) {
-            return originalDocument;
-        } else {
-            return createDocument(namespacePrefix, messageId, ok, errors);
-        }
+        super(xml);
+        this.namespacePrefix = null;
+        this.messageId = messageId;
+        this.ok = ok;
+        this.errors = Collections.unmodifiableList(errors);
+        this.errorCount = countErrors(errors, RpcError.ErrorSeverity.ERROR);
+        this.warningCount = countErrors(errors, RpcError.ErrorSeverity.WARNING);
     }
 
-    private static Document createDocument(
-        final String namespacePrefix,
-        final String messageId,
+    /**
+     * Creates a reply backed by the XML being read by a parser, whether that is a String or
+     * UTF-8 bytes.
+     *
+     * @param parser The parser that has extracted the properties of the reply.
+     * @param ok     Whether the reply contains an &lt;ok/&gt; element.
+     * @param errors The errors in the reply.
+     */
+    protected RpcReply(
+        final RpcReplyParser parser,
         final boolean ok,
         final List<RpcError> errors
     ) {
-        final Document createdDocument = createBlankDocument();
+        super(parser.getXml(), parser.getUtf8Xml(), parser.getXmlParser());
+        this.namespacePrefix = null;
+        this.messageId = parser.getMessageId();
+        this.ok = ok;
+        this.errors = Collections.unmodifiableList(errors);
+        this.errorCount = countErrors(errors, RpcError.ErrorSeverity.ERROR);
+        this.warningCount = countErrors(errors, RpcError.ErrorSeverity.WARNING);
+    }
 
-        final Element rpcReplyElement = createdDocument.createElementNS(
-            URN_XML_NS_NETCONF_BASE_1_0,
-            "rpc-reply"
-        );
-        rpcReplyElement.setPrefix(namespacePrefix);
-        rpcReplyElement.setAttribute("message-id", messageId);
-        createdDocument.appendChild(rpcReplyElement);
+    @Override
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        writer.startElement(namespacePrefix, "rpc-reply")
+            .namespace(namespacePrefix, URN_XML_NS_NETCONF_BASE_1_0)
+            .attribute("message-id", messageId);
         if (ok) {
-            final Element okElement = createdDocument.createElementNS(
-                URN_XML_NS_NETCONF_BASE_1_0,
-                "ok"
-            );
-            okElement.setPrefix(namespacePrefix);
-            rpcReplyElement.appendChild(okElement);
+            writer.startElement(namespacePrefix, "ok").endElement();
         }
-        appendErrors(namespacePrefix, errors, createdDocument, rpcReplyElement);
-
-        return createdDocument;
+        writeErrors(writer, namespacePrefix, errors);
+        writer.endElement();
     }
 
+    /**
+     * Appends elements for errors to a reply document.
+     *
+     * @param namespacePrefix the prefix of the netconf namespace, or null if it is the default.
+     * @param errors          the errors.
+     * @param createdDocument the reply document.
+     * @param parentElement   the element the rpc-error elements are appended to.
+     * @deprecated replies are no longer written as a document; kept only for compatibility with
+     *     subclasses that build their own. Use {@link #writeErrors(XmlWriter, String, List)}.
+     */
+    @Deprecated
     protected static void appendErrors(
         final String namespacePrefix,
         final List<RpcError> errors,
@@ -431,4 +504,46 @@ public class RpcReply extends AbstractNetconfElement {
             });
         });
     }
+
+    protected static void writeErrors(
+        final XmlWriter writer,
+        final String namespacePrefix,
+        final List<RpcError> errors
+    ) throws IOException {
+        for (final RpcError error : errors) {
+            writer.startElement(namespacePrefix, "rpc-error");
+            if (error.getErrorType() != null) {
+                writer.textElement(
+                    namespacePrefix, "error-type", error.getErrorType().getTextContent());
+            }
+            if (error.getErrorTag() != null) {
+                writer.textElement(
+                    namespacePrefix, "error-tag", error.getErrorTag().getTextContent());
+            }
+            if (error.getErrorSeverity() != null) {
+                writer.textElement(
+                    namespacePrefix, "error-severity", error.getErrorSeverity().getTextContent());
+            }
+            writer.textElement(namespacePrefix, "error-path", error.getErrorPath());
+            if (error.getErrorMessage() != null) {
+                writer.startElement(namespacePrefix, "error-message")
+                    .attribute("xml:lang", error.getErrorMessageLanguage())
+                    .text(error.getErrorMessage())
+                    .endElement();
+            }
+            final RpcError.RpcErrorInfo errorInfo = error.getErrorInfo();
+            if (errorInfo != null) {
+                writer.startElement(namespacePrefix, "error-info")
+                    .textElement(namespacePrefix, "bad-attribute", errorInfo.getBadAttribute())
+                    .textElement(namespacePrefix, "bad-element", errorInfo.getBadElement())
+                    .textElement(namespacePrefix, "bad-namespace", errorInfo.getBadNamespace())
+                    .textElement(namespacePrefix, "session-id", errorInfo.getSessionId())
+                    .textElement(namespacePrefix, "ok-element", errorInfo.getOkElement())
+                    .textElement(namespacePrefix, "err-element", errorInfo.getErrElement())
+                    .textElement(namespacePrefix, "noop-element", errorInfo.getNoOpElement())
+                    .endElement();
+            }
+            writer.endElement();
+        }
+    }
 }
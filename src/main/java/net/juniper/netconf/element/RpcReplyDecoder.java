@@ -0,0 +1,38 @@
+package net.juniper.netconf.element;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.xml.sax.SAXException;
+
+/**
+ * Decodes replies to {@link RpcReply} objects - or a registered subclass.
+ */
+final class RpcReplyDecoder implements ReplyDecoder<RpcReply> {
+
+    static final RpcReplyDecoder INSTANCE = new RpcReplyDecoder();
+
+    private RpcReplyDecoder() {
+    }
+
+    @Override
+    public RpcReply decode(final String xml, final XmlParser xmlParser) throws SAXException {
+        return RpcReply.from(xml, xmlParser);
+    }
+
+    @Override
+    public RpcReply decode(final InputStream utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        return RpcReply.from(utf8Xml, xmlParser);
+    }
+
+    @Override
+    public RpcReply decode(final ByteBuffer utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        return RpcReply.from(utf8Xml, xmlParser);
+    }
+
+    @Override
+    public String getMessageId(final RpcReply reply) {
+        return reply.getMessageId();
+    }
+}
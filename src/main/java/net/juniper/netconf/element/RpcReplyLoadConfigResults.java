@@ -2,13 +2,12 @@ package net.juniper.netconf.element;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Singular;
@@ -17,8 +16,6 @@ import lombok.Value;
 import lombok.experimental.NonFinal;
 import lombok.extern.log4j.Log4j2;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -33,13 +30,6 @@ import org.xml.sax.SAXException;
 @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "There is little alternative")
 public class RpcReplyLoadConfigResults extends RpcReply {
 
-    static final String XPATH_RPC_REPLY_LOAD_CONFIG_RESULT
-        = RpcReply.XPATH_RPC_REPLY + "/*[local-name()='load-configuration-results']";
-    private static final String XPATH_RPC_REPLY_LOAD_CONFIG_RESULT_OK
-        = XPATH_RPC_REPLY_LOAD_CONFIG_RESULT + getXpathFor("ok");
-    private static final String XPATH_RPC_REPLY_LOAD_CONFIG_RESULT_ERROR
-        = XPATH_RPC_REPLY_LOAD_CONFIG_RESULT + getXpathFor("rpc-error");
-
     String action;
 
     /**
@@ -55,38 +45,47 @@ public class RpcReplyLoadConfigResults extends RpcReply {
     public static RpcReplyLoadConfigResults from(final String xml)
         throws ParserConfigurationException, IOException, SAXException, XPathExpressionException {
 
-        final Document document = createDocumentBuilderFactory().newDocumentBuilder()
-            .parse(new InputSource(new StringReader(xml)));
-        final XPath xPath = XPathFactory.newInstance().newXPath();
+        return from(xml, XmlParser.getDefault());
+    }
+
+    /**
+     * Generates an LoadConfigResults RpcReply object from XML, using the supplied parser.
+     *
+     * @param xml       The XML representing the reply.
+     * @param xmlParser The parser used to read the XML, and to build the document if requested.
+     * @return an RpcReplyLoadConfigResults object.
+     * @throws SAXException If the XML cannot be parsed
+     */
+    public static RpcReplyLoadConfigResults from(final String xml, final XmlParser xmlParser)
+        throws SAXException {
 
-        final Element rpcReplyElement = (Element) xPath.evaluate(
-            XPATH_RPC_REPLY,
-            document,
-            XPathConstants.NODE
-        );
-        final Element loadConfigResultsElement = (Element) xPath.evaluate(
-            RpcReplyLoadConfigResults.XPATH_RPC_REPLY_LOAD_CONFIG_RESULT,
-            document,
-            XPathConstants.NODE
-        );
-        final Element rpcReplyOkElement = (Element) xPath.evaluate(
-            XPATH_RPC_REPLY_LOAD_CONFIG_RESULT_OK,
-            document,
-            XPathConstants.NODE
-        );
-        final List<RpcError> errorList = getRpcErrors(
-            document,
-            xPath,
-            XPATH_RPC_REPLY_LOAD_CONFIG_RESULT_ERROR
-        );
+        final RpcReply rpcReply = RpcReplyParser.parse(xml, xmlParser);
+        if (rpcReply instanceof RpcReplyLoadConfigResults) {
+            return (RpcReplyLoadConfigResults) rpcReply;
+        }
+        return new RpcReplyLoadConfigResults(
+            xml, rpcReply.getMessageId(), null, false, Collections.emptyList());
+    }
 
-        return RpcReplyLoadConfigResults.loadConfigResultsBuilder()
-            .messageId(getAttribute(rpcReplyElement, "message-id"))
-            .action(getAttribute(loadConfigResultsElement, "action"))
-            .ok(rpcReplyOkElement != null)
-            .errors(errorList)
-            .originalDocument(document)
-            .build();
+    /**
+     * Creates the reply from a &lt;load-configuration-results&gt; element.
+     */
+    static RpcReplyLoadConfigResults from(final RpcReplyParser parser)
+        throws XMLStreamException {
+        final String action = parser.getAttribute("action");
+        boolean ok = false;
+        final List<RpcError> errors = new ArrayList<>();
+        while (parser.nextChildElement()) {
+            if (parser.isNetconfElement("ok")) {
+                ok = true;
+                parser.skipElement();
+            } else if (parser.isNetconfElement("rpc-error")) {
+                errors.add(parser.readRpcError());
+            } else {
+                parser.skipElement();
+            }
+        }
+        return new RpcReplyLoadConfigResults(parser, action, ok, errors);
     }
 
     @Builder(builderMethodName = "loadConfigResultsBuilder")
@@ -98,55 +97,42 @@ public class RpcReplyLoadConfigResults extends RpcReply {
         final boolean ok,
         @Singular("error") final List<RpcError> errors
     ) {
-        super(getDocument(originalDocument, namespacePrefix, messageId, action, ok, errors),
-            namespacePrefix, messageId, ok, errors);
+        super(originalDocument, namespacePrefix, messageId, ok, errors);
         this.action = action;
     }
 
-    private static Document getDocument(
-        final Document originalDocument,
-        final String namespacePrefix,
+    RpcReplyLoadConfigResults(
+        final String xml,
         final String messageId,
         final String action,
         final boolean ok,
         final List<RpcError> errors
     ) {
-        if (originalDocument != null) {
-            return originalDocument;
-        } else {
-            return createDocument(namespacePrefix, messageId, action, ok, errors);
-        }
+        super(xml, messageId, ok, errors);
+        this.action = action;
     }
 
-    private static Document createDocument(
-        final String namespacePrefix,
-        final String messageId,
+    private RpcReplyLoadConfigResults(
+        final RpcReplyParser parser,
         final String action,
         final boolean ok,
         final List<RpcError> errors
     ) {
-        final Document createdDocument = createBlankDocument();
-        final Element rpcReplyElement = createdDocument.createElementNS(
-            URN_XML_NS_NETCONF_BASE_1_0,
-            "rpc-reply"
-        );
-        rpcReplyElement.setPrefix(namespacePrefix);
-        rpcReplyElement.setAttribute("message-id", messageId);
-        createdDocument.appendChild(rpcReplyElement);
-        final Element loadConfigResultsElement
-            = createdDocument.createElement("load-configuration-results");
-        loadConfigResultsElement.setAttribute("action", action);
-        rpcReplyElement.appendChild(loadConfigResultsElement);
-        appendErrors(namespacePrefix, errors, createdDocument, loadConfigResultsElement);
-        if (ok) {
-            final Element okElement = createdDocument.createElementNS(
-                URN_XML_NS_NETCONF_BASE_1_0,
-                "ok"
-            );
-            okElement.setPrefix(namespacePrefix);
-            loadConfigResultsElement.appendChild(okElement);
-        }
+        super(parser, ok, errors);
+        this.action = action;
+    }
 
-        return createdDocument;
+    @Override
+    protected void writeXml(final XmlWriter writer) throws IOException {
+        writer.startElement(getNamespacePrefix(), "rpc-reply")
+            .namespace(getNamespacePrefix(), URN_XML_NS_NETCONF_BASE_1_0)
+            .attribute("message-id", getMessageId())
+            .startElement(null, "load-configuration-results")
+            .attribute("action", action);
+        writeErrors(writer, getNamespacePrefix(), getErrors());
+        if (isOk()) {
+            writer.startElement(getNamespacePrefix(), "ok").endElement();
+        }
+        writer.endElement().endElement();
     }
 }
\ No newline at end of file
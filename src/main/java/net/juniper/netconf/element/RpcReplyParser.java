@@ -0,0 +1,175 @@
+package net.juniper.netconf.element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.stream.XMLStreamException;
+import org.xml.sax.SAXException;
+
+/**
+ * Extracts the fields of an rpc-reply in a single pass over the XML, without building a DOM.
+ * Only the elements that are needed are examined; the rest of the reply - for example, the
+ * &lt;data&gt; of a &lt;get-config&gt; - is checked to be well-formed, but otherwise skipped.
+ *
+ * <p>Replies to some RPCs are represented by a subclass of {@link RpcReply}, identified by an
+ * element within the &lt;rpc-reply&gt;. Support for further subclasses can be added using
+ * {@link #registerReplyType(String, ReplyFactory)}; the {@link ReplyFactory} is passed this
+ * parser, positioned at the identifying element, so the subclass is created during the same pass
+ * over the XML.
+ */
+public final class RpcReplyParser extends XmlScanner {
+
+    private static final Map<String, ReplyFactory> REPLY_FACTORIES = new ConcurrentHashMap<>();
+
+    static {
+        registerReplyType("load-configuration-results", RpcReplyLoadConfigResults::from);
+    }
+
+    private String messageId;
+
+    /**
+     * Creates a subclass of {@link RpcReply} from the element that identifies it.
+     */
+    @FunctionalInterface
+    public interface ReplyFactory {
+
+        /**
+         * Creates a reply.
+         *
+         * @param parser the parser, positioned at the start of the element that identifies the
+         *               type of reply. This must be read up to, and including, the end of that
+         *               element. The reply should be created with
+         *               {@link RpcReply#RpcReply(RpcReplyParser, boolean, List)}, so that it is
+         *               backed by the XML being parsed.
+         * @return the reply.
+         * @throws XMLStreamException if the XML cannot be read.
+         */
+        RpcReply create(RpcReplyParser parser) throws XMLStreamException;
+    }
+
+    private RpcReplyParser(final XmlParser xmlParser, final String xml)
+        throws XMLStreamException {
+        super(xmlParser, xml);
+    }
+
+    private RpcReplyParser(final XmlParser xmlParser, final ByteBuffer utf8Xml)
+        throws XMLStreamException {
+        super(xmlParser, utf8Xml);
+    }
+
+    private RpcReplyParser(final XmlParser xmlParser, final InputStream utf8Xml)
+        throws XMLStreamException {
+        super(xmlParser, utf8Xml);
+    }
+
+    /**
+     * Registers a type of reply. When a child of the &lt;rpc-reply&gt; element has the given
+     * local name, in any namespace, the reply is created by the factory; only the first such
+     * child is considered. Any previous factory for the same element is replaced.
+     *
+     * @param elementName the local name of the element that identifies the type of reply.
+     * @param factory     creates the reply.
+     */
+    public static void registerReplyType(final String elementName, final ReplyFactory factory) {
+        REPLY_FACTORIES.put(elementName, factory);
+    }
+
+    /**
+     * Parses an rpc-reply.
+     *
+     * @param xml       the XML representing the reply.
+     * @param xmlParser the parser to read the XML with.
+     * @return the reply; a subclass of {@link RpcReply} if the reply contains an element
+     *     identifying a registered reply type.
+     * @throws SAXException if the XML is not well-formed.
+     */
+    static RpcReply parse(final String xml, final XmlParser xmlParser) throws SAXException {
+        try (final RpcReplyParser parser = new RpcReplyParser(xmlParser, xml)) {
+            return parser.parseDocument();
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses an rpc-reply. The reply is backed by the supplied bytes, which must not be changed.
+     *
+     * @param utf8Xml   the XML representing the reply, encoded as UTF-8 - the remaining bytes of
+     *                  the buffer.
+     * @param xmlParser the parser to read the XML with.
+     * @return the reply; a subclass of {@link RpcReply} if the reply contains an element
+     *     identifying a registered reply type.
+     * @throws SAXException if the XML is not well-formed.
+     */
+    static RpcReply parse(final ByteBuffer utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        try (final RpcReplyParser parser = new RpcReplyParser(xmlParser, utf8Xml)) {
+            return parser.parseDocument();
+        } catch (final XMLStreamException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses an rpc-reply as it is read from a stream, up to the end of the stream. The reply is
+     * backed by the bytes that were read.
+     *
+     * @param utf8Xml   the stream of XML representing the reply, encoded as UTF-8.
+     * @param xmlParser the parser to read the XML with.
+     * @return the reply; a subclass of {@link RpcReply} if the reply contains an element
+     *     identifying a registered reply type.
+     * @throws SAXException if the XML is not well-formed, or cannot be read.
+     */
+    static RpcReply parse(final InputStream utf8Xml, final XmlParser xmlParser)
+        throws SAXException {
+        try (final RpcReplyParser parser = new RpcReplyParser(xmlParser, utf8Xml)) {
+            final RpcReply rpcReply = parser.parseDocument();
+            // Read anything following the root element, so the reply is backed by all of the XML
+            parser.finishRecording();
+            return rpcReply;
+        } catch (final XMLStreamException | IOException e) {
+            throw new SAXException("Unable to parse rpc-reply: " + e.getMessage(), e);
+        }
+    }
+
+    private RpcReply parseDocument() throws XMLStreamException {
+        nextRootElement();
+        boolean ok = false;
+        final List<RpcError> errors = new ArrayList<>();
+        RpcReply rpcReply = null;
+        if (isNetconfElement("rpc-reply")) {
+            messageId = getAttribute("message-id");
+            while (nextChildElement()) {
+                final ReplyFactory replyFactory = rpcReply == null
+                    ? REPLY_FACTORIES.get(getReader().getLocalName()) : null;
+                if (replyFactory != null) {
+                    rpcReply = replyFactory.create(this);
+                } else if (isNetconfElement("ok")) {
+                    ok = true;
+                    skipElement();
+                } else if (isNetconfElement("rpc-error")) {
+                    errors.add(readRpcError());
+                } else {
+                    skipElement();
+                }
+            }
+        } else {
+            skipElement();
+        }
+        skipToEnd();
+        return rpcReply != null ? rpcReply : new RpcReply(this, ok, errors);
+    }
+
+    /**
+     * Returns the message-id of the reply.
+     *
+     * @return the message-id, or null if the reply does not have one.
+     */
+    public String getMessageId() {
+        return messageId;
+    }
+}
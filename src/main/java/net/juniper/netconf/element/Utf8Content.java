@@ -0,0 +1,208 @@
+package net.juniper.netconf.element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The XML of an element, encoded as UTF-8, held in one or more buffers - e.g. the segments a
+ * reply was received in - so that it is never copied into a single array. The XML of an element
+ * parsed from a stream is only complete once the whole stream has been read, so it may instead
+ * be supplied once, after the element is created.
+ */
+final class Utf8Content {
+
+    // The most copied at a time when writing XML held in a buffer without an accessible array
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private volatile ByteBuffer[] buffers;
+    // The hash code of the decoded content, or 0 if not yet calculated, as for String
+    private int hash;
+
+    private Utf8Content(final ByteBuffer[] buffers) {
+        this.buffers = buffers;
+    }
+
+    /**
+     * Creates content from the remaining bytes of a buffer, which must not be changed.
+     */
+    static Utf8Content of(final ByteBuffer buffer) {
+        return new Utf8Content(new ByteBuffer[] {buffer});
+    }
+
+    /**
+     * Creates content that is not yet known, and is later {@link #set(List) set}.
+     */
+    static Utf8Content pending() {
+        return new Utf8Content(null);
+    }
+
+    /**
+     * Supplies the content, as the remaining bytes of each buffer in turn.
+     */
+    void set(final List<ByteBuffer> content) {
+        buffers = content.toArray(new ByteBuffer[0]);
+        hash = 0;
+    }
+
+    private ByteBuffer[] getBuffers() {
+        final ByteBuffer[] content = buffers;
+        if (content == null) {
+            throw new IllegalStateException("The XML has not been read yet");
+        }
+        return content;
+    }
+
+    /**
+     * Creates a stream of the content, without copying it.
+     */
+    InputStream newInputStream() {
+        final ByteBuffer[] content = getBuffers();
+        if (content.length == 1) {
+            return XmlScanner.newInputStream(content[0]);
+        }
+        final List<InputStream> streams = Arrays.stream(content)
+            .map(XmlScanner::newInputStream)
+            .collect(Collectors.toList());
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    /**
+     * Decodes the content.
+     */
+    String decode() {
+        final ByteBuffer[] content = getBuffers();
+        if (content.length == 1) {
+            final ByteBuffer utf8Xml = content[0];
+            if (utf8Xml.hasArray()) {
+                return new String(utf8Xml.array(), utf8Xml.arrayOffset() + utf8Xml.position(),
+                    utf8Xml.remaining(), StandardCharsets.UTF_8);
+            }
+            return StandardCharsets.UTF_8.decode(utf8Xml.duplicate()).toString();
+        }
+        // A character may be split between buffers, so they are decoded as a single stream
+        final long size = size(content);
+        final StringBuilder xml = new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+        final char[] chars = new char[COPY_BUFFER_SIZE];
+        try (final Reader reader =
+                 new InputStreamReader(newInputStream(), StandardCharsets.UTF_8)) {
+            int length = reader.read(chars);
+            while (length != -1) {
+                xml.append(chars, 0, length);
+                length = reader.read(chars);
+            }
+        } catch (final IOException e) {
+            // Buffers are never closed, so cannot fail to be read
+            throw new UncheckedIOException("Unable to decode XML", e);
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Indicates if the content is the same bytes as that of another, without decoding either.
+     */
+    boolean contentEquals(final Utf8Content other) {
+        final ByteBuffer[] content = getBuffers();
+        final ByteBuffer[] otherContent = other.getBuffers();
+        if (size(content) != size(otherContent)) {
+            return false;
+        }
+        // The buffers may be split at different points, so are compared a chunk at a time
+        ByteBuffer bytes = EMPTY;
+        ByteBuffer otherBytes = EMPTY;
+        int index = 0;
+        int otherIndex = 0;
+        while (true) {
+            while (!bytes.hasRemaining() && index < content.length) {
+                bytes = content[index++].duplicate();
+            }
+            while (!otherBytes.hasRemaining() && otherIndex < otherContent.length) {
+                otherBytes = otherContent[otherIndex++].duplicate();
+            }
+            if (!bytes.hasRemaining() || !otherBytes.hasRemaining()) {
+                return bytes.hasRemaining() == otherBytes.hasRemaining();
+            }
+            final int length = Math.min(bytes.remaining(), otherBytes.remaining());
+            if (!chunk(bytes, length).equals(chunk(otherBytes, length))) {
+                return false;
+            }
+            bytes.position(bytes.position() + length);
+            otherBytes.position(otherBytes.position() + length);
+        }
+    }
+
+    /**
+     * Returns the hash code of the decoded content - the same as {@link String#hashCode()} of
+     * the XML - without creating a String. It is only calculated once.
+     */
+    int contentHashCode() {
+        int contentHash = hash;
+        if (contentHash == 0) {
+            final char[] chars = new char[COPY_BUFFER_SIZE];
+            try (final Reader reader =
+                     new InputStreamReader(newInputStream(), StandardCharsets.UTF_8)) {
+                int length = reader.read(chars);
+                while (length != -1) {
+                    for (int i = 0; i < length; i++) {
+                        contentHash = 31 * contentHash + chars[i];
+                    }
+                    length = reader.read(chars);
+                }
+            } catch (final IOException e) {
+                // Buffers are never closed, so cannot fail to be read
+                throw new UncheckedIOException("Unable to decode XML", e);
+            }
+            hash = contentHash;
+        }
+        return contentHash;
+    }
+
+    private static long size(final ByteBuffer[] content) {
+        long size = 0;
+        for (final ByteBuffer buffer : content) {
+            size += buffer.remaining();
+        }
+        return size;
+    }
+
+    private static ByteBuffer chunk(final ByteBuffer bytes, final int length) {
+        final ByteBuffer chunk = bytes.slice();
+        chunk.limit(length);
+        return chunk;
+    }
+
+    /**
+     * Writes the content.
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        byte[] copyBuffer = null;
+        for (final ByteBuffer utf8Xml : getBuffers()) {
+            if (utf8Xml.hasArray()) {
+                out.write(utf8Xml.array(), utf8Xml.arrayOffset() + utf8Xml.position(),
+                    utf8Xml.remaining());
+                continue;
+            }
+            final ByteBuffer bytes = utf8Xml.duplicate();
+            if (copyBuffer == null) {
+                copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            while (bytes.hasRemaining()) {
+                final int length = Math.min(copyBuffer.length, bytes.remaining());
+                bytes.get(copyBuffer, 0, length);
+                out.write(copyBuffer, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.juniper.netconf.element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * The parser used to decode elements received from a device. The fields of an {@link RpcReply},
+ * {@link Hello} or {@link RpcReplyLoadConfigResults} are read in a single pass with an
+ * {@link XMLStreamReader}; a {@link Document} is only parsed if one is requested.
+ *
+ * <p>{@link JaxpXmlParser} is used unless another parser is selected, either for all devices
+ * with {@link #setDefault(XmlParser)} or for a single device with
+ * {@code Device.builder().xmlParser(...)}. A faster StAX implementation can be used by supplying
+ * its {@link javax.xml.stream.XMLInputFactory} to a {@link JaxpXmlParser}, or another pull
+ * parser plugged in by implementing this interface.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+public interface XmlParser {
+
+    /**
+     * Returns the parser used when no other parser is specified.
+     *
+     * @return the default parser. Initially, this is {@link JaxpXmlParser#getInstance()}.
+     */
+    static XmlParser getDefault() {
+        return DefaultXmlParser.xmlParser;
+    }
+
+    /**
+     * Sets the parser used when no other parser is specified. Devices that have already been
+     * built, and elements that have already been parsed, are not affected.
+     *
+     * @param xmlParser the new default parser.
+     */
+    static void setDefault(final XmlParser xmlParser) {
+        if (xmlParser == null) {
+            throw new IllegalArgumentException("The default XML parser cannot be null");
+        }
+        DefaultXmlParser.xmlParser = xmlParser;
+    }
+
+    /**
+     * Creates a namespace aware reader, which coalesces adjacent text and does not support
+     * document type declarations.
+     *
+     * @param xml the XML to read.
+     * @return the reader.
+     * @throws XMLStreamException if the reader cannot be created.
+     */
+    XMLStreamReader createXmlStreamReader(String xml) throws XMLStreamException;
+
+    /**
+     * As {@link #createXmlStreamReader(String)}, for XML encoded as UTF-8.
+     *
+     * @param utf8Xml the XML to read, encoded as UTF-8.
+     * @return the reader.
+     * @throws XMLStreamException if the reader cannot be created.
+     */
+    XMLStreamReader createXmlStreamReader(byte[] utf8Xml) throws XMLStreamException;
+
+    /**
+     * As {@link #createXmlStreamReader(String)}, for XML encoded as UTF-8 that is read from a
+     * stream as it is parsed - e.g. a reply that is still being received.
+     *
+     * @param utf8Xml the stream of XML to read, encoded as UTF-8. This is not closed.
+     * @return the reader.
+     * @throws XMLStreamException if the reader cannot be created.
+     */
+    XMLStreamReader createXmlStreamReader(InputStream utf8Xml) throws XMLStreamException;
+
+    /**
+     * Parses a namespace aware document.
+     *
+     * @param inputSource the XML to parse.
+     * @return the document.
+     * @throws IOException  if the XML cannot be read.
+     * @throws SAXException if the XML cannot be parsed.
+     */
+    Document parseDocument(InputSource inputSource) throws IOException, SAXException;
+}
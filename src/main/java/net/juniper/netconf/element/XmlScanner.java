@@ -0,0 +1,445 @@
+package net.juniper.netconf.element;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads XML in a single forward pass, without building a DOM. The scanner keeps the XML it reads
+ * - either as a String or as UTF-8 bytes - so the element created from it can be backed by the
+ * same XML, rather than by a copy. XML read from a stream is recorded as it is parsed, so it is
+ * only held once; a {@link RecordableInputStream} records itself, in the memory it already holds
+ * the XML in.
+ */
+class XmlScanner implements AutoCloseable {
+
+    private final XmlParser xmlParser;
+    private final String xml;
+    private final RecordableInputStream recordingStream;
+    private final XMLStreamReader reader;
+    private Utf8Content utf8Xml;
+
+    XmlScanner(final XmlParser xmlParser, final String xml) throws XMLStreamException {
+        this.xmlParser = xmlParser;
+        this.xml = xml;
+        this.recordingStream = null;
+        this.reader = xmlParser.createXmlStreamReader(xml);
+    }
+
+    XmlScanner(final XmlParser xmlParser, final byte[] utf8Xml) throws XMLStreamException {
+        this(xmlParser, ByteBuffer.wrap(utf8Xml));
+    }
+
+    /**
+     * Creates a scanner that reads the remaining bytes of a buffer.
+     */
+    XmlScanner(final XmlParser xmlParser, final ByteBuffer utf8Xml) throws XMLStreamException {
+        this.xmlParser = xmlParser;
+        this.xml = null;
+        this.recordingStream = null;
+        if (utf8Xml.hasArray() && utf8Xml.arrayOffset() + utf8Xml.position() == 0
+            && utf8Xml.remaining() == utf8Xml.array().length) {
+            this.reader = xmlParser.createXmlStreamReader(utf8Xml.array());
+        } else {
+            this.reader = xmlParser.createXmlStreamReader(newInputStream(utf8Xml));
+        }
+        this.utf8Xml = Utf8Content.of(utf8Xml);
+    }
+
+    XmlScanner(final XmlParser xmlParser, final InputStream utf8Xml) throws XMLStreamException {
+        this(xmlParser, utf8Xml, true);
+    }
+
+    /**
+     * Creates a scanner that reads XML from a stream. If the XML is not recorded, it is not
+     * available from the scanner, so it is never held in memory as a whole.
+     */
+    XmlScanner(final XmlParser xmlParser, final InputStream utf8Xml, final boolean record)
+        throws XMLStreamException {
+        this.xmlParser = xmlParser;
+        this.xml = null;
+        this.recordingStream = record ? newRecordingStream(utf8Xml) : null;
+        this.reader = xmlParser.createXmlStreamReader(record ? recordingStream : utf8Xml);
+    }
+
+    private static RecordableInputStream newRecordingStream(final InputStream utf8Xml) {
+        final RecordableInputStream recordingStream = utf8Xml instanceof RecordableInputStream
+            ? (RecordableInputStream) utf8Xml : new RecordingInputStream(utf8Xml);
+        recordingStream.record();
+        return recordingStream;
+    }
+
+    /**
+     * The parser that created the reader.
+     */
+    XmlParser getXmlParser() {
+        return xmlParser;
+    }
+
+    /**
+     * The XML being read, if it was supplied as a String.
+     */
+    String getXml() {
+        return xml;
+    }
+
+    /**
+     * The XML being read, if it was supplied as UTF-8 bytes. If the XML is being recorded from a
+     * stream, it is only available once {@link #finishRecording()} has been called.
+     */
+    Utf8Content getUtf8Xml() {
+        if (utf8Xml == null && recordingStream != null) {
+            utf8Xml = Utf8Content.pending();
+        }
+        return utf8Xml;
+    }
+
+    /**
+     * Reads the rest of a stream that is being recorded - e.g. anything following the root
+     * element - so that the XML is available from {@link #getUtf8Xml()}.
+     *
+     * @throws IOException if the stream cannot be read.
+     */
+    void finishRecording() throws IOException {
+        if (recordingStream != null) {
+            getUtf8Xml().set(recordingStream.takeRecording());
+        }
+    }
+
+    /**
+     * Returns the underlying reader, for reading elements not otherwise supported by this parser.
+     *
+     * @return the reader.
+     */
+    public XMLStreamReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Moves to the start of the root element.
+     */
+    void nextRootElement() throws XMLStreamException {
+        int event = reader.next();
+        while (event != START_ELEMENT) {
+            event = reader.next();
+        }
+    }
+
+    /**
+     * Reads the remainder of the XML, so that it is checked to be well-formed.
+     */
+    void skipToEnd() throws XMLStreamException {
+        while (reader.hasNext()) {
+            reader.next();
+        }
+    }
+
+    /**
+     * Indicates if the reader is at the start of an element in the NETCONF namespace.
+     *
+     * @param localName the local name of the element.
+     * @return {@code true} if the current element has the local name, otherwise {@code false}.
+     */
+    public boolean isNetconfElement(final String localName) {
+        return AbstractNetconfElement.URN_XML_NS_NETCONF_BASE_1_0.equals(reader.getNamespaceURI())
+            && localName.equals(reader.getLocalName());
+    }
+
+    /**
+     * Returns an attribute, without a namespace, of the current element.
+     *
+     * @param localName the name of the attribute.
+     * @return the value of the attribute, or null if the element does not have it.
+     */
+    public String getAttribute(final String localName) {
+        return getAttribute(XMLConstants.NULL_NS_URI, localName);
+    }
+
+    String getAttribute(final String namespaceUri, final String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String attributeNamespaceUri = reader.getAttributeNamespace(i);
+            if (localName.equals(reader.getAttributeLocalName(i))
+                && namespaceUri.equals(attributeNamespaceUri == null
+                    ? XMLConstants.NULL_NS_URI : attributeNamespaceUri)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves from the start of an element, or the end of one of its children, to the start of its
+     * next child.
+     *
+     * @return {@code true} if the reader is at the start of the next child, or {@code false} if
+     *     it is at the end of the element.
+     * @throws XMLStreamException if the XML cannot be read.
+     */
+    public boolean nextChildElement() throws XMLStreamException {
+        while (true) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                return true;
+            } else if (event == END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Moves from the start of an element to its end.
+     *
+     * @throws XMLStreamException if the XML cannot be read.
+     */
+    public void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Moves from the start of an element to its end, collecting the text of it and all its
+     * descendants.
+     *
+     * @return the trimmed text.
+     * @throws XMLStreamException if the XML cannot be read.
+     */
+    public String readTextContent() throws XMLStreamException {
+        return readUntrimmedTextContent().trim();
+    }
+
+    /**
+     * As {@link #readTextContent()}, but without removing leading or trailing whitespace.
+     */
+    String readUntrimmedTextContent() throws XMLStreamException {
+        final StringBuilder textContent = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            } else if (event == CHARACTERS || event == CDATA || event == SPACE) {
+                textContent.append(reader.getTextCharacters(),
+                    reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return textContent.toString();
+    }
+
+    /**
+     * Reads an rpc-error element.
+     *
+     * @return the error.
+     * @throws XMLStreamException if the XML cannot be read.
+     */
+    public RpcError readRpcError() throws XMLStreamException {
+        final Map<String, String> fields = new HashMap<>();
+        String errorMessageLanguage = null;
+        Map<String, String> errorInfoFields = null;
+        while (nextChildElement()) {
+            if (!isNetconfElement(getReader().getLocalName())) {
+                skipElement();
+            } else if (fields.containsKey(getReader().getLocalName())) {
+                // As with XPath, only the first of any repeated element is used
+                skipElement();
+            } else if ("error-info".equals(getReader().getLocalName())) {
+                fields.put("error-info", null);
+                errorInfoFields = readErrorInfo();
+            } else {
+                final String localName = getReader().getLocalName();
+                if ("error-message".equals(localName)) {
+                    errorMessageLanguage = getAttribute(XMLConstants.XML_NS_URI, "lang");
+                }
+                fields.put(localName, readTextContent());
+            }
+        }
+
+        final RpcError.RpcErrorBuilder errorBuilder = RpcError.builder()
+            .errorType(RpcError.ErrorType.from(fields.get("error-type")))
+            .errorTag(RpcError.ErrorTag.from(fields.get("error-tag")))
+            .errorSeverity(RpcError.ErrorSeverity.from(fields.get("error-severity")))
+            .errorMessage(fields.get("error-message"))
+            .errorMessageLanguage(errorMessageLanguage)
+            .errorPath(fields.get("error-path"));
+        if (errorInfoFields != null) {
+            errorBuilder.errorInfo(RpcError.RpcErrorInfo.builder()
+                .badAttribute(errorInfoFields.get("bad-attribute"))
+                .badElement(errorInfoFields.get("bad-element"))
+                .badNamespace(errorInfoFields.get("bad-namespace"))
+                .sessionId(errorInfoFields.get("session-id"))
+                .okElement(errorInfoFields.get("ok-element"))
+                .errElement(errorInfoFields.get("err-element"))
+                .noOpElement(errorInfoFields.get("noop-element"))
+                .build());
+        }
+        return errorBuilder.build();
+    }
+
+    private Map<String, String> readErrorInfo() throws XMLStreamException {
+        final Map<String, String> errorInfoFields = new HashMap<>();
+        while (nextChildElement()) {
+            if (isNetconfElement(getReader().getLocalName())
+                && !errorInfoFields.containsKey(getReader().getLocalName())) {
+                errorInfoFields.put(getReader().getLocalName(), readTextContent());
+            } else {
+                skipElement();
+            }
+        }
+        return errorInfoFields;
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+
+    /**
+     * Creates a stream of the remaining bytes of a buffer, without copying them, or changing the
+     * position of the buffer.
+     */
+    static InputStream newInputStream(final ByteBuffer utf8Xml) {
+        if (utf8Xml.hasArray()) {
+            return new ByteArrayInputStream(
+                utf8Xml.array(), utf8Xml.arrayOffset() + utf8Xml.position(), utf8Xml.remaining());
+        }
+        return new ByteBufferInputStream(utf8Xml.duplicate());
+    }
+
+    /**
+     * Reads a buffer without an accessible array - e.g. a direct or memory-mapped buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int length = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Keeps everything read from a stream that does not record itself, in chunks, so that once
+     * the whole stream has been read the XML is available as bytes - without the recording being
+     * copied as it grows.
+     */
+    private static final class RecordingInputStream extends RecordableInputStream {
+
+        private static final int CHUNK_SIZE = 8192;
+
+        private final InputStream in;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer chunk;
+
+        private RecordingInputStream(final InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int length = in.read(b, off, len);
+            int offset = off;
+            int remaining = length;
+            while (remaining > 0) {
+                if (chunk == null || !chunk.hasRemaining()) {
+                    chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                    chunks.add(chunk);
+                }
+                final int chunkLength = Math.min(remaining, chunk.remaining());
+                chunk.put(b, offset, chunkLength);
+                offset += chunkLength;
+                remaining -= chunkLength;
+            }
+            return length;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void record() {
+            // Everything read is recorded
+        }
+
+        @Override
+        public List<ByteBuffer> takeRecording() throws IOException {
+            final byte[] rest = new byte[CHUNK_SIZE];
+            while (read(rest, 0, rest.length) != -1) {
+                // Recorded as it is read
+            }
+            final List<ByteBuffer> recording = new ArrayList<>(chunks.size());
+            for (final ByteBuffer recordedChunk : chunks) {
+                recordedChunk.flip();
+                recording.add(recordedChunk);
+            }
+            if (chunk != null) {
+                // Only the part of the last chunk that was filled is kept
+                recording.set(recording.size() - 1,
+                    ByteBuffer.wrap(Arrays.copyOf(chunk.array(), chunk.limit())));
+            }
+            chunks.clear();
+            chunk = null;
+            return recording;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package net.juniper.netconf.element;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes XML as UTF-8 directly to a stream, escaping text and attribute values as it goes. No
+ * document is built, and the XML is never held in memory as a String, so this is used to write
+ * outgoing messages straight to the SSH channel.
+ *
+ * <p>Namespaces are not tracked; each namespace must be declared with
+ * {@link #namespace(String, String)} on the element it is first used in. For example, the
+ * following writes {@code <nc:rpc xmlns:nc="..." message-id="1"><nc:lock>...}:
+ * <pre>{@code
+ * writer.startElement("nc", "rpc")
+ *     .namespace("nc", AbstractNetconfElement.URN_XML_NS_NETCONF_BASE_1_0)
+ *     .attribute("message-id", "1")
+ *     .startElement("nc", "lock")
+ * }</pre>
+ */
+public final class XmlWriter {
+
+    private static final int BUFFER_SIZE = 1024;
+    // The largest number of bytes a single character, or escaped character, is written as
+    private static final int MAXIMUM_CHARACTER_SIZE = 6;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    private String[] openPrefixes = new String[8];
+    private String[] openLocalNames = new String[8];
+    private int depth;
+    private boolean startTagOpen;
+
+    /**
+     * Creates a writer. Nothing is written to the stream until the buffer is full, or
+     * {@link #finish()} is called.
+     *
+     * @param out the stream to write the XML to.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The stream is written to")
+    public XmlWriter(final OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts an element. The attributes and namespaces of the element may be written until any
+     * content is written.
+     *
+     * @param prefix    the namespace prefix, or null for an unprefixed element.
+     * @param localName the local name of the element.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter startElement(final String prefix, final String localName)
+        throws IOException {
+        closeStartTag();
+        if (depth == openLocalNames.length) {
+            openPrefixes = Arrays.copyOf(openPrefixes, depth * 2);
+            openLocalNames = Arrays.copyOf(openLocalNames, depth * 2);
+        }
+        openPrefixes[depth] = prefix;
+        openLocalNames[depth] = localName;
+        depth++;
+        writeAscii('<');
+        writeName(prefix, localName);
+        startTagOpen = true;
+        return this;
+    }
+
+    /**
+     * Declares a namespace on the element that has just been started.
+     *
+     * @param prefix       the namespace prefix, or null to declare the default namespace.
+     * @param namespaceUri the namespace URI.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter namespace(final String prefix, final String namespaceUri)
+        throws IOException {
+        return attribute(prefix == null ? "xmlns" : "xmlns:" + prefix, namespaceUri);
+    }
+
+    /**
+     * Writes an attribute of the element that has just been started.
+     *
+     * @param name  the qualified name of the attribute.
+     * @param value the value of the attribute, which is escaped. If this is null, the attribute
+     *              is not written.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter attribute(final String name, final String value) throws IOException {
+        if (!startTagOpen) {
+            throw new IllegalStateException("Attributes must be written before any content");
+        }
+        if (value != null) {
+            writeAscii(' ');
+            writeUtf8(name, false, false);
+            writeAscii('=');
+            writeAscii('"');
+            writeUtf8(value, true, true);
+            writeAscii('"');
+        }
+        return this;
+    }
+
+    /**
+     * Writes text content, which is escaped.
+     *
+     * @param text the text. If this is null, nothing is written.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter text(final CharSequence text) throws IOException {
+        if (text != null) {
+            closeStartTag();
+            writeUtf8(text, true, false);
+        }
+        return this;
+    }
+
+    /**
+     * Writes content that is already XML, without escaping it - e.g. the body of an RPC.
+     *
+     * @param xml the XML. If this is null, nothing is written.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter xml(final CharSequence xml) throws IOException {
+        if (xml != null) {
+            closeStartTag();
+            writeUtf8(xml, false, false);
+        }
+        return this;
+    }
+
+    /**
+     * Writes an element containing only text. This is the equivalent of
+     * {@link #startElement(String, String)}, {@link #text(CharSequence)} and
+     * {@link #endElement()}.
+     *
+     * @param prefix    the namespace prefix, or null for an unprefixed element.
+     * @param localName the local name of the element.
+     * @param text      the text, which is escaped. If this is null, the element is not written.
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter textElement(final String prefix, final String localName, final String text)
+        throws IOException {
+        if (text != null) {
+            startElement(prefix, localName).text(text).endElement();
+        }
+        return this;
+    }
+
+    /**
+     * Ends the element most recently started. An element without any content is written as an
+     * empty-element tag, e.g. {@code <ok/>}.
+     *
+     * @return this writer.
+     * @throws IOException if the XML could not be written.
+     */
+    public XmlWriter endElement() throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("There is no element to end");
+        }
+        depth--;
+        if (startTagOpen) {
+            writeAscii('/');
+            writeAscii('>');
+            startTagOpen = false;
+        } else {
+            writeAscii('<');
+            writeAscii('/');
+            writeName(openPrefixes[depth], openLocalNames[depth]);
+            writeAscii('>');
+        }
+        openPrefixes[depth] = null;
+        openLocalNames[depth] = null;
+        return this;
+    }
+
+    /**
+     * Writes anything that is buffered to the underlying stream. The underlying stream is not
+     * flushed, so that, for example, a framed message is not split into more chunks than
+     * necessary.
+     *
+     * @throws IOException if the XML could not be written.
+     */
+    public void finish() throws IOException {
+        closeStartTag();
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            writeAscii('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void writeName(final String prefix, final String localName) throws IOException {
+        if (prefix != null) {
+            writeUtf8(prefix, false, false);
+            writeAscii(':');
+        }
+        writeUtf8(localName, false, false);
+    }
+
+    private void writeAscii(final char c) throws IOException {
+        if (count == buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) c;
+    }
+
+    private void writeUtf8(
+        final CharSequence chars,
+        final boolean escape,
+        final boolean attribute
+    ) throws IOException {
+        final int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            if (count > buffer.length - MAXIMUM_CHARACTER_SIZE) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            final char c = chars.charAt(i);
+            if (escape && c < 0x80 && writeEscaped(c, attribute)) {
+                continue;
+            }
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xc0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)
+                && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // As with the encoder used for String messages, an unpaired surrogate is replaced
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xe0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Writes the escaped form of a character, if it needs escaping. Carriage returns are always
+     * escaped, and tabs and line feeds in attribute values, so they are not normalised away when
+     * the XML is parsed.
+     *
+     * @return {@code true} if the character was escaped, otherwise {@code false}.
+     */
+    private boolean writeEscaped(final char c, final boolean attribute) {
+        final String escaped;
+        switch (c) {
+            case '<':
+                escaped = "&lt;";
+                break;
+            case '>':
+                escaped = "&gt;";
+                break;
+            case '&':
+                escaped = "&amp;";
+                break;
+            case '"':
+                escaped = attribute ? "&quot;" : null;
+                break;
+            case '\r':
+                escaped = "&#13;";
+                break;
+            case '\n':
+                escaped = attribute ? "&#10;" : null;
+                break;
+            case '\t':
+                escaped = attribute ? "&#9;" : null;
+                break;
+            default:
+                escaped = null;
+                break;
+        }
+        if (escaped == null) {
+            return false;
+        }
+        for (int i = 0; i < escaped.length(); i++) {
+            buffer[count++] = (byte) escaped.charAt(i);
+        }
+        return true;
+    }
+}
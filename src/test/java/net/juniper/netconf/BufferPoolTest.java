@@ -0,0 +1,59 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+    @Test
+    public void willReuseReleasedSegments() {
+        final BufferPool bufferPool = new BufferPool(16, 64, false);
+        final ByteBuffer segment = bufferPool.acquire();
+        segment.put((byte) 1);
+
+        bufferPool.release(segment);
+
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(16);
+        final ByteBuffer reused = bufferPool.acquire();
+        assertThat(reused)
+            .isSameAs(segment);
+        assertThat(reused.position())
+            .isZero();
+        assertThat(reused.remaining())
+            .isEqualTo(16);
+        assertThat(bufferPool.getRetainedBytes())
+            .isZero();
+    }
+
+    @Test
+    public void willDiscardSegmentsBeyondMaximumRetained() {
+        final BufferPool bufferPool = new BufferPool(16, 40, true);
+        final ByteBuffer[] segments = new ByteBuffer[5];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = bufferPool.acquire();
+        }
+
+        for (final ByteBuffer segment : segments) {
+            bufferPool.release(segment);
+        }
+
+        assertThat(segments[0].isDirect())
+            .isTrue();
+        assertThat(bufferPool.getMaximumRetainedBytes())
+            .isEqualTo(32);
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(32);
+    }
+
+    @Test
+    public void willRejectInvalidSegmentSize() {
+        assertThatThrownBy(() -> new BufferPool(0, 1024, false))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BufferPool(16, -1, false))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
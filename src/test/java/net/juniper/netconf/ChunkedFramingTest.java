@@ -0,0 +1,119 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ChunkedFramingTest {
+
+    // Example from https://datatracker.ietf.org/doc/html/rfc6242#section-4.2
+    private static final String CHUNKED_MESSAGE = ""
+        + "\n#4\n"
+        + "<rpc"
+        + "\n#18\n"
+        + " message-id=\"102\"\n"
+        + "\n#79\n"
+        + "     xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">\n"
+        + "  <close-session/>\n"
+        + "</rpc>"
+        + "\n##\n";
+    private static final String MESSAGE = ""
+        + "<rpc message-id=\"102\"\n"
+        + "     xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">\n"
+        + "  <close-session/>\n"
+        + "</rpc>";
+
+    @Test
+    public void willDecodeMessageSplitAcrossWrites() throws Exception {
+        final CollectingListener listener = new CollectingListener();
+        final MessageFraming.Decoder decoder = new ChunkedFraming().newDecoder();
+        final byte[] bytes = (CHUNKED_MESSAGE + CHUNKED_MESSAGE).getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length; i += 3) {
+            decoder.decode(bytes, i, Math.min(3, bytes.length - i), listener);
+        }
+
+        assertThat(listener.messages)
+            .containsExactly(MESSAGE, MESSAGE);
+    }
+
+    @Test
+    public void willEncodeMessageInBoundedChunks() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new ChunkedFraming(16).writeMessage(MESSAGE, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8.name()))
+            .startsWith("\n#16\n<rpc message-id=\n#16\n")
+            .endsWith("\n#5\n/rpc>\n##\n");
+        final CollectingListener listener = new CollectingListener();
+        new ChunkedFraming().newDecoder().decode(out.toByteArray(), 0, out.size(), listener);
+        assertThat(listener.messages)
+            .containsExactly(MESSAGE);
+    }
+
+    @Test
+    public void willEncodeBufferInBoundedChunks() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer message = ByteBuffer.allocateDirect(utf8Message.length);
+        message.put(utf8Message).flip();
+
+        new ChunkedFraming(16).writeMessage(message, out);
+        new ChunkedFraming(16).writeMessage(ByteBuffer.wrap(utf8Message), out);
+
+        assertThat(message.position())
+            .isZero();
+        final CollectingListener listener = new CollectingListener();
+        new ChunkedFraming().newDecoder().decode(out.toByteArray(), 0, out.size(), listener);
+        assertThat(listener.messages)
+            .containsExactly(MESSAGE, MESSAGE);
+    }
+
+    @Test
+    public void willNotCloseUnderlyingStream() throws Exception {
+        final OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                throw new IllegalStateException("Underlying stream closed");
+            }
+        };
+
+        new ChunkedFraming().writeMessage(MESSAGE, out);
+    }
+
+    @Test
+    public void willRejectInvalidFraming() {
+        final byte[] bytes = "\n#04\n<rpc".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> new ChunkedFraming().newDecoder()
+            .decode(bytes, 0, bytes.length, new CollectingListener()))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Invalid chunked framing - expected a chunk size or '#' but received 0x30");
+    }
+
+    static class CollectingListener implements MessageFraming.MessageListener {
+
+        final List<String> messages = new ArrayList<>();
+        private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+        @Override
+        public void onMessageData(final byte[] b, final int off, final int len) {
+            message.write(b, off, len);
+        }
+
+        @Override
+        public void onMessageEnd() {
+            messages.add(new String(message.toByteArray(), StandardCharsets.UTF_8));
+            message.reset();
+        }
+    }
+}
@@ -3,6 +3,13 @@ package net.juniper.netconf;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.juniper.netconf.element.JaxpXmlParser;
+import net.juniper.netconf.element.XmlParser;
+import net.juniper.netconf.exception.NetconfConnectException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -50,4 +57,112 @@ class DeviceTest {
             .hasMessage("A privateKey cannot be supplied with a password");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void willDefaultToTheDefaultXmlParser() {
+        final XmlParser xmlParser = new JaxpXmlParser();
+
+        assertThat(Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .build()
+            .getXmlParser())
+            .isSameAs(XmlParser.getDefault());
+        assertThat(Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .xmlParser(xmlParser)
+            .build()
+            .getXmlParser())
+            .isSameAs(xmlParser);
+    }
+
+    @Test
+    void willNotParseWhileReceivingByDefault() {
+        assertThat(Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .build()
+            .getParseWhileReceiving())
+            .isFalse();
+    }
+
+    @Test
+    void willShareDefaultBufferPool() {
+        assertThat(Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .build()
+            .getBufferPool())
+            .isSameAs(BufferPool.getDefault());
+    }
+
+    @Test
+    void willShareDefaultReplyMemoryBudget() {
+        assertThat(Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .build()
+            .getReplyMemoryBudget())
+            .isSameAs(ReplyMemoryBudget.getDefault());
+    }
+
+    @Test
+    void willNotSpillRepliesByDefault() {
+        final Device device = Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .build();
+
+        assertThat(device.getSpillThreshold())
+            .isEqualTo(Long.MAX_VALUE);
+        assertThat(device.getSpillDirectory())
+            .isEqualTo(Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    @Test
+    void willOpenSessionAsynchronously() throws Exception {
+        final Device device = Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .password("my-password")
+            .sshImplementation(FakeNetconfSshSession.class)
+            .build();
+
+        try (final NetconfSession session = device.openSessionAsync().get(5, TimeUnit.SECONDS)) {
+            assertThat(session.isConnected()).isTrue();
+        }
+    }
+
+    @Test
+    void willFailToOpenSessionAsynchronously() {
+        final Device device = Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .password("my-password")
+            .sshImplementation(UnreachableSshSession.class)
+            .build();
+
+        final CompletableFuture<NetconfSession> session = device.openSessionAsync();
+
+        assertThatThrownBy(() -> session.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(NetconfConnectException.class);
+        assertThat(UnreachableSshSession.closed).isTrue();
+    }
+
+    static class UnreachableSshSession extends FakeNetconfSshSession {
+
+        static volatile boolean closed;
+
+        @Override
+        public CompletableFuture<Void> openSessionAsync(final Device device) {
+            return Futures.failed(new NetconfConnectException("Unable to connect to device"));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
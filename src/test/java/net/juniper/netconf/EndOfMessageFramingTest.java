@@ -0,0 +1,53 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class EndOfMessageFramingTest {
+
+    private static final String MESSAGE = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"3\">\n"
+        + "    <data>]]>]]]>]]</data>\n"
+        + "</rpc-reply>";
+
+    @Test
+    public void willDecodeMessagesSplitAcrossWrites() throws Exception {
+        final ChunkedFramingTest.CollectingListener listener =
+            new ChunkedFramingTest.CollectingListener();
+        final MessageFraming.Decoder decoder = new EndOfMessageFraming().newDecoder();
+        final byte[] bytes = ("\n" + MESSAGE + "]]>]]>\n" + MESSAGE + "\n]]>]]>")
+            .getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length; i += 2) {
+            decoder.decode(bytes, i, Math.min(2, bytes.length - i), listener);
+        }
+
+        assertThat(listener.messages)
+            .containsExactly(MESSAGE, MESSAGE + "\n");
+    }
+
+    @Test
+    public void willEncodeMessage() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new EndOfMessageFraming().writeMessage(MESSAGE, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8.name()))
+            .isEqualTo(MESSAGE + "]]>]]>");
+    }
+
+    @Test
+    public void willEncodeMessageReadFromStream() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new EndOfMessageFraming().writeMessage(
+            new ByteArrayInputStream(MESSAGE.getBytes(StandardCharsets.UTF_8)), out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8.name()))
+            .isEqualTo(MESSAGE + "]]>]]>");
+    }
+}
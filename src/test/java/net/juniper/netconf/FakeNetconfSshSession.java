@@ -0,0 +1,81 @@
+package net.juniper.netconf;
+
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fake SSH session that immediately replies &lt;ok/&gt; to every RPC.
+ */
+class FakeNetconfSshSession implements NetconfSshSession {
+
+    static final List<FakeNetconfSshSession> INSTANCES = new CopyOnWriteArrayList<>();
+    private static final Pattern MESSAGE_ID = Pattern.compile("message-id=\"(\\d+)\"");
+    private static final ThreadLocal<Device> CURRENT_DEVICE = new ThreadLocal<>();
+
+    volatile boolean connected;
+    volatile boolean responding = true;
+    volatile int rpcCount;
+    volatile String clientHello;
+
+    @Override
+    public void openSession(final Device device) {
+        INSTANCES.add(this);
+        CURRENT_DEVICE.set(device);
+        connected = true;
+    }
+
+    /**
+     * Returns the device that the last session opened by the current thread is connected to.
+     */
+    static Device currentDevice() {
+        return CURRENT_DEVICE.get();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public String sendMessage(final String message) {
+        if (message.contains("<close-session/>")) {
+            connected = false;
+            return "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+                + "<ok/></rpc-reply>";
+        }
+        clientHello = message;
+        return "<hello xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+            + "<capabilities>"
+            + "<capability>urn:ietf:params:netconf:base:1.0</capability>"
+            + "</capabilities>"
+            + "</hello>";
+    }
+
+    @Override
+    public CompletableFuture<String> sendMessageAsync(final String message) {
+        if (message.contains("<hello")) {
+            return CompletableFuture.completedFuture(sendMessage(message));
+        }
+        rpcCount++;
+        if (!responding) {
+            return new CompletableFuture<>();
+        }
+        final Matcher matcher = MESSAGE_ID.matcher(message);
+        assertThat(matcher.find()).isTrue();
+        return CompletableFuture.completedFuture(format(
+            "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"%s\">"
+                + "<ok/></rpc-reply>",
+            matcher.group(1)));
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+    }
+}
@@ -0,0 +1,183 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.juniper.netconf.element.RpcReply;
+import net.juniper.netconf.element.XmlParser;
+import org.junit.jupiter.api.Test;
+
+class MessageInputStreamTest {
+
+    private static final String RPC_REPLY = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"7\">"
+        + "<data><configuration/></data>"
+        + "</rpc-reply>";
+
+    @Test
+    public void willParseReplyWhilstItIsReceived() throws Exception {
+        final MessageInputStream stream = new MessageInputStream();
+        final CompletableFuture<RpcReply> reply = CompletableFuture.supplyAsync(() -> {
+            try {
+                return RpcReply.from(stream, XmlParser.getDefault());
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final byte[] utf8Xml = RPC_REPLY.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < utf8Xml.length; off += 10) {
+            stream.receive(utf8Xml, off, Math.min(10, utf8Xml.length - off));
+        }
+
+        assertThat(reply)
+            .isNotDone();
+
+        stream.end();
+
+        assertThat(reply.get(5, TimeUnit.SECONDS).getMessageId())
+            .isEqualTo("7");
+        assertThat(reply.get().getXml())
+            .isEqualTo(RPC_REPLY);
+    }
+
+    @Test
+    public void willEndOnceEverythingReceivedIsRead() throws Exception {
+        final MessageInputStream stream = new MessageInputStream();
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 1, 3);
+        stream.end();
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+
+        final byte[] b = new byte[10];
+        assertThat(stream.read(b, 0, b.length))
+            .isEqualTo(3);
+        assertThat(new String(b, 0, 3, StandardCharsets.UTF_8))
+            .isEqualTo("ok/");
+        assertThat(stream.read())
+            .isEqualTo(-1);
+    }
+
+    @Test
+    public void willFailReadsWhenTheMessageIsAbandoned() {
+        final MessageInputStream stream = new MessageInputStream();
+        final CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return stream.read();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        stream.fail(new IOException("The netconf session was closed"));
+
+        assertThatThrownBy(() -> read.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasRootCauseMessage("The netconf session was closed");
+        assertThatThrownBy(stream::read)
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void willTimeoutWaitingForData() throws Exception {
+        final MessageInputStream stream = new MessageInputStream(Duration.ofMillis(10));
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+
+        assertThat(stream.read(new byte[10], 0, 10))
+            .isEqualTo(5);
+        assertThatThrownBy(stream::read)
+            .isInstanceOf(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void willDiscardDataOnceClosed() {
+        final MessageInputStream stream = new MessageInputStream();
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+
+        stream.close();
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+
+        assertThat(stream.available())
+            .isZero();
+        assertThatThrownBy(stream::read)
+            .isInstanceOf(IOException.class)
+            .hasMessage("The message stream is closed");
+    }
+
+    @Test
+    public void willCountChunksUntilTheyAreRead() throws Exception {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final MessageInputStream stream =
+            new MessageInputStream(null, budget.newFlow(bytes -> { }));
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(10);
+        assertThat(stream.read(new byte[5], 0, 5))
+            .isEqualTo(5);
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(5);
+
+        stream.close();
+
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+    }
+
+    @Test
+    public void willCountRecordingAsCollectedUntilItIsTaken() throws Exception {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final ReplyMemoryBudget.Flow flow = budget.newFlow(bytes -> { });
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final MessageInputStream stream = new MessageInputStream(null, flow,
+            () -> new SegmentedBuffer(bufferPool, Long.MAX_VALUE, null, flow));
+        final byte[] utf8Xml = RPC_REPLY.getBytes(StandardCharsets.UTF_8);
+        stream.record();
+        stream.receive(utf8Xml, 0, 40);
+
+        assertThat(stream.read(new byte[40], 0, 40))
+            .isEqualTo(40);
+        // Read, so no longer queued, but held by the recording
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(40);
+
+        stream.receive(utf8Xml, 40, utf8Xml.length - 40);
+        stream.end();
+        final List<ByteBuffer> recording = stream.takeRecording();
+
+        final StringBuilder xml = new StringBuilder();
+        recording.forEach(buffer -> xml.append(StandardCharsets.UTF_8.decode(buffer)));
+        assertThat(xml.toString())
+            .isEqualTo(RPC_REPLY);
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+    }
+
+    @Test
+    public void willReleaseRecordingOnceClosed() throws Exception {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final ReplyMemoryBudget.Flow flow = budget.newFlow(bytes -> { });
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final MessageInputStream stream = new MessageInputStream(null, flow,
+            () -> new SegmentedBuffer(bufferPool, Long.MAX_VALUE, null, flow));
+        stream.record();
+        stream.receive("<ok/>".getBytes(StandardCharsets.UTF_8), 0, 5);
+        assertThat(stream.read(new byte[5], 0, 5))
+            .isEqualTo(5);
+
+        stream.close();
+
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(16);
+    }
+}
@@ -0,0 +1,147 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.junit.jupiter.api.Test;
+
+class MinaSshClientContextTest {
+
+    @Test
+    public void willShareTheClientBetweenSessions() {
+        final MinaSshClientContext context = new MinaSshClientContext(2);
+
+        final SshClient first = context.acquire();
+        final SshClient second = context.acquire();
+        try {
+            assertThat(second).isSameAs(first);
+            assertThat(first.isStarted()).isTrue();
+            assertThat(CoreModuleProperties.NIO_WORKERS.getRequired(first)).isEqualTo(2);
+            assertThat(context.getReferenceCount()).isEqualTo(2);
+        } finally {
+            context.release();
+            context.release();
+        }
+    }
+
+    @Test
+    public void willStopTheClientOnceTheLastSessionReleasesIt() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1, 1, Duration.ZERO);
+
+        final SshClient first = context.acquire();
+        context.acquire();
+        context.release();
+
+        assertThat(first.isStarted()).isTrue();
+
+        context.release();
+
+        assertThat(context.getReferenceCount()).isZero();
+        awaitStopped(first);
+    }
+
+    @Test
+    public void willKeepTheClientWhilstIdle() throws Exception {
+        final MinaSshClientContext context =
+            new MinaSshClientContext(1, 1, Duration.ofMillis(500));
+        final SshClient first = context.acquire();
+        context.release();
+
+        final SshClient second = context.acquire();
+        try {
+            assertThat(second).isSameAs(first);
+            assertThat(second.isStarted()).isTrue();
+        } finally {
+            context.release();
+        }
+
+        awaitStopped(first);
+    }
+
+    @Test
+    public void willStartNewClientWhenReacquired() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1, 1, Duration.ZERO);
+        final SshClient first = context.acquire();
+        context.release();
+        awaitStopped(first);
+
+        final SshClient second = context.acquire();
+        try {
+            assertThat(second).isNotSameAs(first);
+            assertThat(second.isStarted()).isTrue();
+        } finally {
+            context.release();
+        }
+    }
+
+    @Test
+    public void willNotReleaseClientThatHasNotBeenAcquired() {
+        final MinaSshClientContext context = new MinaSshClientContext();
+
+        assertThatThrownBy(context::release)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("The SSH client has not been acquired");
+    }
+
+    @Test
+    public void willNotCreateContextWithoutWorkers() {
+        assertThatThrownBy(() -> new MinaSshClientContext(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The number of NIO workers must be positive");
+    }
+
+    @Test
+    public void willNotCreateContextWithNegativeIdleTimeout() {
+        assertThatThrownBy(() -> new MinaSshClientContext(1, 1, Duration.ofSeconds(-1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The idle timeout cannot be negative");
+    }
+
+    @Test
+    public void willNotCreateContextWithoutReplyParsers() {
+        assertThatThrownBy(() -> new MinaSshClientContext(1, 0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("The number of reply parsers must be positive");
+    }
+
+    @Test
+    public void willOnlyParseRepliesWhilstAParserIsFree() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1, 1);
+        final CountDownLatch parsing = new CountDownLatch(1);
+        final CountDownLatch parsed = new CountDownLatch(1);
+        final CountDownLatch parsedAgain = new CountDownLatch(1);
+
+        assertThat(context.tryParse(() -> {
+            parsing.countDown();
+            try {
+                parsed.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })).isTrue();
+        assertThat(parsing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(context.tryParse(parsedAgain::countDown)).isFalse();
+
+        parsed.countDown();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!context.tryParse(parsedAgain::countDown)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        assertThat(parsedAgain.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void awaitStopped(final SshClient sshClient) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sshClient.isStarted()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
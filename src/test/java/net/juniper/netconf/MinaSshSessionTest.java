@@ -0,0 +1,187 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import net.juniper.netconf.element.ProjectedReply;
+import net.juniper.netconf.element.Projection;
+import net.juniper.netconf.element.RecordIterator;
+import net.juniper.netconf.element.RpcReply;
+import net.juniper.netconf.exception.NetconfException;
+import org.junit.jupiter.api.Test;
+
+class MinaSshSessionTest {
+
+    private static final int RECORD_COUNT = 4096;
+    private static final String RECORDS = IntStream.range(0, RECORD_COUNT)
+        .mapToObj(i -> "<record>" + String.format("%01024d", i) + "</record>")
+        .collect(Collectors.joining("", "<data>", "</data>"));
+
+    @Test
+    public void willShareTheConnectionWithAdditionalSessions() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1);
+        try (final NetconfTestServer server = new NetconfTestServer()) {
+            final Device device = server.newDevice().sshClientContext(context).build();
+
+            final NetconfSession session = device.openSession();
+            final NetconfSession additionalSession = session.openAdditionalSession();
+
+            assertThat(server.getSessionCount()).isEqualTo(1);
+            assertThat(context.getReferenceCount()).isEqualTo(1);
+
+            session.close();
+
+            assertThat(additionalSession.isConnected()).isTrue();
+            assertThat(additionalSession.executeRpc("<get-rpc-0/>").getXml())
+                .contains("<reply-to-get-rpc-0/>");
+            assertThat(context.getReferenceCount()).isEqualTo(1);
+
+            additionalSession.close();
+
+            assertThat(context.getReferenceCount()).isZero();
+            await(() -> server.getSessionCount() == 0);
+        }
+    }
+
+    @Test
+    public void willNotOpenAdditionalSessionOnceTheConnectionIsReleased() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1);
+        try (final NetconfTestServer server = new NetconfTestServer()) {
+            final Device device = server.newDevice().sshClientContext(context).build();
+            final NetconfSession session = device.openSession();
+            session.close();
+
+            assertThat(context.getReferenceCount()).isZero();
+            assertThatThrownBy(session::openAdditionalSession)
+                .isInstanceOf(NetconfException.class);
+        }
+    }
+
+    @Test
+    public void willSwitchToChunkedFramingIfTheServerSupportsIt() throws Exception {
+        try (final NetconfTestServer server =
+                 new NetconfTestServer(true, 1, name -> "<reply-to-" + name + "/>")) {
+            final Device device = server.newDevice()
+                .sshClientContext(new MinaSshClientContext(1))
+                .build();
+
+            try (final NetconfSession session = device.openSession()) {
+                assertThat(session.executeRpc("<get-rpc-0/>").getXml())
+                    .contains("<reply-to-get-rpc-0/>");
+                assertThat(session.executeRpc("<get-rpc-1/>").getXml())
+                    .contains("<reply-to-get-rpc-1/>");
+            }
+
+            assertThat(server.isChunkedMessageReceived()).isTrue();
+        }
+    }
+
+    @Test
+    public void willKeepEndOfMessageFramingIfTheServerOnlySupportsNetconf10() throws Exception {
+        try (final NetconfTestServer server = new NetconfTestServer()) {
+            final Device device = server.newDevice()
+                .sshClientContext(new MinaSshClientContext(1))
+                .build();
+
+            try (final NetconfSession session = device.openSession()) {
+                assertThat(session.executeRpc("<get-rpc-0/>").getXml())
+                    .contains("<reply-to-get-rpc-0/>");
+            }
+
+            assertThat(server.isChunkedMessageReceived()).isFalse();
+        }
+    }
+
+    @Test
+    public void willWithholdTheWindowWhilstTheMemoryBudgetIsUsedUp() throws Exception {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(65536);
+        try (final NetconfTestServer server = new NetconfTestServer(false, 1, name -> RECORDS)) {
+            final Device device = server.newDevice()
+                .sshClientContext(new MinaSshClientContext(1))
+                .parseWhileReceiving(true)
+                .replyMemoryBudget(budget)
+                .readTimeout(Duration.ofSeconds(30))
+                .build();
+
+            try (final NetconfSession session = device.openSession();
+                 final RecordIterator records = session.iterateRecords("<get-records/>",
+                     "data/record")) {
+
+                // Nothing is read from the reply yet, so the device is stalled
+                await(() -> budget.getStalledSessionCount() == 1);
+                assertThat(budget.getStallCount()).isPositive();
+
+                assertThat(records.stream().count()).isEqualTo(RECORD_COUNT);
+                assertThat(budget.getStalledSessionCount()).isZero();
+            }
+
+            await(() -> budget.getInFlightBytes() == 0);
+        }
+    }
+
+    @Test
+    public void willCollectRepliesWhilstEveryParserIsBusy() throws Exception {
+        final MinaSshClientContext context = new MinaSshClientContext(1, 1);
+        final CountDownLatch busy = new CountDownLatch(1);
+        try (final NetconfTestServer server = new NetconfTestServer()) {
+            final Device device = server.newDevice()
+                .sshClientContext(context)
+                .parseWhileReceiving(true)
+                .build();
+
+            try (final NetconfSession session = device.openSession()) {
+                assertThat(context.tryParse(() -> {
+                    try {
+                        busy.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })).isTrue();
+
+                assertThat(session.executeRpc("<get-rpc-0/>").getXml())
+                    .contains("<reply-to-get-rpc-0/>");
+            } finally {
+                busy.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void willMatchRepliesReceivedOutOfOrderByMessageId() throws Exception {
+        // The server replies to each pair of RPCs in reverse order
+        try (final NetconfTestServer server = new NetconfTestServer(false, 2, name ->
+            name.equals("get-counters") ? "<counters><count>42</count></counters>"
+                : "<reply-to-" + name + "/>")) {
+            final Device device = server.newDevice()
+                .sshClientContext(new MinaSshClientContext(1))
+                .build();
+
+            try (final NetconfSession session = device.openSession()) {
+                final CompletableFuture<RpcReply> reply = session.sendAsync("<get-rpc-0/>");
+                final CompletableFuture<ProjectedReply> projectedReply = session.sendAsync(
+                    "<get-counters/>",
+                    Projection.builder().selector("count", "counters/count").build());
+
+                assertThat(projectedReply.get(10, TimeUnit.SECONDS).getValue("count"))
+                    .isEqualTo("42");
+                assertThat(reply.get(10, TimeUnit.SECONDS).getXml())
+                    .contains("<reply-to-get-rpc-0/>");
+            }
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
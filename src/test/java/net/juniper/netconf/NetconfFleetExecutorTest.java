@@ -0,0 +1,286 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import net.juniper.netconf.exception.NetconfTimeoutException;
+import org.junit.jupiter.api.Test;
+
+class NetconfFleetExecutorTest {
+
+    private static List<Device> createDevices(final int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> Device.builder()
+                .address("site-" + i % 3 + ".device-" + i)
+                .username("my-username")
+                .password("my-password")
+                .sshImplementation(FakeNetconfSshSession.class)
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    private static List<Device> createSameSiteDevices(final int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> Device.builder()
+                .address("site-0.device-" + i)
+                .username("my-username")
+                .password("my-password")
+                .sshImplementation(FakeNetconfSshSession.class)
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    private static String getSite(final Device device) {
+        return device.getAddress().substring(0, device.getAddress().indexOf('.'));
+    }
+
+    @Test
+    public void willRunTaskAgainstEveryDevice() throws Exception {
+        final List<Device> devices = createDevices(20);
+        final List<NetconfFleetExecutor.DeviceResult<String>> results =
+            new CopyOnWriteArrayList<>();
+
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .maxConcurrency(4)
+            .build()) {
+            final NetconfFleetExecutor.Summary summary = executor.execute(
+                devices,
+                session -> session.executeRpc("<get-software-information/>").getMessageId(),
+                results::add
+            );
+
+            assertThat(summary).isEqualTo(new NetconfFleetExecutor.Summary(20, 0, 0));
+        }
+        assertThat(results)
+            .extracting(NetconfFleetExecutor.DeviceResult::getDevice)
+            .containsExactlyInAnyOrderElementsOf(devices);
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.isSuccessful()).isTrue();
+            assertThat(result.getResult()).isEqualTo("1");
+            assertThat(result.getSite()).isEqualTo(NetconfFleetExecutor.DEFAULT_SITE);
+        });
+    }
+
+    @Test
+    public void willLimitConcurrencyOverallAndPerSite() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Map<String, AtomicInteger> runningPerSite = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> maxRunningPerSite = new ConcurrentHashMap<>();
+
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .maxConcurrency(5)
+            .maxConcurrencyPerSite(2)
+            .siteResolver(NetconfFleetExecutorTest::getSite)
+            .build()) {
+            final NetconfFleetExecutor.Summary summary = executor.execute(
+                createDevices(30),
+                session -> {
+                    final String site = getSite(FakeNetconfSshSession.currentDevice());
+                    final AtomicInteger siteRunning =
+                        runningPerSite.computeIfAbsent(site, key -> new AtomicInteger());
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    maxRunningPerSite.computeIfAbsent(site, key -> new AtomicInteger())
+                        .accumulateAndGet(siteRunning.incrementAndGet(), Math::max);
+                    Thread.sleep(10);
+                    siteRunning.decrementAndGet();
+                    running.decrementAndGet();
+                    return null;
+                },
+                result -> { }
+            );
+
+            assertThat(summary.getSucceeded()).isEqualTo(30);
+        }
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(5);
+        assertThat(maxRunningPerSite).hasSize(3);
+        assertThat(maxRunningPerSite.values()).allSatisfy(siteMaximum ->
+            assertThat(siteMaximum.get()).isLessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void willReportFailedDevices() throws Exception {
+        final List<NetconfFleetExecutor.DeviceResult<Object>> failures =
+            new CopyOnWriteArrayList<>();
+
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder().build()) {
+            final NetconfFleetExecutor.Summary summary = executor.execute(
+                createDevices(6),
+                session -> {
+                    throw new IllegalStateException("Task failed");
+                },
+                result -> {
+                    if (!result.isSuccessful()) {
+                        failures.add(result);
+                    }
+                }
+            );
+
+            assertThat(summary).isEqualTo(new NetconfFleetExecutor.Summary(0, 6, 0));
+        }
+        assertThat(failures).hasSize(6).allSatisfy(result ->
+            assertThat(result.getFailure()).hasMessage("Task failed"));
+    }
+
+    @Test
+    public void willTimeoutSlowDevices() throws Exception {
+        final List<NetconfFleetExecutor.DeviceResult<Object>> results =
+            new CopyOnWriteArrayList<>();
+
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .deviceTimeout(Duration.ofMillis(100))
+            .build()) {
+            final NetconfFleetExecutor.Summary summary = executor.execute(
+                createDevices(2),
+                session -> {
+                    if (FakeNetconfSshSession.currentDevice()
+                        .getAddress().endsWith("device-0")) {
+                        Thread.sleep(10_000);
+                    }
+                    return null;
+                },
+                results::add
+            );
+
+            assertThat(summary).isEqualTo(new NetconfFleetExecutor.Summary(1, 1, 1));
+        }
+        assertThat(results)
+            .filteredOn(result -> !result.isSuccessful())
+            .singleElement()
+            .satisfies(result -> {
+                assertThat(result.getDevice().getAddress()).endsWith("device-0");
+                assertThat(result.getFailure()).isInstanceOf(NetconfTimeoutException.class);
+                assertThat(result.getDuration()).isLessThan(Duration.ofSeconds(10));
+            });
+    }
+
+    @Test
+    public void willTimeoutDevicesOfConcurrentExecutions() throws Exception {
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .maxConcurrency(2)
+            .deviceTimeout(Duration.ofMillis(100))
+            .build()) {
+            // Each execution has more devices than there are workers, so some devices wait for
+            // a worker until devices of the other execution time out
+            final List<CompletableFuture<NetconfFleetExecutor.Summary>> summaries =
+                IntStream.range(0, 2)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return executor.execute(createDevices(4), session -> {
+                                Thread.sleep(10_000);
+                                return null;
+                            }, result -> { });
+                        } catch (final InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }))
+                    .collect(Collectors.toList());
+
+            for (final CompletableFuture<NetconfFleetExecutor.Summary> summary : summaries) {
+                assertThat(summary.get(5, TimeUnit.SECONDS))
+                    .isEqualTo(new NetconfFleetExecutor.Summary(0, 4, 4));
+            }
+        }
+    }
+
+    @Test
+    public void willFailDevicesThatHaveNotStartedWhenClosed() throws Exception {
+        final List<NetconfFleetExecutor.DeviceResult<Object>> results =
+            new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .maxConcurrency(2)
+            .maxConcurrencyPerSite(1)
+            .deviceTimeout(Duration.ZERO)
+            .build();
+        final CompletableFuture<NetconfFleetExecutor.Summary> summary =
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return executor.execute(createSameSiteDevices(3), session -> {
+                        started.countDown();
+                        Thread.sleep(10_000);
+                        return null;
+                    }, results::add);
+                } catch (final InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        executor.close();
+
+        assertThat(summary.get(5, TimeUnit.SECONDS))
+            .isEqualTo(new NetconfFleetExecutor.Summary(0, 3, 0));
+        assertThat(results)
+            .filteredOn(result -> result.getFailure() instanceof CancellationException)
+            .hasSize(2);
+    }
+
+    @Test
+    public void willLimitTheDevicesTakenWhilstWaitingForTheirSite() throws Exception {
+        final AtomicInteger taken = new AtomicInteger();
+        final AtomicInteger reported = new AtomicInteger();
+        final AtomicInteger maxOutstanding = new AtomicInteger();
+        final List<Device> devices = createSameSiteDevices(20);
+        final Iterable<Device> lazyDevices = () -> new Iterator<Device>() {
+            @Override
+            public boolean hasNext() {
+                return taken.get() < devices.size();
+            }
+
+            @Override
+            public Device next() {
+                return devices.get(taken.getAndIncrement());
+            }
+        };
+
+        try (final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+            .maxConcurrency(2)
+            .maxConcurrencyPerSite(1)
+            .siteResolver(NetconfFleetExecutorTest::getSite)
+            .build()) {
+            final NetconfFleetExecutor.Summary summary = executor.execute(
+                lazyDevices,
+                session -> {
+                    Thread.sleep(5);
+                    return null;
+                },
+                result -> maxOutstanding.accumulateAndGet(
+                    taken.get() - reported.getAndIncrement(), Math::max)
+            );
+
+            assertThat(summary.getSucceeded()).isEqualTo(20);
+        }
+        // One device running in the site, and at most two more waiting for it
+        assertThat(maxOutstanding.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    public void willBorrowSessionsFromPool() throws Exception {
+        FakeNetconfSshSession.INSTANCES.clear();
+        final List<Device> devices = createDevices(1);
+
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder().build();
+             final NetconfFleetExecutor executor = NetconfFleetExecutor.builder()
+                 .sessionPool(pool)
+                 .build()) {
+            executor.execute(devices, session -> null, result -> { });
+            executor.execute(devices, session -> null, result -> { });
+
+            assertThat(pool.getIdleCount(devices.get(0))).isEqualTo(1);
+        }
+        assertThat(FakeNetconfSshSession.INSTANCES).hasSize(1);
+    }
+}
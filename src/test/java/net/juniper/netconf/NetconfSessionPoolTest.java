@@ -0,0 +1,154 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import net.juniper.netconf.exception.NetconfTimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NetconfSessionPoolTest {
+
+    private static final Device DEVICE = Device.builder()
+        .address("my-device")
+        .username("my-username")
+        .password("my-password")
+        .readTimeout(Duration.ofMillis(100))
+        .sshImplementation(FakeNetconfSshSession.class)
+        .build();
+
+    @BeforeEach
+    public void setUp() {
+        FakeNetconfSshSession.INSTANCES.clear();
+    }
+
+    @Test
+    public void willReuseReturnedSessions() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder().build()) {
+            final NetconfSession session;
+            try (final PooledNetconfSession pooledSession = pool.borrowSession(DEVICE)) {
+                session = pooledSession.getSession();
+            }
+
+            try (final PooledNetconfSession pooledSession = pool.borrowSession(DEVICE)) {
+                assertThat(pooledSession.getSession()).isSameAs(session);
+            }
+            assertThat(FakeNetconfSshSession.INSTANCES).hasSize(1);
+            assertThat(pool.getIdleCount(DEVICE)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void willTimeoutWhenAllSessionsAreLent() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder()
+            .maxSessions(2)
+            .borrowTimeout(Duration.ofMillis(50))
+            .build();
+             final PooledNetconfSession first = pool.borrowSession(DEVICE);
+             final PooledNetconfSession second = pool.borrowSession(DEVICE)) {
+
+            assertThat(first.getSession()).isNotSameAs(second.getSession());
+            assertThatThrownBy(() -> pool.borrowSession(DEVICE))
+                .isInstanceOf(NetconfTimeoutException.class)
+                .hasMessage("Timeout waiting for a session to my-device");
+            assertThat(pool.getSessionCount(DEVICE)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void willDiscardSessionsThatAreNoLongerConnected() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder().build()) {
+            pool.borrowSession(DEVICE).close();
+            FakeNetconfSshSession.INSTANCES.get(0).connected = false;
+
+            try (final PooledNetconfSession pooledSession = pool.borrowSession(DEVICE)) {
+                assertThat(pooledSession.getSession().isConnected()).isTrue();
+            }
+            assertThat(FakeNetconfSshSession.INSTANCES).hasSize(2);
+            assertThat(pool.getSessionCount(DEVICE)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void willDiscardInvalidatedSessions() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder().build()) {
+            try (final PooledNetconfSession pooledSession = pool.borrowSession(DEVICE)) {
+                pooledSession.invalidate();
+            }
+
+            assertThat(FakeNetconfSshSession.INSTANCES.get(0).connected).isFalse();
+            assertThat(pool.getSessionCount(DEVICE)).isZero();
+        }
+    }
+
+    @Test
+    public void willValidateIdleSessionsWithRpc() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder()
+            .validationInterval(Duration.ZERO)
+            .build()) {
+            pool.borrowSession(DEVICE).close();
+            pool.borrowSession(DEVICE).close();
+            assertThat(FakeNetconfSshSession.INSTANCES.get(0).rpcCount).isEqualTo(1);
+
+            FakeNetconfSshSession.INSTANCES.get(0).responding = false;
+            pool.borrowSession(DEVICE).close();
+
+            assertThat(FakeNetconfSshSession.INSTANCES).hasSize(2);
+            assertThat(pool.getSessionCount(DEVICE)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void willEvictIdleSessionsDownToTheMinimum() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder()
+            .minSessions(1)
+            .maxIdleTime(Duration.ofNanos(1))
+            .build()) {
+            final PooledNetconfSession first = pool.borrowSession(DEVICE);
+            final PooledNetconfSession second = pool.borrowSession(DEVICE);
+            first.close();
+            second.close();
+
+            pool.evict();
+
+            assertThat(pool.getSessionCount(DEVICE)).isEqualTo(1);
+            assertThat(pool.getIdleCount(DEVICE)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void willReplaceExpiredSessions() throws Exception {
+        try (final NetconfSessionPool pool = NetconfSessionPool.builder()
+            .minSessions(1)
+            .maxLifetime(Duration.ofMillis(200))
+            .build()) {
+            pool.borrowSession(DEVICE).close();
+            Thread.sleep(250);
+
+            pool.evict();
+
+            assertThat(FakeNetconfSshSession.INSTANCES).hasSize(2);
+            assertThat(FakeNetconfSshSession.INSTANCES.get(0).connected).isFalse();
+            assertThat(pool.getSessionCount(DEVICE)).isEqualTo(1);
+            assertThat(pool.getIdleCount(DEVICE)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void willCloseIdleSessionsWhenClosed() throws Exception {
+        final NetconfSessionPool pool = NetconfSessionPool.builder().build();
+        pool.borrowSession(DEVICE).close();
+        final PooledNetconfSession lent = pool.borrowSession(DEVICE);
+        pool.borrowSession(DEVICE).close();
+
+        pool.close();
+
+        assertThat(FakeNetconfSshSession.INSTANCES.get(1).connected).isFalse();
+        assertThat(lent.getSession().isConnected()).isTrue();
+        lent.close();
+        assertThat(FakeNetconfSshSession.INSTANCES.get(0).connected).isFalse();
+        assertThatThrownBy(() -> pool.borrowSession(DEVICE))
+            .hasMessage("The session pool is closed");
+    }
+}
@@ -0,0 +1,249 @@
+package net.juniper.netconf;
+
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import net.juniper.netconf.element.Hello;
+import net.juniper.netconf.element.ProjectedReply;
+import net.juniper.netconf.element.Projection;
+import net.juniper.netconf.element.RecordDecoder;
+import net.juniper.netconf.element.RecordIterator;
+import net.juniper.netconf.element.RpcReply;
+import org.junit.jupiter.api.Test;
+
+class NetconfSessionTest {
+
+    private static final String SERVER_HELLO = ""
+        + "<hello xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">\n"
+        + "  <capabilities>\n"
+        + "    <capability>urn:ietf:params:netconf:base:1.0</capability>\n"
+        + "  </capabilities>\n"
+        + "  <session-id>1</session-id>\n"
+        + "</hello>";
+
+    private static final Device DEVICE = Device.builder()
+        .address("my-device")
+        .username("my-username")
+        .password("my-password")
+        .sshImplementation(ReorderingSshSession.class)
+        .build();
+
+    @Test
+    public void willMatchPipelinedRepliesByMessageId() throws Exception {
+        try (final NetconfSession session = DEVICE.openSession()) {
+
+            final List<CompletableFuture<RpcReply>> replies = IntStream.range(0, 3)
+                .mapToObj(i -> session.sendAsync(format("<get-rpc-%d/>", i)))
+                .collect(Collectors.toList());
+
+            for (int i = 0; i < replies.size(); i++) {
+                final RpcReply reply = replies.get(i).get(5, TimeUnit.SECONDS);
+                assertThat(reply.getMessageId()).isEqualTo(String.valueOf(i + 1));
+                assertThat(reply.getXml()).contains(format("<reply-to-get-rpc-%d/>", i));
+            }
+        }
+    }
+
+    @Test
+    public void willExecuteRpc() throws Exception {
+        try (final NetconfSession session = DEVICE.openSession()) {
+            session.sendAsync("<get-rpc-0/>");
+            session.sendAsync("<get-rpc-1/>");
+
+            final RpcReply reply = session.executeRpc("<get-rpc-2/>");
+
+            assertThat(reply.getMessageId()).isEqualTo("3");
+            assertThat(reply.getXml()).contains("<reply-to-get-rpc-2/>");
+        }
+    }
+
+    @Test
+    public void willMatchProjectedRepliesByMessageId() throws Exception {
+        final Projection projection = Projection.builder()
+            .selector("replies", "*")
+            .build();
+        try (final NetconfSession session = DEVICE.openSession()) {
+            session.sendAsync("<get-rpc-0/>", projection);
+            session.sendAsync("<get-rpc-1/>", projection);
+
+            final ProjectedReply reply = session.executeRpc("<get-rpc-2/>", projection);
+
+            assertThat(reply.getMessageId()).isEqualTo("3");
+            assertThat(reply.getValues("replies")).containsExactly("");
+        }
+    }
+
+    @Test
+    public void willIterateOverRecordsOfReply() throws Exception {
+        try (final NetconfSession session = DEVICE.openSession()) {
+            final RecordDecoder decoder = RecordDecoder.forPath("*");
+            session.sendAsync("<get-rpc-0/>", decoder);
+            session.sendAsync("<get-rpc-1/>", decoder);
+
+            try (final RecordIterator records = session.iterateRecords("<get-rpc-2/>", "*")) {
+
+                assertThat(records.getMessageId()).isEqualTo("3");
+                assertThat(records.next().getLocalName()).isEqualTo("reply-to-get-rpc-2");
+                assertThat(records.hasNext()).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void willOpenAdditionalSessionOverTheSameConnection() throws Exception {
+        try (final NetconfSession session = DEVICE.openSession();
+             final NetconfSession additionalSession = session.openAdditionalSession()) {
+
+            assertThat(additionalSession).isNotSameAs(session);
+            assertThat(additionalSession.isConnected()).isTrue();
+            additionalSession.sendAsync("<get-rpc-0/>");
+            additionalSession.sendAsync("<get-rpc-1/>");
+            assertThat(additionalSession.executeRpc("<get-rpc-2/>").getMessageId())
+                .isEqualTo("3");
+        }
+    }
+
+    @Test
+    public void willOnlyAdvertiseNetconf11IfTheFramingCanBeChanged() throws Exception {
+        FakeNetconfSshSession.INSTANCES.clear();
+        final Device device = Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .password("my-password")
+            .sshImplementation(FakeNetconfSshSession.class)
+            .build();
+
+        try (final NetconfSession ignored = device.openSession()) {
+            assertThat(FakeNetconfSshSession.INSTANCES).singleElement().satisfies(sshSession ->
+                assertThat(sshSession.clientHello)
+                    .contains(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0)
+                    .doesNotContain(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_1));
+        }
+    }
+
+    @Test
+    public void willSendRpcsWithABlockingSshImplementation() throws Exception {
+        final Device device = Device.builder()
+            .address("my-device")
+            .username("my-username")
+            .password("my-password")
+            .sshImplementation(BlockingSshSession.class)
+            .build();
+
+        try (final NetconfSession session = device.openSession()) {
+            final CompletableFuture<RpcReply> reply = session.sendAsync("<get-rpc-0/>");
+
+            assertThat(reply).isDone();
+            assertThat(reply.get().getMessageId()).isEqualTo("1");
+            assertThat(session.executeRpc("<get-rpc-1/>").getXml())
+                .contains("<reply-to-get-rpc-1/>");
+        }
+    }
+
+    /**
+     * A fake SSH session that only implements the methods that are not optional, so each message
+     * is sent, and its response received, before the next is sent.
+     */
+    static class BlockingSshSession implements NetconfSshSession {
+
+        private static final Pattern RPC =
+            Pattern.compile("<rpc .*message-id=\"(\\d+)\">\\s*<([a-z0-9-]+)/>\\s*</rpc>");
+
+        @Override
+        public void openSession(final Device device) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public String sendMessage(final String message) {
+            if (message.contains("<hello")) {
+                return SERVER_HELLO;
+            }
+            final Matcher matcher = RPC.matcher(message);
+            if (!matcher.matches()) {
+                return "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+                    + "<ok/></rpc-reply>";
+            }
+            return format(
+                "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"%s\">"
+                    + "<reply-to-%s/></rpc-reply>",
+                matcher.group(1), matcher.group(2));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A fake SSH session that holds back the responses to each batch of three RPCs, and then
+     * returns them in the wrong order - so that the replies can only be matched using the
+     * message-id.
+     */
+    static class ReorderingSshSession implements NetconfSshSession {
+
+        private static final Pattern RPC =
+            Pattern.compile("<rpc .*message-id=\"(\\d+)\">\\s*<([a-z0-9-]+)/>\\s*</rpc>");
+        private final List<CompletableFuture<String>> outstandingResponses = new ArrayList<>();
+        private final List<String> replies = new ArrayList<>();
+
+        @Override
+        public void openSession(final Device device) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public String sendMessage(final String message) {
+            if (message.contains("<close-session/>")) {
+                return "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+                    + "<ok/></rpc-reply>";
+            }
+            return SERVER_HELLO;
+        }
+
+        @Override
+        public CompletableFuture<String> sendMessageAsync(final String message) {
+            final Matcher matcher = RPC.matcher(message);
+            assertThat(matcher.matches()).isTrue();
+            final CompletableFuture<String> response = new CompletableFuture<>();
+            outstandingResponses.add(response);
+            replies.add(format(
+                "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"%s\">"
+                    + "<reply-to-%s/></rpc-reply>",
+                matcher.group(1), matcher.group(2)));
+            if (outstandingResponses.size() == 3) {
+                for (int i = 0; i < 3; i++) {
+                    outstandingResponses.get(i).complete(replies.get(2 - i));
+                }
+                outstandingResponses.clear();
+                replies.clear();
+            }
+            return response;
+        }
+
+        @Override
+        public NetconfSshSession openAdditionalChannel() {
+            return new ReorderingSshSession();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
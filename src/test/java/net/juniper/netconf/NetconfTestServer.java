@@ -0,0 +1,292 @@
+package net.juniper.netconf;
+
+import static java.lang.String.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.juniper.netconf.element.Hello;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.subsystem.SubsystemFactory;
+
+/**
+ * An in-process SSH server with a netconf subsystem, so that {@link MinaSshSession} can be tested
+ * against a real SSH connection. Each RPC is replied to with the result of a responder, given the
+ * name of the element in the RPC; replies are held back until a batch of RPCs has been received,
+ * and then sent in the reverse order.
+ */
+class NetconfTestServer implements AutoCloseable {
+
+    static final String USERNAME = "my-username";
+    static final String PASSWORD = "my-password";
+
+    private static final byte[] END_OF_MESSAGE = "]]>]]>".getBytes(StandardCharsets.UTF_8);
+    private static final int CHUNK_SIZE = 32768;
+    private static final Pattern MESSAGE_ID = Pattern.compile("message-id=\"(\\d+)\"");
+    private static final Pattern RPC_CONTENT = Pattern.compile("<rpc[^>]*>\\s*<([A-Za-z0-9-]+)");
+
+    private final boolean netconf11;
+    private final int batchSize;
+    private final Function<String, String> responder;
+    private final SshServer server;
+    private volatile boolean chunkedMessageReceived;
+
+    /**
+     * Starts a server that advertises NETCONF 1.0 only, and replies to each RPC immediately.
+     */
+    NetconfTestServer() throws IOException {
+        this(false, 1, name -> "<reply-to-" + name + "/>");
+    }
+
+    /**
+     * Starts a server.
+     *
+     * @param netconf11 {@code true} to also advertise NETCONF 1.1, and so use chunked framing if
+     *                  the client advertises it too.
+     * @param batchSize the number of RPCs received before they are replied to, in reverse order.
+     * @param responder the content of the reply to each RPC, given the name of its element.
+     */
+    NetconfTestServer(
+        final boolean netconf11,
+        final int batchSize,
+        final Function<String, String> responder
+    ) throws IOException {
+        this.netconf11 = netconf11;
+        this.batchSize = batchSize;
+        this.responder = responder;
+        this.server = SshServer.setUpDefaultServer();
+        server.setHost("localhost");
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        server.setPasswordAuthenticator((username, password, session) ->
+            USERNAME.equals(username) && PASSWORD.equals(password));
+        server.setSubsystemFactories(Collections.singletonList(new NetconfSubsystemFactory()));
+        server.start();
+    }
+
+    /**
+     * Creates a device that connects to this server.
+     */
+    Device.DeviceBuilder newDevice() {
+        return Device.builder()
+            .address("localhost")
+            .port(server.getPort())
+            .username(USERNAME)
+            .password(PASSWORD);
+    }
+
+    /**
+     * Returns the number of SSH connections to this server.
+     */
+    int getSessionCount() {
+        return server.getActiveSessions().size();
+    }
+
+    /**
+     * Indicates if any message has been received with chunked framing.
+     */
+    boolean isChunkedMessageReceived() {
+        return chunkedMessageReceived;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(true);
+    }
+
+    private class NetconfSubsystemFactory implements SubsystemFactory {
+
+        @Override
+        public String getName() {
+            return "netconf";
+        }
+
+        @Override
+        public Command createSubsystem(final ChannelSession channel) {
+            return new NetconfSubsystem();
+        }
+    }
+
+    /**
+     * Reads messages from, and writes messages to, a single netconf channel on its own thread.
+     */
+    private class NetconfSubsystem implements Command, Runnable {
+
+        private InputStream in;
+        private OutputStream out;
+        private ExitCallback exitCallback;
+        private Thread thread;
+        private boolean chunked;
+
+        @Override
+        public void setInputStream(final InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(final OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(final OutputStream err) {
+        }
+
+        @Override
+        public void setExitCallback(final ExitCallback exitCallback) {
+            this.exitCallback = exitCallback;
+        }
+
+        @Override
+        public void start(final ChannelSession channel, final Environment env) {
+            thread = new Thread(this, "netconf-test-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void destroy(final ChannelSession channel) {
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                write(newServerHello());
+                final String clientHello = read();
+                chunked = netconf11 && clientHello != null
+                    && clientHello.contains(Hello.URN_IETF_PARAMS_NETCONF_BASE_1_1);
+                final List<String> rpcs = new ArrayList<>();
+                String message = read();
+                while (message != null) {
+                    if (message.contains("<close-session/>")) {
+                        write(format("<rpc-reply xmlns=\"%s\" message-id=\"%s\"><ok/></rpc-reply>",
+                            Hello.URN_XML_NS_NETCONF_BASE_1_0, getMessageId(message)));
+                        break;
+                    }
+                    rpcs.add(message);
+                    if (rpcs.size() == batchSize) {
+                        for (int i = rpcs.size() - 1; i >= 0; i--) {
+                            write(newReply(rpcs.get(i)));
+                        }
+                        rpcs.clear();
+                    }
+                    message = read();
+                }
+            } catch (final IOException e) {
+                // The client has gone away
+            } finally {
+                exitCallback.onExit(0);
+            }
+        }
+
+        private String newServerHello() {
+            return "<hello xmlns=\"" + Hello.URN_XML_NS_NETCONF_BASE_1_0 + "\"><capabilities>"
+                + "<capability>" + Hello.URN_IETF_PARAMS_NETCONF_BASE_1_0 + "</capability>"
+                + (netconf11
+                ? "<capability>" + Hello.URN_IETF_PARAMS_NETCONF_BASE_1_1 + "</capability>" : "")
+                + "</capabilities><session-id>1</session-id></hello>";
+        }
+
+        private String newReply(final String rpc) {
+            final Matcher content = RPC_CONTENT.matcher(rpc);
+            final String name = content.find() ? content.group(1) : "";
+            return format("<rpc-reply xmlns=\"%s\" message-id=\"%s\">%s</rpc-reply>",
+                Hello.URN_XML_NS_NETCONF_BASE_1_0, getMessageId(rpc), responder.apply(name));
+        }
+
+        private String getMessageId(final String rpc) {
+            final Matcher messageId = MESSAGE_ID.matcher(rpc);
+            return messageId.find() ? messageId.group(1) : "";
+        }
+
+        private void write(final String message) throws IOException {
+            final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            if (chunked) {
+                for (int off = 0; off < bytes.length; off += CHUNK_SIZE) {
+                    final int len = Math.min(CHUNK_SIZE, bytes.length - off);
+                    out.write(("\n#" + len + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.write(bytes, off, len);
+                }
+                out.write("\n##\n".getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.write(bytes);
+                out.write(END_OF_MESSAGE);
+            }
+            out.flush();
+        }
+
+        /**
+         * Reads the next message, or returns null if the channel has been closed.
+         */
+        private String read() throws IOException {
+            return chunked ? readChunked() : readEndOfMessage();
+        }
+
+        private String readEndOfMessage() throws IOException {
+            final ByteArrayOutputStream message = new ByteArrayOutputStream();
+            int matched = 0;
+            while (matched < END_OF_MESSAGE.length) {
+                final int b = in.read();
+                if (b == -1) {
+                    return null;
+                }
+                message.write(b);
+                matched = b == END_OF_MESSAGE[matched] ? matched + 1
+                    : b == END_OF_MESSAGE[0] ? 1 : 0;
+            }
+            final byte[] bytes = message.toByteArray();
+            return new String(bytes, 0, bytes.length - END_OF_MESSAGE.length,
+                StandardCharsets.UTF_8).trim();
+        }
+
+        private String readChunked() throws IOException {
+            final ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                if (!expect('\n') || !expect('#')) {
+                    return null;
+                }
+                int b = in.read();
+                if (b == '#') {
+                    if (!expect('\n')) {
+                        return null;
+                    }
+                    chunkedMessageReceived = true;
+                    return new String(message.toByteArray(), StandardCharsets.UTF_8);
+                }
+                int length = 0;
+                while (b >= '0' && b <= '9') {
+                    length = length * 10 + b - '0';
+                    b = in.read();
+                }
+                if (b != '\n') {
+                    return null;
+                }
+                for (int i = 0; i < length; i++) {
+                    b = in.read();
+                    if (b == -1) {
+                        return null;
+                    }
+                    message.write(b);
+                }
+            }
+        }
+
+        private boolean expect(final char expected) throws IOException {
+            return in.read() == expected;
+        }
+    }
+}
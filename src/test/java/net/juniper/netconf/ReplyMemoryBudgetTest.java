@@ -0,0 +1,128 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ReplyMemoryBudgetTest {
+
+    @Test
+    public void willStallSessionsOnceBudgetIsUsedUp() {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(100);
+        final List<Long> firstWindow = new ArrayList<>();
+        final List<Long> secondWindow = new ArrayList<>();
+        final ReplyMemoryBudget.Flow first = budget.newFlow(firstWindow::add);
+        final ReplyMemoryBudget.Flow second = budget.newFlow(secondWindow::add);
+
+        first.reserveCollected(80);
+        first.onReceived(80);
+        second.reserveCollected(40);
+        second.onReceived(40);
+        first.reserveCollected(10);
+        first.onReceived(10);
+        first.onReceived(5);
+
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(130);
+        // The second session continues, so that the budget is not held by replies that cannot
+        // complete
+        assertThat(secondWindow)
+            .containsExactly(40L);
+        assertThat(firstWindow)
+            .containsExactly(80L);
+        assertThat(budget.getStalledSessionCount())
+            .isEqualTo(1);
+        assertThat(budget.getStallCount())
+            .isEqualTo(1);
+
+        second.releaseCollected(40);
+
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(90);
+        assertThat(firstWindow)
+            .containsExactly(80L, 15L);
+        assertThat(budget.getStalledSessionCount())
+            .isZero();
+    }
+
+    @Test
+    public void willResumeStalledSessionsInTurn() {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(10);
+        final List<Long> window = new ArrayList<>();
+        final ReplyMemoryBudget.Flow first = budget.newFlow(window::add);
+        final ReplyMemoryBudget.Flow second = budget.newFlow(bytes -> window.add(bytes * 100));
+        final ReplyMemoryBudget.Flow third = budget.newFlow(bytes -> window.add(bytes * 10000));
+        for (final ReplyMemoryBudget.Flow flow : new ReplyMemoryBudget.Flow[] {
+            first, second, third
+        }) {
+            flow.reserveCollected(20);
+            flow.onReceived(1);
+        }
+
+        assertThat(window)
+            .containsExactly(1L);
+
+        first.releaseCollected(20);
+
+        assertThat(window)
+            .containsExactly(1L, 100L);
+        assertThat(budget.getStalledSessionCount())
+            .isEqualTo(1);
+
+        second.close();
+
+        assertThat(window)
+            .containsExactly(1L, 100L, 10000L);
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(20);
+        assertThat(budget.getStalledSessionCount())
+            .isZero();
+    }
+
+    @Test
+    public void willNotStallSessionNotHoldingReplies() {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(10);
+        final List<Long> window = new ArrayList<>();
+        final ReplyMemoryBudget.Flow holding = budget.newFlow(bytes -> { });
+        final ReplyMemoryBudget.Flow spilling = budget.newFlow(window::add);
+        holding.reserveCollected(20);
+        holding.onReceived(20);
+
+        spilling.onReceived(30);
+
+        assertThat(window)
+            .containsExactly(30L);
+        assertThat(budget.getStalledSessionCount())
+            .isZero();
+    }
+
+    @Test
+    public void willResumeSessionOnceQueuedDataIsRead() {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(10);
+        final List<Long> window = new ArrayList<>();
+        final ReplyMemoryBudget.Flow flow = budget.newFlow(window::add);
+        flow.reserveQueued(20);
+        flow.onReceived(20);
+
+        assertThat(window)
+            .isEmpty();
+        assertThat(budget.getStalledSessionCount())
+            .isEqualTo(1);
+
+        flow.releaseQueued(15);
+
+        assertThat(window)
+            .containsExactly(20L);
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(5);
+    }
+
+    @Test
+    public void willNotCreateNegativeBudget() {
+        assertThatThrownBy(() -> new ReplyMemoryBudget(-1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
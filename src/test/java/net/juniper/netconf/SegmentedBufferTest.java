@@ -0,0 +1,370 @@
+package net.juniper.netconf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import net.juniper.netconf.element.RpcReply;
+import net.juniper.netconf.element.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentedBufferTest {
+
+    private static final String MESSAGE = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"3\">"
+        + "<ok/>"
+        + "</rpc-reply>";
+
+    @Test
+    public void willCollectContentAcrossSegments() throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final SegmentedBuffer buffer = new SegmentedBuffer(bufferPool);
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < utf8Message.length; off += 7) {
+            buffer.write(utf8Message, off, Math.min(7, utf8Message.length - off));
+        }
+
+        assertThat(buffer.size())
+            .isEqualTo(utf8Message.length);
+        final SegmentedBuffer.Content content = buffer.takeContent();
+
+        assertThat(content.size())
+            .isEqualTo(utf8Message.length);
+        assertThat(content.decode())
+            .isEqualTo(MESSAGE);
+        assertThat(buffer.size())
+            .isZero();
+        // The segments are held by the content until it is closed
+        assertThat(bufferPool.getRetainedBytes())
+            .isZero();
+
+        content.close();
+
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo((utf8Message.length + 15) / 16 * 16);
+    }
+
+    @Test
+    public void willReadContentAsStreamUntilClosed() throws Exception {
+        final SegmentedBuffer buffer = new SegmentedBuffer(new BufferPool(16, 1024, false));
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        buffer.write(utf8Message, 0, utf8Message.length);
+        final SegmentedBuffer.Content content = buffer.takeContent();
+
+        final InputStream stream = content.newInputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] bytes = new byte[10];
+        for (int length = stream.read(bytes); length != -1; length = stream.read(bytes)) {
+            out.write(bytes, 0, length);
+        }
+
+        assertThat(out.toByteArray())
+            .isEqualTo(utf8Message);
+        content.close();
+        assertThatThrownBy(() -> content.newInputStream().read())
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void willHandOverFullSegmentsAndCopyPartialSegment() throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final SegmentedBuffer buffer = new SegmentedBuffer(
+            bufferPool, Long.MAX_VALUE, null, budget.newFlow(bytes -> { }));
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        buffer.write(utf8Message, 0, 40);
+        final SegmentedBuffer.Content content = buffer.takeContent();
+
+        final List<ByteBuffer> segments = content.takeSegments();
+
+        assertThat(segments)
+            .extracting(ByteBuffer::capacity)
+            .containsExactly(16, 16, 8);
+        assertThat(StandardCharsets.UTF_8.decode(segments.get(2)).toString())
+            .isEqualTo(MESSAGE.substring(32, 40));
+        // Only the partly filled segment is returned to the pool
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(16);
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+
+        content.close();
+
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(16);
+    }
+
+    @Test
+    public void willHandOverSegmentsToReplyParsedFromContent() throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final SegmentedBuffer buffer = new SegmentedBuffer(bufferPool);
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        buffer.write(utf8Message, 0, utf8Message.length);
+
+        try (final SegmentedBuffer.Content content = buffer.takeContent()) {
+            final RpcReply rpcReply =
+                RpcReply.from(content.newInputStream(), XmlParser.getDefault());
+
+            assertThat(rpcReply.getXml())
+                .isEqualTo(MESSAGE);
+            assertThat(rpcReply.getMessageId())
+                .isEqualTo("3");
+        }
+        // The reply holds every full segment; only the last is copied and returned to the pool
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(16);
+    }
+
+    @Test
+    public void willCountContentAgainstBudgetUntilClosed() throws Exception {
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final SegmentedBuffer buffer = new SegmentedBuffer(
+            new BufferPool(16, 1024, false), Long.MAX_VALUE, null, budget.newFlow(bytes -> { }));
+        buffer.write(new byte[20], 0, 20);
+        buffer.write(new byte[20], 0, 20);
+
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(40);
+
+        final SegmentedBuffer.Content content = buffer.takeContent();
+
+        assertThat(budget.getInFlightBytes())
+            .isEqualTo(40);
+
+        content.close();
+
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+    }
+
+    @Test
+    public void willDiscardContentOnceReleased() throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final SegmentedBuffer buffer = new SegmentedBuffer(bufferPool);
+        buffer.write(new byte[20], 0, 20);
+
+        buffer.release();
+        buffer.write(new byte[20], 0, 20);
+
+        assertThat(buffer.size())
+            .isZero();
+        assertThat(buffer.takeContent().size())
+            .isZero();
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(32);
+    }
+
+    @Test
+    public void willSpillContentAboveThresholdToFile(@TempDir final Path spillDirectory)
+        throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final SegmentedBuffer buffer = new SegmentedBuffer(
+            bufferPool, 40, spillDirectory, budget.newFlow(bytes -> { }));
+        final byte[] utf8Message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < utf8Message.length; off += 7) {
+            buffer.write(utf8Message, off, Math.min(7, utf8Message.length - off));
+        }
+
+        assertThat(buffer.size())
+            .isEqualTo(utf8Message.length);
+        // The file does not count towards the budget
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+        final ByteBuffer content = buffer.takeContent().copy();
+
+        assertThat(content)
+            .isInstanceOf(MappedByteBuffer.class);
+        assertThat(content.isReadOnly())
+            .isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(content).toString())
+            .isEqualTo(MESSAGE);
+        assertThat(spillDirectory.toFile().listFiles())
+            .isEmpty();
+        assertThat(buffer.size())
+            .isZero();
+
+        // The next message is collected in memory again
+        buffer.write(utf8Message, 0, 40);
+        assertThat(buffer.takeContent().copy())
+            .isNotInstanceOf(MappedByteBuffer.class);
+    }
+
+    @Test
+    public void willFailContentThatCannotBeSpilled(@TempDir final Path spillDirectory)
+        throws Exception {
+        final SegmentedBuffer buffer = new SegmentedBuffer(new BufferPool(16, 1024, false), 10,
+            spillDirectory.resolve("missing"), ReplyMemoryBudget.newUnboundedFlow());
+        buffer.write(new byte[20], 0, 20);
+
+        assertThatThrownBy(buffer::takeContent)
+            .isInstanceOf(IOException.class);
+        buffer.write(new byte[5], 0, 5);
+        assertThat(buffer.takeContent().size())
+            .isEqualTo(5);
+    }
+
+    @Test
+    public void willFailContentWhoseSpillFailsPartWayThrough(@TempDir final Path spillDirectory)
+        throws Exception {
+        final BufferPool bufferPool = new BufferPool(16, 1024, false);
+        final ReplyMemoryBudget budget = new ReplyMemoryBudget(1024);
+        final SegmentedBuffer buffer = new SegmentedBuffer(
+            bufferPool, 40, spillDirectory, budget.newFlow(bytes -> { })) {
+            @Override
+            FileChannel openSpillChannel(final Path file) throws IOException {
+                // Fails once the first segment has been written, as if the disk were full
+                return new FailingFileChannel(super.openSpillChannel(file), 16);
+            }
+        };
+        buffer.write(new byte[20], 0, 20);
+        buffer.write(new byte[20], 0, 20);
+
+        // Spills the three segments collected so far
+        buffer.write(new byte[5], 0, 5);
+
+        assertThat(bufferPool.getRetainedBytes())
+            .isEqualTo(48);
+        assertThat(budget.getInFlightBytes())
+            .isZero();
+        assertThat(spillDirectory.toFile().listFiles())
+            .isEmpty();
+        assertThatThrownBy(buffer::takeContent)
+            .isInstanceOf(IOException.class)
+            .hasRootCauseMessage("No space left on device");
+
+        // The next message is unaffected
+        buffer.write(new byte[5], 0, 5);
+        assertThat(buffer.takeContent().size())
+            .isEqualTo(5);
+    }
+
+    /**
+     * A file channel that fails every write once a number of bytes have been written.
+     */
+    private static final class FailingFileChannel extends FileChannel {
+
+        private final FileChannel channel;
+        private long remaining;
+
+        private FailingFileChannel(final FileChannel channel, final long capacity) {
+            this.channel = channel;
+            this.remaining = capacity;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            if (remaining < src.remaining()) {
+                throw new IOException("No space left on device");
+            }
+            final int length = channel.write(src);
+            remaining -= length;
+            return length;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length)
+            throws IOException {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public int write(final ByteBuffer src, final long position) throws IOException {
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(final ByteBuffer[] dsts, final int offset, final int length)
+            throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst, final long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(final boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(final long position, final long count,
+            final WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(final ReadableByteChannel src, final long position,
+            final long count) throws IOException {
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public MappedByteBuffer map(final MapMode mode, final long position, final long size)
+            throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(final long position, final long size, final boolean shared)
+            throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(final long position, final long size, final boolean shared)
+            throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.parsers.DocumentBuilder;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+class AbstractNetconfElementTest {
+
+    @Test
+    public void willReuseTheDocumentBuilderOfEachThread() throws Exception {
+        final DocumentBuilder documentBuilder = AbstractNetconfElement.getDocumentBuilder();
+
+        assertThat(AbstractNetconfElement.getDocumentBuilder())
+            .isSameAs(documentBuilder);
+        assertThat(CompletableFuture.supplyAsync(AbstractNetconfElement::getDocumentBuilder).get())
+            .isNotSameAs(documentBuilder);
+        assertThat(documentBuilder.isNamespaceAware())
+            .isTrue();
+    }
+
+    @Test
+    public void willNotParseDocumentTypeDeclarations() {
+        assertThatThrownBy(() -> RpcCloseSession.from(""
+            + "<!DOCTYPE rpc [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+            + "<rpc xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"&xxe;\">"
+            + "<close-session/>"
+            + "</rpc>"))
+            .isInstanceOf(SAXException.class);
+    }
+
+    @Test
+    public void willReuseTheDocumentBuilderAfterParsingFails() throws Exception {
+        assertThatThrownBy(() -> RpcCloseSession.from("<rpc"))
+            .isInstanceOf(SAXException.class);
+
+        assertThat(RpcCloseSession.from(""
+            + "<rpc xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"3\">"
+            + "<close-session/>"
+            + "</rpc>").getMessageId())
+            .isEqualTo("3");
+    }
+
+    @Test
+    public void willCompareElementsParsedFromBytesWithoutRegardToHowTheyAreSplit() {
+        final byte[] utf8Xml = "<data>caf\u00e9</data>".getBytes(StandardCharsets.UTF_8);
+        final Utf8Content splitContent = Utf8Content.pending();
+        // Splits the two bytes of the accented character between buffers
+        splitContent.set(Arrays.asList(
+            ByteBuffer.wrap(utf8Xml, 0, 3),
+            ByteBuffer.wrap(utf8Xml, 3, 7),
+            ByteBuffer.wrap(utf8Xml, 10, utf8Xml.length - 10)));
+
+        final ByteBuffer directBytes = ByteBuffer.allocateDirect(utf8Xml.length).put(utf8Xml);
+        directBytes.flip();
+
+        final AbstractNetconfElement element = newElement(null, Utf8Content.of(directBytes));
+        final AbstractNetconfElement splitElement = newElement(null, splitContent);
+        final AbstractNetconfElement stringElement = newElement("<data>caf\u00e9</data>", null);
+
+        assertThat(splitElement)
+            .isEqualTo(element)
+            .hasSameHashCodeAs(element);
+        assertThat(stringElement)
+            .isEqualTo(element)
+            .hasSameHashCodeAs(element);
+        assertThat(element)
+            .isEqualTo(stringElement);
+    }
+
+    @Test
+    public void willNotEquateElementsParsedFromDifferentBytes() {
+        final AbstractNetconfElement element = newElement(null,
+            Utf8Content.of(ByteBuffer.wrap("<data>1</data>".getBytes(StandardCharsets.UTF_8))));
+        final AbstractNetconfElement longerElement = newElement(null,
+            Utf8Content.of(ByteBuffer.wrap("<data>10</data>".getBytes(StandardCharsets.UTF_8))));
+        final AbstractNetconfElement otherElement = newElement(null,
+            Utf8Content.of(ByteBuffer.wrap("<data>2</data>".getBytes(StandardCharsets.UTF_8))));
+
+        assertThat(element)
+            .isNotEqualTo(longerElement)
+            .isNotEqualTo(otherElement);
+    }
+
+    private static AbstractNetconfElement newElement(final String xml, final Utf8Content utf8Xml) {
+        return new AbstractNetconfElement(xml, utf8Xml, null) {
+        };
+    }
+}
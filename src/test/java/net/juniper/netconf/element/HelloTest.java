@@ -2,6 +2,7 @@ package net.juniper.netconf.element;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import org.xmlunit.assertj.XmlAssert;
 
@@ -70,6 +71,19 @@ class HelloTest {
             .isTrue();
     }
 
+    @Test
+    public void willCreateAnObjectFromUtf8Bytes() throws Exception {
+
+        final Hello hello = Hello.from(HELLO_WITH_NAMESPACE.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(hello)
+            .isEqualTo(Hello.from(HELLO_WITH_NAMESPACE));
+        assertThat(hello.getXml())
+            .isEqualTo(HELLO_WITH_NAMESPACE);
+        assertThat(hello.getDocument().getDocumentElement().getLocalName())
+            .isEqualTo("hello");
+    }
+
     @Test
     public void willCreateXmlFromAnObject() {
 
@@ -0,0 +1,144 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+class ProjectionTest {
+
+    @SuppressWarnings("HttpUrlsUsage")
+    private static final String INTERFACE_INFORMATION = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\""
+        + " xmlns:junos=\"http://xml.juniper.net/junos/20.4R0/junos\" message-id=\"8\">\n"
+        + "<interface-information xmlns=\"http://xml.juniper.net/junos/20.4R0/junos-interface\""
+        + " junos:style=\"normal\">\n"
+        + "  <physical-interface>\n"
+        + "    <name>\nge-0/0/0\n</name>\n"
+        + "    <traffic-statistics junos:style=\"brief\">\n"
+        + "      <input-packets>12</input-packets>\n"
+        + "      <output-packets>34</output-packets>\n"
+        + "    </traffic-statistics>\n"
+        + "    <logical-interface><name>ge-0/0/0.0</name></logical-interface>\n"
+        + "  </physical-interface>\n"
+        + "  <physical-interface>\n"
+        + "    <name>ge-0/0/1</name>\n"
+        + "    <traffic-statistics junos:style=\"brief\">\n"
+        + "      <input-packets>56</input-packets>\n"
+        + "      <output-packets><![CDATA[78]]></output-packets>\n"
+        + "    </traffic-statistics>\n"
+        + "  </physical-interface>\n"
+        + "</interface-information>\n"
+        + "</rpc-reply>";
+
+    private static final Projection PROJECTION = Projection.builder()
+        .selector("name", "interface-information/physical-interface/name")
+        .selector("input-packets",
+            "interface-information/physical-interface/traffic-statistics/input-packets")
+        .selector("output-packets", "interface-information/*/traffic-statistics/output-packets")
+        .selector("logical-name", "interface-information/physical-interface/*/name")
+        .selector("style", "interface-information/physical-interface/traffic-statistics/@style")
+        .selector("missing", "interface-information/logical-interface/name")
+        .build();
+
+    @Test
+    public void willSelectValuesFromReply() throws Exception {
+        final ProjectedReply reply =
+            PROJECTION.decode(INTERFACE_INFORMATION, XmlParser.getDefault());
+
+        assertThat(reply.getMessageId())
+            .isEqualTo("8");
+        assertThat(reply.isOk())
+            .isFalse();
+        assertThat(reply.getErrors())
+            .isEmpty();
+        assertThat(reply.getValues("name"))
+            .containsExactly("ge-0/0/0", "ge-0/0/1");
+        assertThat(reply.getLongs("input-packets"))
+            .containsExactly(12, 56);
+        assertThat(reply.getLongs("output-packets"))
+            .containsExactly(34, 78);
+        assertThat(reply.getValues("logical-name"))
+            .containsExactly("ge-0/0/0.0");
+        assertThat(reply.getValues("style"))
+            .containsExactly("brief", "brief");
+        assertThat(reply.getValue("missing"))
+            .isNull();
+        assertThat(reply.getLong("missing", -1))
+            .isEqualTo(-1);
+        assertThatThrownBy(() -> reply.getValues("unknown"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void willSelectValuesFromStream() throws Exception {
+        final ProjectedReply reply = PROJECTION.decode(
+            new ByteArrayInputStream(INTERFACE_INFORMATION.getBytes(StandardCharsets.UTF_8)),
+            XmlParser.getDefault());
+
+        assertThat(reply)
+            .isEqualTo(PROJECTION.decode(INTERFACE_INFORMATION, XmlParser.getDefault()));
+    }
+
+    @Test
+    public void willSelectTextContentOfElementsWithChildren() throws Exception {
+        final Projection projection = Projection.builder()
+            .selector("statistics", "interface-information/physical-interface/traffic-statistics")
+            .selector("input-packets",
+                "interface-information/physical-interface/traffic-statistics/input-packets")
+            .build();
+
+        final ProjectedReply reply =
+            projection.decode(INTERFACE_INFORMATION, XmlParser.getDefault());
+
+        assertThat(reply.getValues("statistics"))
+            .containsExactly("12\n      34", "56\n      78");
+        assertThat(reply.getValues("input-packets"))
+            .containsExactly("12", "56");
+    }
+
+    @Test
+    public void willReadStatusOfReply() throws Exception {
+        final ProjectedReply reply = PROJECTION.decode(""
+            + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+            + "<rpc-error>"
+            + "<error-type>application</error-type>"
+            + "<error-tag>invalid-value</error-tag>"
+            + "<error-severity>error</error-severity>"
+            + "</rpc-error>"
+            + "<ok/>"
+            + "</rpc-reply>", XmlParser.getDefault());
+
+        assertThat(reply.getMessageId())
+            .isNull();
+        assertThat(reply.isOk())
+            .isTrue();
+        assertThat(reply.hasErrors())
+            .isTrue();
+        assertThat(reply.getErrors().get(0).getErrorTag())
+            .isEqualTo(RpcError.ErrorTag.INVALID_VALUE);
+        assertThat(reply.getValues("name"))
+            .isEmpty();
+    }
+
+    @Test
+    public void willRejectInvalidSelectors() {
+        assertThatThrownBy(() -> Projection.builder().build())
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Projection.builder().selector("name", "a//b").build())
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Projection.builder().selector("name", "a/@b/c").build())
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void willFailToDecodeMalformedReply() {
+        assertThatThrownBy(() -> PROJECTION.decode(
+            "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\"><data></rpc-reply>",
+            XmlParser.getDefault()))
+            .isInstanceOf(SAXException.class);
+    }
+}
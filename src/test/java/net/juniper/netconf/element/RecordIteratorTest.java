@@ -0,0 +1,163 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+class RecordIteratorTest {
+
+    @SuppressWarnings("HttpUrlsUsage")
+    private static final String ROUTE_INFORMATION = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\""
+        + " xmlns:junos=\"http://xml.juniper.net/junos/20.4R0/junos\" message-id=\"5\">\n"
+        + "<route-information xmlns=\"http://xml.juniper.net/junos/20.4R0/junos-routing\">\n"
+        + "  <route-table>\n"
+        + "    <table-name>inet.0</table-name>\n"
+        + "    <rt junos:style=\"brief\">\n"
+        + "      <rt-destination>10.0.0.0/8</rt-destination>\n"
+        + "    </rt>\n"
+        + "    <rt junos:style=\"brief\">\n"
+        + "      <rt-destination><![CDATA[192.168.0.0/16]]></rt-destination>\n"
+        + "    </rt>\n"
+        + "  </route-table>\n"
+        + "  <route-table>\n"
+        + "    <table-name>inet6.0</table-name>\n"
+        + "    <rt><rt-destination>::/0</rt-destination></rt>\n"
+        + "  </route-table>\n"
+        + "</route-information>\n"
+        + "<rpc-error>\n"
+        + "  <error-type>application</error-type>\n"
+        + "  <error-tag>operation-failed</error-tag>\n"
+        + "  <error-severity>warning</error-severity>\n"
+        + "</rpc-error>\n"
+        + "<ok/>\n"
+        + "</rpc-reply>";
+
+    private static final RecordDecoder ROUTES =
+        RecordDecoder.forPath("route-information/route-table/rt");
+
+    @Test
+    public void willIterateOverRecords() throws Exception {
+        try (final RecordIterator routes =
+                 ROUTES.decode(ROUTE_INFORMATION, XmlParser.getDefault())) {
+
+            assertThat(routes.getMessageId())
+                .isEqualTo("5");
+
+            final Element route = routes.next();
+            assertThat(route.getNamespaceURI())
+                .isEqualTo("http://xml.juniper.net/junos/20.4R0/junos-routing");
+            assertThat(route.getAttributeNS("http://xml.juniper.net/junos/20.4R0/junos", "style"))
+                .isEqualTo("brief");
+            assertThat(route.getOwnerDocument().getDocumentElement())
+                .isSameAs(route);
+            assertThat(route.getTextContent().trim())
+                .isEqualTo("10.0.0.0/8");
+            assertThat(routes.isOk())
+                .isFalse();
+
+            assertThat(routes.next().getTextContent().trim())
+                .isEqualTo("192.168.0.0/16");
+            assertThat(routes.next().getTextContent())
+                .isEqualTo("::/0");
+            assertThat(routes.hasNext())
+                .isFalse();
+            assertThatThrownBy(routes::next)
+                .isInstanceOf(NoSuchElementException.class);
+            assertThat(routes.isOk())
+                .isTrue();
+            assertThat(routes.getErrors())
+                .extracting(RpcError::getErrorTag)
+                .containsExactly(RpcError.ErrorTag.OPERATION_FAILED);
+        }
+    }
+
+    @Test
+    public void willIterateOverRecordsMatchingAnyElement() throws Exception {
+        try (final RecordIterator tables = RecordDecoder.forPath("*/route-table/*")
+            .decode(ROUTE_INFORMATION, XmlParser.getDefault())) {
+
+            final List<String> names = tables.stream()
+                .map(Element::getLocalName)
+                .collect(Collectors.toList());
+
+            assertThat(names)
+                .containsExactly("table-name", "rt", "rt", "table-name", "rt");
+        }
+    }
+
+    @Test
+    public void willIterateOverRecordsOfStream() throws Exception {
+        final ClosingInputStream utf8Xml = new ClosingInputStream(ROUTE_INFORMATION);
+
+        try (final Stream<Element> routes =
+                 ROUTES.decode(utf8Xml, XmlParser.getDefault()).stream()) {
+
+            assertThat(routes.map(route -> route.getTextContent().trim()))
+                .containsExactly("10.0.0.0/8", "192.168.0.0/16", "::/0");
+        }
+        assertThat(utf8Xml.closed)
+            .isTrue();
+    }
+
+    @Test
+    public void willCloseStreamWhenClosedEarly() throws Exception {
+        final ClosingInputStream utf8Xml = new ClosingInputStream(ROUTE_INFORMATION);
+        final RecordIterator routes = ROUTES.decode(utf8Xml, XmlParser.getDefault());
+
+        routes.next();
+        routes.close();
+
+        assertThat(utf8Xml.closed)
+            .isTrue();
+        assertThat(routes.hasNext())
+            .isFalse();
+    }
+
+    @Test
+    public void willFailToReadMalformedRecords() throws Exception {
+        final RecordIterator routes = ROUTES.decode(""
+                + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+                + "<route-information><route-table><rt></route-table>",
+            XmlParser.getDefault());
+
+        assertThatThrownBy(routes::hasNext)
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(routes.hasNext())
+            .isFalse();
+    }
+
+    @Test
+    public void willRejectInvalidPaths() {
+        assertThatThrownBy(() -> RecordDecoder.forPath(""))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecordDecoder.forPath("a//b"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecordDecoder.forPath("a/@b"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static final class ClosingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        private ClosingInputStream(final String xml) {
+            super(xml.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package net.juniper.netconf.element;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import org.xmlunit.assertj.XmlAssert;
 
@@ -88,6 +90,22 @@ class RpcReplyLoadConfigResultsTest {
 
     }
 
+    @Test
+    public void willParseAnOkResponseFromStream() throws Exception {
+
+        final RpcReplyLoadConfigResults rpcReply = RpcReply.from(
+            new ByteArrayInputStream(
+                LOAD_CONFIG_RESULTS_OK_NO_NAMESPACE.getBytes(StandardCharsets.UTF_8)),
+            XmlParser.getDefault());
+
+        assertThat(rpcReply.getAction())
+            .isEqualTo("set");
+        assertThat(rpcReply.isOk())
+            .isTrue();
+        assertThat(rpcReply.getXml())
+            .isEqualTo(LOAD_CONFIG_RESULTS_OK_NO_NAMESPACE);
+    }
+
     @Test
     public void willParseAnOkResponseWithNamespacePrefix() throws Exception {
 
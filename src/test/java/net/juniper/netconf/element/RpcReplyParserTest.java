@@ -0,0 +1,80 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Test;
+
+class RpcReplyParserTest {
+
+    @SuppressWarnings("HttpUrlsUsage")
+    private static final String COMMIT_RESULTS = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\""
+        + "           xmlns:junos=\"http://xml.juniper.net/junos/20.4R0/junos\""
+        + "           message-id=\"8\">\n"
+        + "    <commit-results>\n"
+        + "        <routing-engine junos:style=\"normal\">\n"
+        + "            <name>re0</name>\n"
+        + "        </routing-engine>\n"
+        + "        <routing-engine junos:style=\"normal\">\n"
+        + "            <name>re1</name>\n"
+        + "        </routing-engine>\n"
+        + "    </commit-results>\n"
+        + "    <ok/>\n"
+        + "</rpc-reply>";
+
+    @Test
+    public void willCreateRegisteredReplyTypes() throws Exception {
+        RpcReplyParser.registerReplyType("commit-results", CommitResults::from);
+
+        final RpcReply rpcReply = RpcReply.from(COMMIT_RESULTS);
+
+        assertThat(rpcReply)
+            .isInstanceOfSatisfying(CommitResults.class, commitResults ->
+                assertThat(commitResults.routingEngines).containsExactly("re0", "re1"));
+        assertThat(rpcReply.getMessageId())
+            .isEqualTo("8");
+        assertThat(rpcReply.getXml())
+            .isSameAs(COMMIT_RESULTS);
+    }
+
+    @Test
+    public void willCreateLoadConfigResultsReplies() throws Exception {
+        final RpcReply rpcReply = RpcReply.from(""
+            + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"9\">"
+            + "<load-configuration-results action=\"merge\"><ok/></load-configuration-results>"
+            + "</rpc-reply>");
+
+        assertThat(rpcReply)
+            .isInstanceOfSatisfying(RpcReplyLoadConfigResults.class, loadConfigResults -> {
+                assertThat(loadConfigResults.getAction()).isEqualTo("merge");
+                assertThat(loadConfigResults.isOk()).isTrue();
+            });
+    }
+
+    private static class CommitResults extends RpcReply {
+
+        private final List<String> routingEngines;
+
+        CommitResults(final RpcReplyParser parser, final List<String> routingEngines) {
+            super(parser, false, new ArrayList<>());
+            this.routingEngines = routingEngines;
+        }
+
+        static CommitResults from(final RpcReplyParser parser) throws XMLStreamException {
+            final List<String> routingEngines = new ArrayList<>();
+            while (parser.nextChildElement()) {
+                while (parser.nextChildElement()) {
+                    if ("name".equals(parser.getReader().getLocalName())) {
+                        routingEngines.add(parser.readTextContent());
+                    } else {
+                        parser.skipElement();
+                    }
+                }
+            }
+            return new CommitResults(parser, routingEngines);
+        }
+    }
+}
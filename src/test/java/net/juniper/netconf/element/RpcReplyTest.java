@@ -1,9 +1,21 @@
 package net.juniper.netconf.element;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.xml.xpath.XPathFactory;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
 import org.xmlunit.assertj.XmlAssert;
 
 class RpcReplyTest {
@@ -41,6 +53,22 @@ class RpcReplyTest {
         + "        <error-message>Invalid IP address for interface Ethernet1/0</error-message>\n"
         + "    </rpc-error>\n"
         + "</rpc-reply>";
+    private static final String RPC_REPLY_WITH_DATA_AND_ERROR_INFO = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"6\">\n"
+        + "    <data>\n"
+        + "        <configuration><ok/><rpc-error/></configuration>\n"
+        + "    </data>\n"
+        + "    <rpc-error>\n"
+        + "        <error-type>protocol</error-type>\n"
+        + "        <error-tag>lock-denied</error-tag>\n"
+        + "        <error-severity>warning</error-severity>\n"
+        + "        <error-message><![CDATA[Lock failed, <lock> already held]]></error-message>\n"
+        + "        <error-info>\n"
+        + "            <session-id>454</session-id>\n"
+        + "            <bad-element>lock</bad-element>\n"
+        + "        </error-info>\n"
+        + "    </rpc-error>\n"
+        + "</rpc-reply>";
 
     @Test
     public void willParseRpcReplyWithoutNamespace() throws Exception {
@@ -123,6 +151,32 @@ class RpcReplyTest {
                     .build()));
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void willAppendErrorsToDocumentBuiltBySubclass() {
+        final Document document = AbstractNetconfElement.createBlankDocument();
+        final Element rpcReplyElement = document.createElementNS(
+            AbstractNetconfElement.URN_XML_NS_NETCONF_BASE_1_0, "rpc-reply");
+        document.appendChild(rpcReplyElement);
+
+        RpcReply.appendErrors(null, Arrays.asList(RpcError.builder()
+            .errorType(RpcError.ErrorType.APPLICATION)
+            .errorTag(RpcError.ErrorTag.INVALID_VALUE)
+            .errorSeverity(RpcError.ErrorSeverity.ERROR)
+            .errorMessage("MTU value 25000 is not within range 256..9192")
+            .errorMessageLanguage("en")
+            .build()), document, rpcReplyElement);
+
+        final Element errorElement = (Element) rpcReplyElement.getFirstChild();
+        assertThat(errorElement.getLocalName())
+            .isEqualTo("rpc-error");
+        assertThat(errorElement.getElementsByTagNameNS("*", "error-tag").item(0).getTextContent())
+            .isEqualTo("invalid-value");
+        assertThat(((Element) errorElement.getElementsByTagNameNS("*", "error-message").item(0))
+            .getAttribute("xml:lang"))
+            .isEqualTo("en");
+    }
+
     @Test
     public void willCreateXmlFromAnObject() {
 
@@ -190,4 +244,229 @@ class RpcReplyTest {
             .ignoreWhitespace()
             .areIdentical();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void willParseOnlyTheErrorsOfTheReply() throws Exception {
+        final RpcReply rpcReply = RpcReply.from(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+
+        assertThat(rpcReply.getMessageId())
+            .isEqualTo("6");
+        assertThat(rpcReply.isOk())
+            .isFalse();
+        assertThat(rpcReply.hasErrors())
+            .isFalse();
+        assertThat(rpcReply.hasWarnings())
+            .isTrue();
+        assertThat(rpcReply.getErrors())
+            .containsExactly(RpcError.builder()
+                .errorType(RpcError.ErrorType.PROTOCOL)
+                .errorTag(RpcError.ErrorTag.LOCK_DENIED)
+                .errorSeverity(RpcError.ErrorSeverity.WARNING)
+                .errorMessage("Lock failed, <lock> already held")
+                .errorInfo(RpcError.RpcErrorInfo.builder()
+                    .sessionId("454")
+                    .badElement("lock")
+                    .build())
+                .build());
+    }
+
+    @Test
+    public void willKeepTheReceivedXmlAndCreateTheDocumentWhenRequested() throws Exception {
+        final RpcReply rpcReply = RpcReply.from(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+
+        assertThat(rpcReply.getXml())
+            .isSameAs(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+        assertThat(rpcReply.getDocument().getDocumentElement().getLocalName())
+            .isEqualTo("rpc-reply");
+        assertThat(rpcReply.getDocument().getElementsByTagName("configuration").getLength())
+            .isEqualTo(1);
+        assertThat(rpcReply.getDocument())
+            .isSameAs(rpcReply.getDocument());
+    }
+
+    @Test
+    public void willCreateReplyBackedByUtf8Bytes() throws Exception {
+        final String xml = RPC_REPLY_WITH_DATA_AND_ERROR_INFO
+            .replace(">lock<", ">v\u00e9rrou<"); // verrou, with a two byte character
+        final RpcReply rpcReply = RpcReply.from(xml.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(rpcReply)
+            .isEqualTo(RpcReply.from(xml));
+        assertThat(rpcReply.getXml())
+            .isEqualTo(xml);
+        assertThat(rpcReply.getErrors().get(0).getErrorInfo().getBadElement())
+            .isEqualTo("v\u00e9rrou"); // verrou, with a two byte character
+        assertThat(rpcReply.getDocument().getElementsByTagName("configuration").getLength())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void willCreateReplyFromStreamAsItIsRead() throws Exception {
+        final byte[] utf8Xml = (RPC_REPLY_WITH_DATA_AND_ERROR_INFO + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+        // Returns a single byte at a time, as if the reply were still being received
+        final ByteArrayInputStream stream = new ByteArrayInputStream(utf8Xml) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        final RpcReply rpcReply = RpcReply.from(stream, XmlParser.getDefault());
+
+        assertThat(rpcReply)
+            .isEqualTo(RpcReply.from(utf8Xml));
+        assertThat(rpcReply.getXml())
+            .isEqualTo(RPC_REPLY_WITH_DATA_AND_ERROR_INFO + "\n");
+        assertThat(stream.available())
+            .isZero();
+    }
+
+    @Test
+    public void willCreateReplyBackedByTheRecordingOfAStream() throws Exception {
+        final byte[] utf8Xml = RPC_REPLY_WITH_DATA_AND_ERROR_INFO.getBytes(StandardCharsets.UTF_8);
+        final int split = utf8Xml.length / 2;
+        final ByteArrayInputStream in = new ByteArrayInputStream(utf8Xml);
+        final AtomicBoolean recording = new AtomicBoolean();
+        // Holds the reply in two buffers, as if it had been received in segments
+        final RecordableInputStream stream = new RecordableInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public void record() {
+                recording.set(true);
+            }
+
+            @Override
+            public List<ByteBuffer> takeRecording() throws IOException {
+                assertThat(recording.get())
+                    .isTrue();
+                in.skip(in.available());
+                return Arrays.asList(ByteBuffer.wrap(utf8Xml, 0, split),
+                    ByteBuffer.wrap(utf8Xml, split, utf8Xml.length - split));
+            }
+        };
+
+        final RpcReply rpcReply = RpcReply.from(stream, XmlParser.getDefault());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rpcReply.writeTo(out);
+
+        assertThat(rpcReply)
+            .isEqualTo(RpcReply.from(RPC_REPLY_WITH_DATA_AND_ERROR_INFO));
+        assertThat(rpcReply.getXml())
+            .isEqualTo(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+        assertThat(out.toByteArray())
+            .isEqualTo(utf8Xml);
+    }
+
+    @Test
+    public void willCreateReplyFromBuffer() throws Exception {
+        final byte[] utf8Xml = ("<padding/>" + RPC_REPLY_WITH_DATA_AND_ERROR_INFO + "<padding/>")
+            .getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(utf8Xml, 10, utf8Xml.length - 20);
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(buffer.remaining());
+        directBuffer.put(buffer.duplicate()).flip();
+
+        final RpcReply rpcReply = RpcReply.from(buffer, XmlParser.getDefault());
+
+        assertThat(rpcReply)
+            .isEqualTo(RpcReply.from(RPC_REPLY_WITH_DATA_AND_ERROR_INFO));
+        assertThat(rpcReply.getXml())
+            .isEqualTo(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+        assertThat(rpcReply.getDocument().getDocumentElement().getLocalName())
+            .isEqualTo("rpc-reply");
+        assertThat(buffer.position())
+            .isEqualTo(10);
+        assertThat((RpcReply) RpcReply.from(directBuffer, XmlParser.getDefault()))
+            .isEqualTo(rpcReply);
+        assertThat((RpcReply) RpcReply.from(buffer.asReadOnlyBuffer(), XmlParser.getDefault()))
+            .isEqualTo(rpcReply);
+    }
+
+    @Test
+    public void willReadReplyBackedByDirectBuffer() throws Exception {
+        final byte[] utf8Xml = RPC_REPLY_WITH_DATA_AND_ERROR_INFO.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(utf8Xml.length);
+        directBuffer.put(utf8Xml).flip();
+
+        final RpcReply rpcReply = RpcReply.from(directBuffer, XmlParser.getDefault());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rpcReply.writeTo(out);
+
+        assertThat(out.toByteArray())
+            .isEqualTo(utf8Xml);
+        assertThat(rpcReply.getXml())
+            .isEqualTo(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+        assertThat(rpcReply.getDocument().getDocumentElement().getLocalName())
+            .isEqualTo("rpc-reply");
+        assertThat(directBuffer.position())
+            .isZero();
+        assertThat(ReplyDecoder.rpcReply().decode(directBuffer, XmlParser.getDefault()))
+            .isEqualTo(rpcReply);
+    }
+
+    @Test
+    public void willExtractErrorsFromTheDocument() throws Exception {
+        final RpcReply rpcReply = RpcReply.from(RPC_REPLY_WITH_DATA_AND_ERROR_INFO);
+
+        assertThat(RpcReply.getRpcErrors(
+            rpcReply.getDocument(),
+            XPathFactory.newInstance().newXPath(),
+            "/*[local-name()='rpc-reply']/*[local-name()='rpc-error']"
+        )).isEqualTo(rpcReply.getErrors());
+        assertThat(RpcReply.getRpcErrors(
+            RpcReply.from(RPC_REPLY_WITH_ERRORS).getDocument(),
+            XPathFactory.newInstance().newXPath(),
+            "/*[local-name()='rpc-reply']/*[local-name()='rpc-error']"
+        )).hasSize(2).allSatisfy(error ->
+            assertThat(error.getErrorTag()).isEqualTo(RpcError.ErrorTag.INVALID_VALUE));
+    }
+
+    @Test
+    public void willCountErrorsAndWarnings() {
+        final RpcReply rpcReply = RpcReply.builder()
+            .messageId("7")
+            .error(RpcError.builder()
+                .errorSeverity(RpcError.ErrorSeverity.WARNING)
+                .build())
+            .error(RpcError.builder()
+                .errorSeverity(RpcError.ErrorSeverity.ERROR)
+                .build())
+            .build();
+
+        assertThat(rpcReply.hasErrorsOrWarnings())
+            .isTrue();
+        assertThat(rpcReply.hasErrors())
+            .isTrue();
+        assertThat(rpcReply.hasWarnings())
+            .isTrue();
+    }
+
+    @Test
+    public void willSerialiseTheDocumentOnlyOnce() {
+        final RpcReply rpcReply = RpcReply.builder()
+            .messageId("3")
+            .build();
+
+        assertThat(rpcReply.getXml())
+            .isSameAs(rpcReply.getXml());
+        assertThat(rpcReply)
+            .isEqualTo(RpcReply.builder()
+                .messageId("3")
+                .build());
+    }
+
+    @Test
+    public void willNotParseMalformedXml() {
+        assertThatThrownBy(() -> RpcReply.from("<rpc-reply><data></rpc-reply>"))
+            .isInstanceOf(SAXException.class);
+    }
+}
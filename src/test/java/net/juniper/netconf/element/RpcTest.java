@@ -0,0 +1,51 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.xmlunit.assertj.XmlAssert;
+
+class RpcTest {
+
+    private static final String RPC_WITHOUT_NAMESPACE = ""
+        + "<rpc message-id=\"101\"\n"
+        + "     xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">\n"
+        + "  <get-config><source><running/></source></get-config>\n"
+        + "</rpc>";
+
+    @Test
+    public void willCreateXmlFromAnObject() {
+        final Rpc rpc = Rpc.builder()
+            .messageId("101")
+            .content("<get-config><source><running/></source></get-config>")
+            .build();
+
+        XmlAssert.assertThat(rpc.getXml())
+            .and(RPC_WITHOUT_NAMESPACE)
+            .ignoreWhitespace()
+            .areIdentical();
+        assertThat(rpc.getDocument().getDocumentElement().getAttribute("message-id"))
+            .isEqualTo("101");
+    }
+
+    @Test
+    public void willWriteTheSameXmlAsIsCreated() throws Exception {
+        final Rpc rpc = Rpc.builder()
+            .namespacePrefix("nc")
+            .messageId("102")
+            .content("<nc:lock><nc:target><nc:candidate/></nc:target></nc:lock>")
+            .build();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        rpc.writeTo(out);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8))
+            .isEqualTo(rpc.getXml())
+            .isEqualTo("<nc:rpc xmlns:nc=\"urn:ietf:params:xml:ns:netconf:base:1.0\""
+                + " message-id=\"102\">"
+                + "<nc:lock><nc:target><nc:candidate/></nc:target></nc:lock>"
+                + "</nc:rpc>");
+    }
+}
@@ -0,0 +1,130 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+class XmlParserTest {
+
+    private static final String RPC_REPLY = ""
+        + "<rpc-reply xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\" message-id=\"3\">"
+        + "<ok/>"
+        + "</rpc-reply>";
+    private static final String HELLO = ""
+        + "<hello xmlns=\"urn:ietf:params:xml:ns:netconf:base:1.0\">"
+        + "<capabilities><capability>urn:ietf:params:netconf:base:1.1</capability></capabilities>"
+        + "<session-id>4</session-id>"
+        + "</hello>";
+
+    @Test
+    public void willDecodeElementsWithTheSuppliedParser() throws Exception {
+        final CountingXmlParser xmlParser = new CountingXmlParser();
+
+        final RpcReply rpcReply = RpcReply.from(RPC_REPLY, xmlParser);
+        final Hello hello = Hello.from(HELLO.getBytes(StandardCharsets.UTF_8), xmlParser);
+
+        assertThat(rpcReply.isOk())
+            .isTrue();
+        assertThat(hello.getSessionId())
+            .isEqualTo("4");
+        assertThat(xmlParser.readers)
+            .hasValue(2);
+        assertThat(xmlParser.documents)
+            .hasValue(0);
+
+        assertThat(hello.getDocument().getDocumentElement().getLocalName())
+            .isEqualTo("hello");
+        assertThat(xmlParser.documents)
+            .hasValue(1);
+    }
+
+    @Test
+    public void willDecodeElementsWithTheDefaultParser() throws Exception {
+        final XmlParser defaultXmlParser = XmlParser.getDefault();
+        final CountingXmlParser xmlParser = new CountingXmlParser();
+        XmlParser.setDefault(xmlParser);
+        try {
+            final RpcReplyLoadConfigResults rpcReply = RpcReplyLoadConfigResults.from(RPC_REPLY);
+
+            assertThat(rpcReply.getMessageId())
+                .isEqualTo("3");
+            assertThat(xmlParser.readers)
+                .hasValue(1);
+        } finally {
+            XmlParser.setDefault(defaultXmlParser);
+        }
+        assertThat(XmlParser.getDefault())
+            .isSameAs(JaxpXmlParser.getInstance());
+    }
+
+    @Test
+    public void willCreateTheSuppliedFactoriesOncePerThread() throws Exception {
+        final AtomicInteger xmlInputFactories = new AtomicInteger();
+        final AtomicInteger documentBuilderFactories = new AtomicInteger();
+        final JaxpXmlParser xmlParser = new JaxpXmlParser(
+            () -> {
+                xmlInputFactories.incrementAndGet();
+                return XMLInputFactory.newInstance();
+            },
+            () -> {
+                documentBuilderFactories.incrementAndGet();
+                return DocumentBuilderFactory.newInstance();
+            });
+
+        for (int i = 0; i < 3; i++) {
+            RpcReply.from(RPC_REPLY, xmlParser).getDocument();
+        }
+
+        assertThat(xmlInputFactories)
+            .hasValue(1);
+        assertThat(documentBuilderFactories)
+            .hasValue(1);
+        assertThat(xmlParser.getDocumentBuilder().isNamespaceAware())
+            .isTrue();
+    }
+
+    private static class CountingXmlParser implements XmlParser {
+
+        private final AtomicInteger readers = new AtomicInteger();
+        private final AtomicInteger documents = new AtomicInteger();
+
+        @Override
+        public XMLStreamReader createXmlStreamReader(final String xml)
+            throws XMLStreamException {
+            readers.incrementAndGet();
+            return JaxpXmlParser.getInstance().createXmlStreamReader(xml);
+        }
+
+        @Override
+        public XMLStreamReader createXmlStreamReader(final byte[] utf8Xml)
+            throws XMLStreamException {
+            readers.incrementAndGet();
+            return JaxpXmlParser.getInstance().createXmlStreamReader(utf8Xml);
+        }
+
+        @Override
+        public XMLStreamReader createXmlStreamReader(final InputStream utf8Xml)
+            throws XMLStreamException {
+            readers.incrementAndGet();
+            return JaxpXmlParser.getInstance().createXmlStreamReader(utf8Xml);
+        }
+
+        @Override
+        public Document parseDocument(final InputSource inputSource)
+            throws IOException, SAXException {
+            documents.incrementAndGet();
+            return JaxpXmlParser.getInstance().parseDocument(inputSource);
+        }
+    }
+}
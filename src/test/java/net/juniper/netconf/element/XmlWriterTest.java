@@ -0,0 +1,98 @@
+package net.juniper.netconf.element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class XmlWriterTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final XmlWriter writer = new XmlWriter(out);
+
+    @Test
+    public void willWriteElementsAttributesAndNamespaces() throws Exception {
+        writer.startElement("nc", "rpc")
+            .namespace("nc", AbstractNetconfElement.URN_XML_NS_NETCONF_BASE_1_0)
+            .attribute("message-id", "1")
+            .attribute("missing", null)
+            .startElement("nc", "lock")
+            .startElement("nc", "target")
+            .startElement("nc", "candidate")
+            .endElement()
+            .endElement()
+            .endElement()
+            .textElement("nc", "absent", null)
+            .endElement()
+            .finish();
+
+        assertThat(written())
+            .isEqualTo("<nc:rpc xmlns:nc=\"urn:ietf:params:xml:ns:netconf:base:1.0\""
+                + " message-id=\"1\"><nc:lock><nc:target><nc:candidate/></nc:target></nc:lock>"
+                + "</nc:rpc>");
+    }
+
+    @Test
+    public void willEscapeTextAndAttributes() throws Exception {
+        writer.startElement(null, "error-message")
+            .attribute("value", "\"a\" & <b>\n\tc\r")
+            .text("\"a\" & <b>\n\tc\r]]>")
+            .endElement()
+            .finish();
+
+        assertThat(written())
+            .isEqualTo("<error-message value=\"&quot;a&quot; &amp; &lt;b&gt;&#10;&#9;c&#13;\">"
+                + "\"a\" &amp; &lt;b&gt;\n\tc&#13;]]&gt;</error-message>");
+    }
+
+    @Test
+    public void willWriteXmlWithoutEscapingIt() throws Exception {
+        writer.startElement(null, "rpc")
+            .xml("<get-config><source><running/></source></get-config>")
+            .endElement()
+            .finish();
+
+        assertThat(written())
+            .isEqualTo("<rpc><get-config><source><running/></source></get-config></rpc>");
+    }
+
+    @Test
+    public void willEncodeAsUtf8() throws Exception {
+        // Two, three and four byte characters, and an unpaired surrogate
+        final String text = "caf\u00e9 \u20ac \ud83d\ude00 \udc00"; // cafe, euro, smile, invalid
+        final StringBuilder longText = new StringBuilder();
+        while (longText.length() < 5000) {
+            longText.append(text);
+        }
+
+        writer.startElement(null, "text")
+            .text(longText)
+            .endElement()
+            .finish();
+
+        final String expected = longText.toString().replace('\udc00', '?'); // invalid to ?
+        assertThat(written())
+            .isEqualTo("<text>" + expected + "</text>");
+    }
+
+    @Test
+    public void willNotWriteAttributesAfterContent() throws Exception {
+        writer.startElement(null, "rpc")
+            .text("content");
+
+        assertThatThrownBy(() -> writer.attribute("message-id", "1"))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void willNotEndAnElementThatWasNotStarted() {
+        assertThatThrownBy(writer::endElement)
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private String written() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}